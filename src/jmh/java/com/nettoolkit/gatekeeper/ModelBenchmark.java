@@ -0,0 +1,63 @@
+package com.nettoolkit.gatekeeper;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.nettoolkit.exception.NetToolKitException;
+import com.nettoolkit.internal.ApiResponse;
+import com.nettoolkit.internal.ResultDecoder;
+import com.nettoolkit.internal.http.JsonBody;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONIndex;
+import com.nettoolkit.json.JSONObject;
+import com.nettoolkit.json.JSONParser;
+import com.nettoolkit.json.JsonCorpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of turning a response into model objects, in ms/op. <code>tree</code> parses the body into
+ * JSONObjects and copies the fields out, as every list request did before the results were
+ * decoded straight from the response text; <code>decode</code> is the current path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+    @Param({JsonCorpus.VISITS_10K, JsonCorpus.POLICIES})
+    public String payload;
+
+    private char[] mChars;
+    private ResultDecoder<?> mDecoder;
+    private String mstrName;
+
+    @Setup
+    public void setup() throws JSONException {
+        mChars = JsonCorpus.get(payload).toCharArray();
+        mDecoder = payload.equals(JsonCorpus.POLICIES) ? Policy.DECODER : Visit.DECODER;
+        mstrName = payload.equals(JsonCorpus.POLICIES) ? "policy" : "visit";
+    }
+
+    @Benchmark
+    public List<?> tree() throws JSONException, NetToolKitException {
+        JSONObject json = new JSONObject(new JSONParser(mChars, 0, mChars.length));
+        return new ApiResponse(JsonBody.of(json)).decodeResults(mstrName, mDecoder);
+    }
+
+    @Benchmark
+    public List<?> decode() throws JSONException, NetToolKitException {
+        return new ApiResponse(JsonBody.of(new JSONIndex(mChars, 0, mChars.length)))
+            .decodeResults(mstrName, mDecoder);
+    }
+}
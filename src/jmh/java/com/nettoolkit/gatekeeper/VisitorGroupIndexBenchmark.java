@@ -0,0 +1,88 @@
+package com.nettoolkit.gatekeeper;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.json.JSONArray;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one local membership check against an IP visitor group of {@link #MEMBERS} addresses
+ * and CIDR blocks, in ns/op. Each call checks the next of {@link #VISITORS} IPv4 and IPv6
+ * visitors, about half of them members.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VisitorGroupIndexBenchmark {
+    private static final int MEMBERS = 10_000;
+    private static final int VISITORS = 1024;
+
+    private final UUID mGroupId = UUID.randomUUID();
+    private VisitorGroupIndex mIndex;
+    private String[] mVisitors;
+    private int miNext;
+
+    @Setup
+    public void setup() throws JSONException, ParsingException {
+        Random random = new Random(42);
+        JSONArray jsonVisitors = new JSONArray();
+        String[] members = new String[MEMBERS];
+        for (int i = 0; i < MEMBERS; i++) {
+            if (i % 10 == 0) {
+                members[i] = "2001:db8:" + Integer.toHexString(random.nextInt(65536)) + "::/48";
+            } else if (i % 2 == 0) {
+                members[i] = ipv4(random.nextInt()) + "/" + (16 + random.nextInt(17));
+            } else {
+                members[i] = ipv4(random.nextInt());
+            }
+            jsonVisitors.put(new JSONObject().put("value", members[i]));
+        }
+        VisitorGroup visitorGroup = new VisitorGroup(new JSONObject()
+            .put("id", mGroupId.toString())
+            .put("name", "Blocklist")
+            .put("visitor_type", "IP")
+            .put("visitors", jsonVisitors));
+        mIndex = new VisitorGroupIndex(null);
+        mIndex.load(Collections.singletonList(visitorGroup));
+
+        mVisitors = new String[VISITORS];
+        for (int i = 0; i < VISITORS; i++) {
+            String strMember = members[random.nextInt(MEMBERS)];
+            if (i % 2 == 1) {
+                mVisitors[i] = i % 10 == 1 ? "2001:db9::1" : ipv4(random.nextInt());
+            } else if (strMember.indexOf(':') >= 0) {
+                mVisitors[i] = strMember.substring(0, strMember.indexOf("::")) + ":1:2:3:4:5";
+            } else {
+                mVisitors[i] = strMember.split("/")[0];
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean isMember() {
+        miNext = (miNext + 1) & (VISITORS - 1);
+        return mIndex.isMember(mGroupId, mVisitors[miNext]);
+    }
+
+    private static String ipv4(int iAddress) {
+        return (iAddress >>> 24) + "." + (iAddress >>> 16 & 255) + "."
+            + (iAddress >>> 8 & 255) + "." + (iAddress & 255);
+    }
+}
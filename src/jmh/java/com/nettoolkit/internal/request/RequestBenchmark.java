@@ -0,0 +1,172 @@
+package com.nettoolkit.internal.request;
+
+import java.net.http.HttpRequest;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.nettoolkit.dashboards.AttributeMap;
+import com.nettoolkit.dashboards.CreateMetricsRequest;
+import com.nettoolkit.dashboards.DashboardsClient;
+import com.nettoolkit.dashboards.GaugeInput;
+import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.gatekeeper.AuthorizeVisitRequest;
+import com.nettoolkit.gatekeeper.GatekeeperClient;
+import com.nettoolkit.geo.GeoClient;
+import com.nettoolkit.geo.GeocodeRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Client-side cost of building requests and turning them into an {@link HttpRequest}, in ns/op.
+ * Run with <code>-prof gc</code> (the default in the benchmarks profile) for bytes allocated per
+ * operation, reported as gc.alloc.rate.norm.
+ * <p>Nothing is sent: the clients are never used beyond building requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestBenchmark {
+    private static final OffsetDateTime TIME = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0,
+        ZoneOffset.UTC);
+
+    private GatekeeperClient mGatekeeperClient;
+    private GeoClient mGeoClient;
+    private AuthorizeVisitRequest mAuthorizeVisitRequest;
+    private GeocodeRequest mGeocodeRequest;
+
+    @Setup
+    public void setup() throws ParsingException {
+        mGatekeeperClient = new GatekeeperClient("benchmark-api-key");
+        mGeoClient = new GeoClient("benchmark-api-key");
+        mAuthorizeVisitRequest = newAuthorizeVisitRequest();
+        mGeocodeRequest = newGeocodeRequest();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mGatekeeperClient.close();
+        mGeoClient.close();
+    }
+
+    @Benchmark
+    public AuthorizeVisitRequest buildAuthorizeVisit() {
+        return newAuthorizeVisitRequest();
+    }
+
+    @Benchmark
+    public HttpRequest authorizeVisitToHttpRequest() throws ParsingException {
+        return mAuthorizeVisitRequest.toHttpRequest();
+    }
+
+    @Benchmark
+    public HttpRequest authorizeVisitBuildAndToHttpRequest() throws ParsingException {
+        return newAuthorizeVisitRequest().toHttpRequest();
+    }
+
+    @Benchmark
+    public GeocodeRequest buildGeocode() {
+        return newGeocodeRequest();
+    }
+
+    @Benchmark
+    public String geocodeToWwwFormUrlencoded() throws ParsingException {
+        return mGeocodeRequest.getParameters().toWwwFormUrlencoded();
+    }
+
+    @Benchmark
+    public HttpRequest geocodeToHttpRequest() throws ParsingException {
+        return mGeocodeRequest.toHttpRequest();
+    }
+
+    @Benchmark
+    public CreateMetricsRequest buildCreateMetrics(Metrics metrics) throws ParsingException {
+        return metrics.newCreateMetricsRequest();
+    }
+
+    @Benchmark
+    public String createMetricsToJson(Metrics metrics) {
+        return metrics.mCreateMetricsRequest.getParameters().toJson().toString();
+    }
+
+    @Benchmark
+    public HttpRequest createMetricsToHttpRequest(Metrics metrics) throws ParsingException {
+        return metrics.mCreateMetricsRequest.toHttpRequest();
+    }
+
+    private AuthorizeVisitRequest newAuthorizeVisitRequest() {
+        return mGatekeeperClient.newAuthorizeVisitRequest()
+            .ip("203.0.113.42")
+            .url("https://shop.example.com/checkout?cart=81723&step=2")
+            .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+                + "(KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36")
+            .referrer("https://www.example.com/")
+            .sessionId("b1946ac92492d2347c6235b4d2611184")
+            .userId(81723L);
+    }
+
+    private GeocodeRequest newGeocodeRequest() {
+        return mGeoClient.newGeocodeRequest()
+            .street("1600 Amphitheatre Pkwy")
+            .city("Mountain View")
+            .state("CA")
+            .zip("94043")
+            .countryCode("US");
+    }
+
+    /**
+     * CreateMetricsRequest with a varying number of gauges, kept apart so that only the metrics
+     * benchmarks run once per gauge count.
+     */
+    @State(Scope.Benchmark)
+    public static class Metrics {
+        @Param({"1", "100", "10000"})
+        public int gauges;
+
+        private DashboardsClient mDashboardsClient;
+        private CreateMetricsRequest mCreateMetricsRequest;
+
+        @Setup
+        public void setup() throws ParsingException {
+            mDashboardsClient = new DashboardsClient("benchmark-api-key");
+            mCreateMetricsRequest = newCreateMetricsRequest();
+        }
+
+        @TearDown
+        public void tearDown() {
+            mDashboardsClient.close();
+        }
+
+        // CreateMetricsRequest puts its gauges into the parameters when it is sent; do the same.
+        CreateMetricsRequest newCreateMetricsRequest() throws ParsingException {
+            CreateMetricsRequest request = mDashboardsClient.newCreateMetricsRequest()
+                .signalName("checkout-latency");
+            List<GaugeInput> listGauges = new ArrayList<>();
+            for (int i = 0; i < gauges; i++) {
+                GaugeInput gauge = GaugeInput.newBuilder()
+                    .time(TIME.plusSeconds(i))
+                    .value(12.5 + i % 100)
+                    .attributes(new AttributeMap().set("host", "web-" + (i % 16)))
+                    .build();
+                request.addGauge(gauge);
+                listGauges.add(gauge);
+            }
+            request.getParameters().put("gauges", listGauges);
+            return request;
+        }
+    }
+}
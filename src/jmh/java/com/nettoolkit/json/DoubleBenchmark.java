@@ -0,0 +1,99 @@
+package com.nettoolkit.json;
+
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of turning doubles into JSON text, per batch of {@link #COUNT} values, in ns/op.
+ * <code>jdkToString</code> is the Double.toString-and-trim formatting JSONObject used before
+ * {@link DoubleToDecimal}, kept as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DoubleBenchmark {
+    private static final int COUNT = 1024;
+
+    /**
+     * gauge: values with up to three decimals, as metrics usually have. random: any finite
+     * double, which needs the full 16 or 17 digits.
+     */
+    @Param({"gauge", "random"})
+    public String values;
+
+    private double[] mValues;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mValues = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            if (values.equals("gauge")) {
+                mValues[i] = random.nextInt(10_000_000) / 1000.0;
+            } else {
+                double d;
+                do {
+                    d = Double.longBitsToDouble(random.nextLong());
+                } while (Double.isNaN(d) || Double.isInfinite(d));
+                mValues[i] = d;
+            }
+        }
+    }
+
+    @Benchmark
+    public int jdkToString() {
+        int iLength = 0;
+        for (double d : mValues) {
+            iLength += trimmedJdkToString(d).length();
+        }
+        return iLength;
+    }
+
+    @Benchmark
+    public int doubleToString() {
+        int iLength = 0;
+        for (double d : mValues) {
+            iLength += JSONObject.doubleToString(d).length();
+        }
+        return iLength;
+    }
+
+    @Benchmark
+    public StringWriter writeArray() throws JSONException {
+        StringWriter writer = new StringWriter(COUNT * 24);
+        JSONWriter jsonWriter = new JSONWriter(writer).array();
+        for (double d : mValues) {
+            jsonWriter.value(d);
+        }
+        jsonWriter.endArray();
+        return writer;
+    }
+
+    private static String trimmedJdkToString(double d) {
+        String str = Double.toString(d);
+        if (str.indexOf('.') > 0 && str.indexOf('E') < 0) {
+            while (str.endsWith("0")) {
+                str = str.substring(0, str.length() - 1);
+            }
+            if (str.endsWith(".")) {
+                str = str.substring(0, str.length() - 1);
+            }
+        }
+        return str;
+    }
+}
@@ -0,0 +1,126 @@
+package com.nettoolkit.json;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and serialization throughput of the json package over the {@link JsonCorpus}
+ * payloads. Run with <code>-prof gc</code> (the default in the benchmarks profile) to see the
+ * allocation rate next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    @Param({
+        JsonCorpus.SINGLE_VISIT,
+        JsonCorpus.VISITS_10K,
+        JsonCorpus.POLICIES,
+        JsonCorpus.LOGS_5K
+    })
+    public String payload;
+
+    private String mstrPayload;
+    private String mstrArray;
+    private JSONObject mjson;
+    private String[] mStrings;
+
+    @Setup
+    public void setup() throws JSONException {
+        mstrPayload = JsonCorpus.get(payload);
+        mjson = new JSONObject(mstrPayload);
+        JSONArray jsonArray = mjson.optJSONArray("results");
+        if (jsonArray == null) {
+            jsonArray = mjson.getJSONArray("logs");
+        }
+        mstrArray = jsonArray.toString();
+        // Every string value in the first element, to quote.
+        JSONObject jsonFirst = jsonArray.getJSONObject(0);
+        mStrings = new String[jsonFirst.length()];
+        int i = 0;
+        for (String strKey : jsonFirst.keySet()) {
+            mStrings[i++] = String.valueOf(jsonFirst.opt(strKey));
+        }
+    }
+
+    @Benchmark
+    public JSONObject parseObject() throws JSONException {
+        return new JSONObject(mstrPayload);
+    }
+
+    @Benchmark
+    public JSONObject parseObjectDedup() throws JSONException {
+        return new JSONObject(new JSONParser(mstrPayload).dedupValues(32, 1024));
+    }
+
+    @Benchmark
+    public Object indexFirstResult() throws JSONException {
+        JSONIndex index = new JSONIndex(mstrPayload);
+        return index.value(index.element(index.find(index.root(), "results"), 0));
+    }
+
+    @Benchmark
+    public JSONObject parseObjectTokener() throws JSONException {
+        return new JSONObject(new JSONTokener(mstrPayload));
+    }
+
+    @Benchmark
+    public Object tokenerNextValue() throws JSONException {
+        return new JSONTokener(mstrPayload).nextValue();
+    }
+
+    @Benchmark
+    public Object parserNextValue() throws JSONException {
+        return new JSONParser(mstrPayload).nextValue();
+    }
+
+    @Benchmark
+    public int parserTokens() throws JSONException {
+        JSONParser parser = new JSONParser(mstrPayload);
+        int iTokens = 0;
+        while (parser.next() != JSONParser.Token.END_DOCUMENT) {
+            iTokens++;
+        }
+        return iTokens;
+    }
+
+    @Benchmark
+    public JSONArray parseArray() throws JSONException {
+        return new JSONArray(mstrArray);
+    }
+
+    @Benchmark
+    public String toStringObject() {
+        return mjson.toString();
+    }
+
+    @Benchmark
+    public StringWriter writeObject() throws JSONException {
+        StringWriter writer = new StringWriter(mstrPayload.length());
+        mjson.write(writer);
+        return writer;
+    }
+
+    @Benchmark
+    public int quote() throws JSONException {
+        int iLength = 0;
+        for (String str : mStrings) {
+            iLength += JSONObject.quote(str).length();
+        }
+        return iLength;
+    }
+}
@@ -0,0 +1,171 @@
+package com.nettoolkit.json;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.UUID;
+import com.nettoolkit.dashboards.LogRecordInput;
+import com.nettoolkit.dashboards.LogSeverity;
+
+/**
+ * Realistic JSON payloads for the benchmarks, shaped like the web API's responses and request
+ * bodies. Generated from a fixed seed so every run measures the same bytes.
+ */
+public final class JsonCorpus {
+    public static final String SINGLE_VISIT = "single-visit";
+    public static final String VISITS_10K = "visits-10k";
+    public static final String POLICIES = "policies";
+    public static final String LOGS_5K = "logs-5k";
+
+    private static final String[] USER_AGENTS = {
+        "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) "
+            + "Chrome/124.0.0.0 Safari/537.36",
+        "Mozilla/5.0 (iPhone; CPU iPhone OS 17_4 like Mac OS X) AppleWebKit/605.1.15 "
+            + "(KHTML, like Gecko) Version/17.4 Mobile/15E148 Safari/604.1",
+        "curl/8.4.0",
+        "Googlebot/2.1 (+http://www.google.com/bot.html)"
+    };
+    private static final String[][] COUNTRIES = {
+        {"US", "United States"}, {"DE", "Germany"}, {"JP", "Japan"}, {"BR", "Brazil"},
+        {"CI", "Côte d'Ivoire"}
+    };
+    private static final String[] TAGS = {"tor", "proxy", "datacenter", "bot", "known-abuser"};
+    private static final String[] PAGES = {
+        "/", "/login", "/checkout?cart=81723&step=2", "/api/v1/items/42", "/search?q=\"shoes\""
+    };
+
+    private JsonCorpus() {}
+
+    /**
+     * Returns the payload with the given name.
+     *
+     * @param strName one of the name constants
+     * @return the payload
+     */
+    public static String get(String strName) throws JSONException {
+        switch (strName) {
+            case SINGLE_VISIT:
+                return visits(1, 7L);
+            case VISITS_10K:
+                return visits(10_000, 11L);
+            case POLICIES:
+                return policies(40, 13L);
+            case LOGS_5K:
+                return logs(5_000, 17L);
+            default:
+                throw new IllegalArgumentException("Unknown payload " + strName);
+        }
+    }
+
+    // A v1 response with visit results, as returned by AuthorizeVisit and GetVisits.
+    static String visits(int iCount, long lSeed) throws JSONException {
+        Random random = new Random(lSeed);
+        JSONArray jsonVisits = new JSONArray();
+        for (int i = 0; i < iCount; i++) {
+            String[] country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+            JSONArray jsonTags = new JSONArray();
+            for (int j = random.nextInt(3); j > 0; j--) {
+                jsonTags.put(TAGS[random.nextInt(TAGS.length)]);
+            }
+            JSONObject jsonVisit = new JSONObject()
+                .put("id", uuid(random).toString())
+                .put("ip", (random.nextInt(223) + 1) + "." + random.nextInt(256) + "."
+                    + random.nextInt(256) + "." + random.nextInt(256))
+                .put("domain", "shop.example.com")
+                .put("page", PAGES[random.nextInt(PAGES.length)])
+                .put("user_id", random.nextInt(1_000_000))
+                .put("user_agent", USER_AGENTS[random.nextInt(USER_AGENTS.length)])
+                .put("country_code", country[0])
+                .put("country_name", country[1])
+                .put("tags", jsonTags)
+                .put("policy_id", uuid(random).toString())
+                .put("policy_name", "Block repeat offenders")
+                .put("authorization", random.nextInt(10) == 0 ? "deny" : "allow")
+                .put("reason", "default")
+                .put("created", 1_700_000_000_000L + random.nextInt(1_000_000_000));
+            jsonVisits.put(jsonVisit);
+        }
+        return new JSONObject()
+            .put("code", 1000)
+            .put("message", "Request OK")
+            .put("results", jsonVisits)
+            .toString();
+    }
+
+    // A v1 response with policy results, as returned by GetPolicies.
+    static String policies(int iCount, long lSeed) throws JSONException {
+        Random random = new Random(lSeed);
+        JSONArray jsonPolicies = new JSONArray();
+        for (int i = 0; i < iCount; i++) {
+            JSONArray jsonVisitorGroupIds = new JSONArray();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                jsonVisitorGroupIds.put(uuid(random).toString());
+            }
+            JSONArray jsonPageGroupIds = new JSONArray();
+            for (int j = random.nextInt(3); j > 0; j--) {
+                jsonPageGroupIds.put(uuid(random).toString());
+            }
+            JSONObject jsonPolicy = new JSONObject()
+                .put("id", uuid(random).toString())
+                .put("name", "Policy " + i)
+                .put("visitor_negated", random.nextBoolean())
+                .put("visitor_group_ids", jsonVisitorGroupIds)
+                .put("page_group_ids", jsonPageGroupIds)
+                .put("captcha_status", "any")
+                .put("user_agent_type", "any")
+                .put("num_times", random.nextInt(100))
+                .put("time_interval_num", random.nextInt(60))
+                .put("time_interval_unit", "minute")
+                .put("visit_interval", random.nextInt(10))
+                .put("authorization", random.nextBoolean() ? "deny" : "captcha")
+                .put("reason", "Too many visits in a short time")
+                .put("ip_appender", new JSONObject()
+                    .put("visitor_group_id", uuid(random).toString())
+                    .put("expiration_time_num", 1)
+                    .put("expiration_time_unit", "day"))
+                .put("priority", i)
+                .put("enabled", true)
+                .put("description", "Generated policy for benchmarks")
+                .put("created", 1_700_000_000_000L + random.nextInt(1_000_000_000))
+                .put("is_default", i == 0);
+            jsonPolicies.put(jsonPolicy);
+        }
+        return new JSONObject()
+            .put("code", 1000)
+            .put("message", "Request OK")
+            .put("results", jsonPolicies)
+            .toString();
+    }
+
+    // A CreateLogs request body, built the way CreateLogsRequest builds it.
+    static String logs(int iCount, long lSeed) throws JSONException {
+        Random random = new Random(lSeed);
+        LogSeverity[] severities = LogSeverity.values();
+        OffsetDateTime start = OffsetDateTime.ofInstant(Instant.ofEpochMilli(1_700_000_000_000L),
+            ZoneOffset.UTC);
+        JSONArray jsonLogs = new JSONArray();
+        for (int i = 0; i < iCount; i++) {
+            OffsetDateTime time = start.plusNanos(random.nextInt(1_000_000_000) * 1000L);
+            jsonLogs.put(LogRecordInput.newBuilder()
+                .time(time)
+                .observedTime(time.plusNanos(random.nextInt(5_000_000)))
+                .severity(severities[random.nextInt(severities.length)])
+                .body("Handled request " + i + " in " + random.nextInt(500) + "ms: \"GET "
+                    + PAGES[random.nextInt(PAGES.length)] + "\"\n\tstatus=200")
+                .attribute("host", "web-" + random.nextInt(16))
+                .attribute("latency_ms", random.nextDouble() * 500)
+                .attribute("cached", random.nextBoolean())
+                .build()
+                .toJson());
+        }
+        return new JSONObject()
+            .put("signal_name", "web-requests")
+            .put("logs", jsonLogs)
+            .toString();
+    }
+
+    private static UUID uuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+}
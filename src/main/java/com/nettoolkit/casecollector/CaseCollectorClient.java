@@ -6,6 +6,7 @@ import java.io.PrintWriter;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.NetToolKitClient;
+import com.nettoolkit.internal.http.HttpTransport;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONException;
 
@@ -19,6 +20,10 @@ public class CaseCollectorClient extends NetToolKitClient {
         super(strApiKey, bUseHttps);
     }
 
+    public CaseCollectorClient(String strApiKey, boolean bUseHttps, HttpTransport transport) {
+        super(strApiKey, bUseHttps, transport);
+    }
+
     // API 
     public void createCase(Integer iProjectId, String strJsonData)
             throws NetToolKitException { 
@@ -3,9 +3,12 @@ package com.nettoolkit.dashboards;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONObject;
+import com.nettoolkit.json.JSONWritable;
+import com.nettoolkit.json.JSONWriter;
 
-public class AttributeMap {
+public class AttributeMap implements JSONWritable {
     private Map<String, Object> mmapKeyValues = new HashMap<>();
 
     public AttributeMap set(String strKey, String strValue) {
@@ -23,10 +26,36 @@ public class AttributeMap {
         return this;
     }
 
+    /**
+     * Copies the attributes, so that a request already sent keeps them as they were.
+     *
+     * @return the copy
+     */
+    AttributeMap copy() {
+        AttributeMap attributes = new AttributeMap();
+        attributes.mmapKeyValues.putAll(mmapKeyValues);
+        return attributes;
+    }
+
     public JSONObject toJson() {
         return new JSONObject(mmapKeyValues);
     }
 
+    /**
+     * Writes the attributes as a JSON object, without building a JSONObject.
+     *
+     * @param writer
+     * @throws JSONException
+     */
+    @Override
+    public void writeTo(JSONWriter writer) throws JSONException {
+        writer.object();
+        for (Map.Entry<String, Object> entry : mmapKeyValues.entrySet()) {
+            writer.key(entry.getKey()).value(entry.getValue());
+        }
+        writer.endObject();
+    }
+
     @Override
     public String toString() {
         return mmapKeyValues.toString();
@@ -1,6 +1,7 @@
 package com.nettoolkit.dashboards;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.io.StringWriter;
 import java.io.PrintWriter;
 import com.nettoolkit.exception.NetToolKitException;
@@ -117,5 +118,17 @@ public class CreateChannelDatumRequest extends PostRequest {
         ApiResponse response = getClient().send(this);
         return new ChannelDatum(response.getFirstResult());
     }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for the new channel datum
+     */
+    public CompletableFuture<ChannelDatum> sendAsync() {
+        return thenParse(
+            getClient().sendAsync(this),
+            response -> new ChannelDatum(response.getFirstResult())
+        );
+    }
 }
 
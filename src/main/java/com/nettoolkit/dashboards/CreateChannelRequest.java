@@ -1,6 +1,7 @@
 package com.nettoolkit.dashboards;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
@@ -191,5 +192,17 @@ public class CreateChannelRequest extends PostRequest {
         ApiResponse response = getClient().send(this);
         return new Channel(response.getFirstResult());
     }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for the new channel
+     */
+    public CompletableFuture<Channel> sendAsync() {
+        return thenParse(
+            getClient().sendAsync(this),
+            response -> new Channel(response.getFirstResult())
+        );
+    }
 }
 
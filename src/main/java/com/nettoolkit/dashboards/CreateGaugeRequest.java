@@ -1,5 +1,6 @@
 package com.nettoolkit.dashboards;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.UUID;
 import java.time.OffsetDateTime;
 import com.nettoolkit.exception.NetToolKitException;
@@ -119,5 +120,14 @@ public class CreateGaugeRequest extends PostRequest {
     public void send() throws NetToolKitException {
         getClient().sendV2(this);
     }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future that completes once the request succeeds
+     */
+    public CompletableFuture<Void> sendAsync() {
+        return thenParse(getClient().sendV2Async(this), response -> null);
+    }
 }
 
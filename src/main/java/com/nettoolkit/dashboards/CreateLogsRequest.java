@@ -2,13 +2,11 @@ package com.nettoolkit.dashboards;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.UUID;
 import java.time.OffsetDateTime;
 import com.nettoolkit.exception.NetToolKitException;
-import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.request.PostRequest;
-import com.nettoolkit.json.JSONArray;
-import com.nettoolkit.json.JSONException;
 import com.nettoolkit.internal.http.HttpContentType;
 
 public class CreateLogsRequest extends PostRequest {
@@ -134,16 +132,28 @@ public class CreateLogsRequest extends PostRequest {
      * @throws NetToolKitException
      */
     public void send() throws NetToolKitException {
-        JSONArray jsonLogs = new JSONArray();
+        putLogs();
+        getClient().sendV2(this);
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future that completes once the request succeeds
+     */
+    public CompletableFuture<Void> sendAsync() {
+        putLogs();
+        return thenParse(getClient().sendV2Async(this), response -> null);
+    }
+
+    // The logs write themselves into the body as it is serialized; see LogRecordInput.writeTo.
+    // The body is serialized again for each retry, so it gets the logs as they are now.
+    private void putLogs() {
+        List<LogRecordInput> listLogs = new ArrayList<>(mlistLogs.size());
         for (LogRecordInput log : mlistLogs) {
-            try {
-                jsonLogs.put(log.toJson());
-            } catch (JSONException jsone) {
-                throw new ParsingException(jsone, log);
-            }
+            listLogs.add(log.snapshot());
         }
-        getParameters().put("logs", jsonLogs);
-        getClient().sendV2(this);
+        getParameters().put("logs", listLogs);
     }
 }
 
@@ -2,13 +2,11 @@ package com.nettoolkit.dashboards;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.UUID;
 import java.time.OffsetDateTime;
 import com.nettoolkit.exception.NetToolKitException;
-import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.request.PostRequest;
-import com.nettoolkit.json.JSONArray;
-import com.nettoolkit.json.JSONException;
 import com.nettoolkit.internal.http.HttpContentType;
 
 public class CreateMetricsRequest extends PostRequest {
@@ -147,16 +145,28 @@ public class CreateMetricsRequest extends PostRequest {
      * @throws NetToolKitException
      */
     public void send() throws NetToolKitException {
-        JSONArray jsonGauges = new JSONArray();
+        putGauges();
+        getClient().sendV2(this);
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future that completes once the request succeeds
+     */
+    public CompletableFuture<Void> sendAsync() {
+        putGauges();
+        return thenParse(getClient().sendV2Async(this), response -> null);
+    }
+
+    // The gauges write themselves into the body as it is serialized; see GaugeInput.writeTo.
+    // The body is serialized again for each retry, so it gets the gauges as they are now.
+    private void putGauges() {
+        List<GaugeInput> listGauges = new ArrayList<>(mlistGauges.size());
         for (GaugeInput gauge : mlistGauges) {
-            try {
-                jsonGauges.put(gauge.toJson());
-            } catch (JSONException jsone) {
-                throw new ParsingException(jsone, gauge);
-            }
+            listGauges.add(gauge.snapshot());
         }
-        getParameters().put("gauges", jsonGauges);
-        getClient().sendV2(this);
+        getParameters().put("gauges", listGauges);
     }
 }
 
@@ -1,6 +1,7 @@
 package com.nettoolkit.dashboards;
 
 import com.nettoolkit.internal.NetToolKitClient;
+import com.nettoolkit.internal.http.HttpTransport;
 
 public class DashboardsClient extends NetToolKitClient {
     /**
@@ -16,6 +17,10 @@ public class DashboardsClient extends NetToolKitClient {
         super(strApiKey, bUseHttps);
     }
 
+    public DashboardsClient(String strApiKey, boolean bUseHttps, HttpTransport transport) {
+        super(strApiKey, bUseHttps, transport);
+    }
+
     /**
      * Creates a new request to create a channel datum. Call {@link com.nettoolkit.dashboards.CreateChannelDatumRequest#send} to execute.
      *
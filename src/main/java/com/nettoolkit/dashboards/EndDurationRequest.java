@@ -1,6 +1,7 @@
 package com.nettoolkit.dashboards;
 
 import java.time.OffsetDateTime;
+import java.util.concurrent.CompletableFuture;
 import java.util.UUID;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.internal.ApiV2Response;
@@ -154,15 +155,34 @@ public class EndDurationRequest extends PostRequest {
      * @throws NetToolKitException
      */
     public DurationSpan send() throws NetToolKitException {
+        putAttributes();
+        ApiV2Response response = getClient().sendV2(this);
+        return DurationSpan.fromResponseJson(
+            response.getDataJsonObject("duration_span")
+        );
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for the updated duration span
+     */
+    public CompletableFuture<DurationSpan> sendAsync() {
+        putAttributes();
+        return thenParse(
+            getClient().sendV2Async(this),
+            response -> DurationSpan.fromResponseJson(
+                response.getDataJsonObject("duration_span")
+            )
+        );
+    }
+
+    private void putAttributes() {
         JSONObject jsonAttributes = null;
         if (mAttributes != null) {
             jsonAttributes = mAttributes.toJson();
         }
         getParameters().put("attributes", jsonAttributes);
-        ApiV2Response response = getClient().sendV2(this);
-        return DurationSpan.fromResponseJson(
-            response.getDataJsonObject("duration_span")
-        );
     }
 }
 
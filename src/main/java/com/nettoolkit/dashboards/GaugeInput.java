@@ -4,8 +4,10 @@ import java.time.OffsetDateTime;
 import java.util.UUID;
 import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONObject;
+import com.nettoolkit.json.JSONWritable;
+import com.nettoolkit.json.JSONWriter;
 
-public class GaugeInput {
+public class GaugeInput implements JSONWritable {
     private OffsetDateTime mTime;
     private double mdValue;
     private AttributeMap mAttributes; // might be null
@@ -70,6 +72,46 @@ public class GaugeInput {
             .put("signal_description", mstrSignalDescription);
     }
 
+    /**
+     * Writes the same JSON as {@link #toJson()} straight to a writer.
+     *
+     * @param writer
+     * @throws JSONException
+     */
+    @Override
+    public void writeTo(JSONWriter writer) throws JSONException {
+        writer.object();
+        if (mTime != null) {
+            writer.key("time").value(mTime.toInstant().toEpochMilli());
+        }
+        writer.key("value").value(mdValue)
+            .putOpt("attributes", mAttributes)
+            .putOpt("signal_id", mSignalId)
+            .putOpt("signal_name", mstrSignalName)
+            .putOpt("signal_description", mstrSignalDescription)
+            .endObject();
+    }
+
+    /**
+     * Returns this gauge with its attributes copied, so that a request already sent keeps them as
+     * they were.
+     *
+     * @return the gauge to put in a request body
+     */
+    GaugeInput snapshot() {
+        if (mAttributes == null) {
+            return this;
+        }
+        return new GaugeInput(
+            mTime,
+            mdValue,
+            mAttributes.copy(),
+            mSignalId,
+            mstrSignalName,
+            mstrSignalDescription
+        );
+    }
+
     @Override
     public String toString() {
         return "{time=" + mTime + ", value=" + mdValue + ", attributes=" + mAttributes + "}";
@@ -6,8 +6,10 @@ import java.time.OffsetDateTime;
 import java.util.UUID;
 import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONObject;
+import com.nettoolkit.json.JSONWritable;
+import com.nettoolkit.json.JSONWriter;
 
-public class LogRecordInput {
+public class LogRecordInput implements JSONWritable {
     private OffsetDateTime mTime;
     private OffsetDateTime mObservedTime;
     private LogSeverity mSeverity;
@@ -95,6 +97,56 @@ public class LogRecordInput {
             .put("signal_description", mstrSignalDescription);
     }
 
+    /**
+     * Writes the same JSON as {@link #toJson()} straight to a writer.
+     *
+     * @param writer
+     * @throws JSONException
+     */
+    @Override
+    public void writeTo(JSONWriter writer) throws JSONException {
+        writer.object();
+        if (mTime != null) {
+            writer.key("time").value(mTime.toInstant().toEpochMilli());
+        }
+        if (mObservedTime != null) {
+            writer.key("observed_time").value(mObservedTime.toInstant().toEpochMilli());
+        }
+        if (mSeverity != null) {
+            writer.key("severity").value(mSeverity.toNumber());
+        }
+        writer.putOpt("severity_text", mstrSeverityText)
+            .putOpt("body", mstrBody)
+            .putOpt("attributes", mAttributes)
+            .putOpt("signal_id", mSignalId)
+            .putOpt("signal_name", mstrSignalName)
+            .putOpt("signal_description", mstrSignalDescription)
+            .endObject();
+    }
+
+    /**
+     * Returns this log record with its attributes copied, so that a request already sent keeps
+     * them as they were.
+     *
+     * @return the log record to put in a request body
+     */
+    LogRecordInput snapshot() {
+        if (mAttributes == null) {
+            return this;
+        }
+        return new LogRecordInput(
+            mTime,
+            mObservedTime,
+            mSeverity,
+            mstrSeverityText,
+            mstrBody,
+            mAttributes.copy(),
+            mSignalId,
+            mstrSignalName,
+            mstrSignalDescription
+        );
+    }
+
     @Override
     public String toString() {
         return "{time=" + mTime + ", severity=" + mSeverity + ", attributes=" + mAttributes + "}";
@@ -9,6 +9,10 @@ import com.nettoolkit.internal.request.BaseApiRequest;
  * There should always be an underlying cause for this exceptions; for example a java.net.ConnectException or java.io.IOException.
  */
 public class ApiConnectionException extends NetToolKitException {
+    public ApiConnectionException(String strMessage) {
+        super(strMessage);
+    }
+
     public ApiConnectionException(Throwable cause) {
         super(cause);
     }
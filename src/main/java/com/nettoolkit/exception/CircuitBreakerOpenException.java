@@ -0,0 +1,24 @@
+package com.nettoolkit.exception;
+
+/**
+ * CircuitBreakerOpenException is thrown without contacting the web API when the circuit breaker
+ * for the request's endpoint is open, i.e. the endpoint has recently been failing or slow.
+ * Callers can catch it to fail open or fail closed right away instead of waiting for a timeout.
+ */
+public class CircuitBreakerOpenException extends ApiConnectionException {
+    private final String mstrEndpoint;
+
+    public CircuitBreakerOpenException(String strEndpoint) {
+        super("Circuit breaker is open for " + strEndpoint);
+        mstrEndpoint = strEndpoint;
+    }
+
+    /**
+     * Gets the endpoint whose circuit is open, e.g. "POST /v1/gatekeeper/visits".
+     *
+     * @return the endpoint
+     */
+    public String getEndpoint() {
+        return mstrEndpoint;
+    }
+}
@@ -0,0 +1,14 @@
+package com.nettoolkit.exception;
+
+import com.nettoolkit.api.StatusCode;
+
+/**
+ * RateLimitExceededException is thrown when the client's own rate limiter rejects a request
+ * before it is sent. It carries the TOO_MANY_REQUESTS status code, like a rate limit error from
+ * the web API, but no round trip was made.
+ */
+public class RateLimitExceededException extends ApiException {
+    public RateLimitExceededException(String strMessage) {
+        super(StatusCode.TOO_MANY_REQUESTS.toInt(), strMessage);
+    }
+}
@@ -1,6 +1,7 @@
 package com.nettoolkit.gatekeeper;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.BadArgumentException;
@@ -34,6 +35,11 @@ public class AddVisitorRequest extends PostRequest {
         return "/v1/gatekeeper/visitor-groups/" + mVisitorGroupId + "/visitors";
     }
 
+    @Override
+    protected String getPathTemplate() {
+        return "/v1/gatekeeper/visitor-groups/{visitorGroupId}/visitors";
+    }
+
     /**
      * Sets the visitor group ID. The visitor will be added to this visitor group.
      * <em>required</em>
@@ -95,5 +101,19 @@ public class AddVisitorRequest extends PostRequest {
         }
         getClient().send(this);
     }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future that completes once the request succeeds
+     */
+    public CompletableFuture<Void> sendAsync() {
+        if (mVisitorGroupId == null) {
+            return CompletableFuture.failedFuture(
+                new BadArgumentException("Missing visitor group ID", mVisitorGroupId)
+            );
+        }
+        return thenParse(getClient().sendAsync(this), response -> null);
+    }
 }
 
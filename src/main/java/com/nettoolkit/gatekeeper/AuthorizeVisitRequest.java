@@ -1,5 +1,6 @@
 package com.nettoolkit.gatekeeper;
 
+import java.util.concurrent.CompletableFuture;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.internal.ApiResponse;
 import com.nettoolkit.internal.request.PostRequest;
@@ -107,14 +108,42 @@ public class AuthorizeVisitRequest extends PostRequest {
     }
 
     /**
-     * Sends the request.
+     * Sends the request, unless the client's {@link VisitorAuthorizationCache} has a visit for
+     * it.
      *
      * @return a visit object containing authorization information
      * @throws NetToolKitException
      */
     public Visit send() throws NetToolKitException {
+        VisitorAuthorizationCache cache = getAuthorizationCache();
+        return cache == null ? sendUncached() : cache.authorize(this);
+    }
+
+    /**
+     * Sends the request without blocking the calling thread, unless the client's
+     * {@link VisitorAuthorizationCache} has a visit for it.
+     *
+     * @return a future for a visit object containing authorization information
+     */
+    public CompletableFuture<Visit> sendAsync() {
+        VisitorAuthorizationCache cache = getAuthorizationCache();
+        return cache == null ? sendUncachedAsync() : cache.authorizeAsync(this);
+    }
+
+    Visit sendUncached() throws NetToolKitException {
         ApiResponse response = getClient().send(this);
         return new Visit(response.getFirstResult());
     }
+
+    CompletableFuture<Visit> sendUncachedAsync() {
+        return thenParse(
+            getClient().sendAsync(this),
+            response -> new Visit(response.getFirstResult())
+        );
+    }
+
+    private VisitorAuthorizationCache getAuthorizationCache() {
+        return ((GatekeeperClient) getClient()).getAuthorizationCache();
+    }
 }
 
@@ -1,6 +1,7 @@
 package com.nettoolkit.gatekeeper;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.time.OffsetDateTime;
 import java.time.Instant;
 import com.nettoolkit.exception.ParsingException;
@@ -29,6 +30,11 @@ public class CheckVisitorGroupMembershipRequest extends GetRequest {
             + "/membership/" + mstrVisitor;
     }
 
+    @Override
+    protected String getPathTemplate() {
+        return "/v1/gatekeeper/visitor-groups/{visitorGroupId}/membership/{visitor}";
+    }
+
     public CheckVisitorGroupMembershipRequest
         visitorGroupId(UUID visitorGroupId) {
         mVisitorGroupId = visitorGroupId;
@@ -47,7 +53,22 @@ public class CheckVisitorGroupMembershipRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public boolean send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
+        return parseIsMember(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for whether the visitor is a member of the visitor group
+     */
+    public CompletableFuture<Boolean> sendAsync() {
+        return thenParse(
+            getClient().sendAsync(this),
+            CheckVisitorGroupMembershipRequest::parseIsMember
+        );
+    }
+
+    private static boolean parseIsMember(ApiResponse response) throws NetToolKitException {
         JSONObject jsonResult = response.getFirstResult();
         if (jsonResult != null) {
             String strIsMember = jsonResult.optString("is_member");
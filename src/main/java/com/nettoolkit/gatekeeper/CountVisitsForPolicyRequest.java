@@ -1,6 +1,7 @@
 package com.nettoolkit.gatekeeper;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.gatekeeper.GatekeeperClient;
@@ -69,7 +70,19 @@ public class CountVisitsForPolicyRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public int send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
+        return parseCount(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for the visit count
+     */
+    public CompletableFuture<Integer> sendAsync() {
+        return thenParse(getClient().sendAsync(this), CountVisitsForPolicyRequest::parseCount);
+    }
+
+    private static int parseCount(ApiResponse response) throws ParsingException {
         try {
             return response.getFirstResult().getInt("count");
         } catch (JSONException jsone) {
@@ -3,6 +3,7 @@ package com.nettoolkit.gatekeeper;
 import java.util.UUID;
 import java.time.OffsetDateTime;
 import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.gatekeeper.GatekeeperClient;
@@ -178,7 +179,19 @@ public class CountVisitsRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public int send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
+        return parseCount(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for the visit count
+     */
+    public CompletableFuture<Integer> sendAsync() {
+        return thenParse(getClient().sendAsync(this), CountVisitsRequest::parseCount);
+    }
+
+    private static int parseCount(ApiResponse response) throws ParsingException {
         try {
             return response.getFirstResult().getInt("count");
         } catch (JSONException jsone) {
@@ -1,6 +1,7 @@
 package com.nettoolkit.gatekeeper;
 
 import com.nettoolkit.internal.NetToolKitClient;
+import com.nettoolkit.internal.http.HttpTransport;
 
 /**
  * GatekeeperClient is the primary class for interacting with the Gatekeeper service web API.
@@ -35,6 +36,8 @@ import com.nettoolkit.internal.NetToolKitClient;
  * @see <a href="https://www.nettoolkit.com/docs/gatekeeper/api/overview">web API docs</a>
  */
 public class GatekeeperClient extends NetToolKitClient {
+    private volatile VisitorAuthorizationCache mAuthorizationCache;
+
     /**
      * Constructs a new GatekeeperClient which uses the given API key for requests.
      *
@@ -48,6 +51,23 @@ public class GatekeeperClient extends NetToolKitClient {
         super(strApiKey, bUseHttps);
     }
 
+    public GatekeeperClient(String strApiKey, boolean bUseHttps, HttpTransport transport) {
+        super(strApiKey, bUseHttps, transport);
+    }
+
+    public VisitorAuthorizationCache getAuthorizationCache() { return mAuthorizationCache; }
+
+    /**
+     * Sets the cache that visit authorizations are answered from when the same visitor comes back,
+     * or null to send every authorization (the default).
+     *
+     * @param authorizationCache the cache, which may be shared between clients with the same API
+     *     key
+     */
+    public void setAuthorizationCache(VisitorAuthorizationCache authorizationCache) {
+        mAuthorizationCache = authorizationCache;
+    }
+
     /**
      * Creates a new request to authorize a visit. Call {@link com.nettoolkit.gatekeeper.AuthorizeVisitRequest#send} to execute.
      *
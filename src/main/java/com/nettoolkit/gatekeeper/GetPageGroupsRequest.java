@@ -1,13 +1,11 @@
 package com.nettoolkit.gatekeeper;
 
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.ApiResponse;
 import com.nettoolkit.internal.request.GetRequest;
-import com.nettoolkit.json.JSONObject;
-import com.nettoolkit.json.JSONArray;
 import com.nettoolkit.gatekeeper.GatekeeperClient;
 import com.nettoolkit.gatekeeper.PageGroup;
 
@@ -33,17 +31,23 @@ public class GetPageGroupsRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public List<PageGroup> send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
-        List<PageGroup> listPageGroups = new ArrayList<>();
-        JSONArray jsonResults = response.getResults();
-        for (int i = 0; i < jsonResults.length(); i++) {
-            JSONObject jsonPageGroup = jsonResults.optJSONObject(i);
-            if (jsonPageGroup == null) {
-                throw new ParsingException("Invalid page group encountered", jsonResults.opt(i));
-            }
-            listPageGroups.add(new PageGroup(jsonPageGroup));
-        }
-        return listPageGroups;
+        return parsePageGroups(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for a list of page group objects
+     */
+    public CompletableFuture<List<PageGroup>> sendAsync() {
+        return thenParse(getClient().sendAsync(this), GetPageGroupsRequest::parsePageGroups);
+    }
+
+    @Override
+    public boolean isLazyResponse() { return true; }
+
+    private static List<PageGroup> parsePageGroups(ApiResponse response) throws ParsingException {
+        return response.decodeResults("page group", PageGroup.DECODER);
     }
 }
 
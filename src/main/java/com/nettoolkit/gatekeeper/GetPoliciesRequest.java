@@ -1,13 +1,11 @@
 package com.nettoolkit.gatekeeper;
 
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.ApiResponse;
 import com.nettoolkit.internal.request.GetRequest;
-import com.nettoolkit.json.JSONObject;
-import com.nettoolkit.json.JSONArray;
 import com.nettoolkit.gatekeeper.GatekeeperClient;
 import com.nettoolkit.gatekeeper.Policy;
 
@@ -33,17 +31,23 @@ public class GetPoliciesRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public List<Policy> send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
-        List<Policy> listPolicies = new ArrayList<>();
-        JSONArray jsonResults = response.getResults();
-        for (int i = 0; i < jsonResults.length(); i++) {
-            JSONObject jsonPolicy = jsonResults.optJSONObject(i);
-            if (jsonPolicy == null) {
-                throw new ParsingException("Invalid policy encountered", jsonResults.opt(i));
-            }
-            listPolicies.add(new Policy(jsonPolicy));
-        }
-        return listPolicies;
+        return parsePolicies(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for a list of policy objects
+     */
+    public CompletableFuture<List<Policy>> sendAsync() {
+        return thenParse(getClient().sendAsync(this), GetPoliciesRequest::parsePolicies);
+    }
+
+    @Override
+    public boolean isLazyResponse() { return true; }
+
+    private static List<Policy> parsePolicies(ApiResponse response) throws ParsingException {
+        return response.decodeResults("policy", Policy.DECODER);
     }
 }
 
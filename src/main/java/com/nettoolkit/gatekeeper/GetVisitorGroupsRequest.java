@@ -1,13 +1,11 @@
 package com.nettoolkit.gatekeeper;
 
 import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.ApiResponse;
 import com.nettoolkit.internal.request.GetRequest;
-import com.nettoolkit.json.JSONObject;
-import com.nettoolkit.json.JSONArray;
 import com.nettoolkit.gatekeeper.GatekeeperClient;
 import com.nettoolkit.gatekeeper.VisitorGroup;
 
@@ -30,6 +28,12 @@ public class GetVisitorGroupsRequest extends GetRequest {
         return "/v1/gatekeeper/visitor-groups/" + mstrVisitor;
     }
 
+    @Override
+    protected String getPathTemplate() {
+        if (mstrVisitor == null) return "/v1/gatekeeper/visitor-groups";
+        return "/v1/gatekeeper/visitor-groups/{visitor}";
+    }
+
     public GetVisitorGroupsRequest visitor(String strVisitor) {
         mstrVisitor = strVisitor;
         return this;
@@ -42,18 +46,23 @@ public class GetVisitorGroupsRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public List<VisitorGroup> send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
-        List<VisitorGroup> listVisitorGroups = new ArrayList<>();
-        JSONArray jsonResults = response.getResults();
-        for (int i = 0; i < jsonResults.length(); i++) {
-            JSONObject jsonVisitorGroup = jsonResults.optJSONObject(i);
-            if (jsonVisitorGroup == null) {
-                throw new ParsingException("Invalid visitor group encountered",
-                    jsonResults.opt(i));
-            }
-            listVisitorGroups.add(new VisitorGroup(jsonVisitorGroup));
-        }
-        return listVisitorGroups;
+        return parseVisitorGroups(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for a list of visitor group objects
+     */
+    public CompletableFuture<List<VisitorGroup>> sendAsync() {
+        return thenParse(getClient().sendAsync(this), GetVisitorGroupsRequest::parseVisitorGroups);
+    }
+
+    @Override
+    public boolean isLazyResponse() { return true; }
+
+    private static List<VisitorGroup> parseVisitorGroups(ApiResponse response) throws ParsingException {
+        return response.decodeResults("visitor group", VisitorGroup.DECODER);
     }
 }
 
@@ -1,6 +1,6 @@
 package com.nettoolkit.gatekeeper;
 
-import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.List;
 import com.nettoolkit.exception.BadArgumentException;
 import com.nettoolkit.exception.NetToolKitException;
@@ -9,8 +9,6 @@ import com.nettoolkit.gatekeeper.GatekeeperClient;
 import com.nettoolkit.gatekeeper.VisitorGroup;
 import com.nettoolkit.internal.ApiResponse;
 import com.nettoolkit.internal.request.GetRequest;
-import com.nettoolkit.json.JSONObject;
-import com.nettoolkit.json.JSONArray;
 
 /**
  * Request to retrieve visits.
@@ -27,6 +25,9 @@ public class GetVisitsRequest extends GetRequest {
         return "/v1/gatekeeper/visits/" + mstrVisitor;
     }
 
+    @Override
+    protected String getPathTemplate() { return "/v1/gatekeeper/visits/{visitor}"; }
+
     public GetVisitsRequest visitor(String strVisitor) {
         mstrVisitor = strVisitor;
         return this;
@@ -49,18 +50,23 @@ public class GetVisitsRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public List<Visit> send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
-        List<Visit> listVisits = new ArrayList<>();
-        JSONArray jsonResults = response.getResults();
-        for (int i = 0; i < jsonResults.length(); i++) {
-            JSONObject jsonVisit = jsonResults.optJSONObject(i);
-            if (jsonVisit == null) {
-                throw new ParsingException("Invalid visit encountered",
-                                           jsonResults.opt(i));
-            }
-            listVisits.add(new Visit(jsonVisit));
-        }
-        return listVisits;
+        return parseVisits(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for a list of visit objects
+     */
+    public CompletableFuture<List<Visit>> sendAsync() {
+        return thenParse(getClient().sendAsync(this), GetVisitsRequest::parseVisits);
+    }
+
+    @Override
+    public boolean isLazyResponse() { return true; }
+
+    private static List<Visit> parseVisits(ApiResponse response) throws ParsingException {
+        return response.decodeResults("visit", Visit.DECODER);
     }
     public static void main(String args[]) throws Exception {
         GatekeeperClient gatekeeper = new GatekeeperClient("");
@@ -0,0 +1,367 @@
+package com.nettoolkit.gatekeeper;
+
+import java.util.Arrays;
+
+/**
+ * IpPrefixTrie is a path-compressed binary trie of IP addresses and CIDR blocks, each with an
+ * expiration time. IPv4 addresses are stored as IPv4-mapped IPv6 addresses
+ * (<code>::ffff:1.2.3.4</code>), so both kinds share one 128-bit trie, and an IPv4-mapped IPv6
+ * visitor matches IPv4 entries.
+ * <p>Only nodes where prefixes branch or end exist, so a lookup visits at most one node per
+ * stored prefix length on the address's path. Nodes are packed four longs each into one array
+ * rather than being objects, so each node visited is one cache line at most, and a lookup
+ * allocates nothing for IPv4.
+ * <p>A trie is filled by one thread with {@link #add} and then only read, from any thread, once
+ * safely published.
+ */
+final class IpPrefixTrie {
+    private static final long NO_VALUE = Long.MIN_VALUE;
+
+    // Each node is four longs:
+    // - HI, LO: the prefix, with the bits past its length cleared.
+    // - EXPIRES: when the node's own prefix expires in epoch milliseconds, or NO_VALUE for a
+    //   node that only branches.
+    // - LINKS: the prefix length in the low 8 bits, then the children by the bit after the
+    //   prefix, each as 28 bits of its node number plus one, 0 meaning none.
+    private static final int HI = 0;
+    private static final int LO = 1;
+    private static final int EXPIRES = 2;
+    private static final int LINKS = 3;
+    private static final int STRIDE = 4;
+    private static final int ZERO_SHIFT = 8;
+    private static final int ONE_SHIFT = 36;
+    private static final long CHILD_MASK = (1L << 28) - 1;
+
+    private long[] mNodes = new long[16 * STRIDE];
+    private int miNodes;
+    private int miRoot = -1;
+
+    /**
+     * Adds an address or CIDR block, e.g. <code>1.2.3.4</code>, <code>10.0.0.0/8</code> or
+     * <code>2001:db8::/32</code>. Bits past the prefix length are ignored. If the prefix is
+     * already there, the later expiration wins.
+     *
+     * @param strValue the address or block
+     * @param lExpires the expiration time in epoch milliseconds, or Long.MAX_VALUE for none
+     * @return false if the value isn't an address or block
+     */
+    boolean add(String strValue, long lExpires) {
+        long[] address = new long[2];
+        int iLength = parse(strValue, address);
+        if (iLength < 0) {
+            return false;
+        }
+        add(address[0] & mask(iLength), address[1] & mask(iLength - 64), iLength, lExpires);
+        return true;
+    }
+
+    /**
+     * Returns whether an address falls in an entry that hasn't expired.
+     *
+     * @param strAddress an IPv4 or IPv6 address
+     * @param lNow the current time in epoch milliseconds
+     * @return whether it's contained, false for anything but an address
+     */
+    boolean contains(String strAddress, long lNow) {
+        long lHi;
+        long lLo;
+        if (strAddress.indexOf(':') < 0) {
+            long lIpv4 = parseIpv4(strAddress, 0, strAddress.length());
+            if (lIpv4 < 0) {
+                return false;
+            }
+            lHi = 0;
+            lLo = 0xFFFF00000000L | lIpv4;
+        } else {
+            long[] address = new long[2];
+            if (parse(strAddress, address) != 128) {
+                return false;
+            }
+            lHi = address[0];
+            lLo = address[1];
+        }
+        return contains(lHi, lLo, lNow);
+    }
+
+    boolean contains(long lHi, long lLo, long lNow) {
+        long[] nodes = mNodes;
+        int iNode = miRoot;
+        while (iNode >= 0) {
+            int iBase = iNode * STRIDE;
+            long lLinks = nodes[iBase + LINKS];
+            int iLength = (int) lLinks & 0xFF;
+            if (((lHi ^ nodes[iBase + HI]) & mask(iLength)) != 0
+                    || ((lLo ^ nodes[iBase + LO]) & mask(iLength - 64)) != 0) {
+                return false;
+            }
+            if (nodes[iBase + EXPIRES] > lNow) {
+                return true;
+            }
+            if (iLength == 128) {
+                return false;
+            }
+            int iShift = bit(lHi, lLo, iLength) == 0 ? ZERO_SHIFT : ONE_SHIFT;
+            iNode = (int) (lLinks >>> iShift & CHILD_MASK) - 1;
+        }
+        return false;
+    }
+
+    int size() {
+        int iSize = 0;
+        for (int i = 0; i < miNodes; i++) {
+            if (mNodes[i * STRIDE + EXPIRES] != NO_VALUE) {
+                iSize++;
+            }
+        }
+        return iSize;
+    }
+
+    private void add(long lHi, long lLo, int iLength, long lExpires) {
+        if (miRoot < 0) {
+            miRoot = newNode(lHi, lLo, iLength, lExpires);
+            return;
+        }
+        int iParent = -1;
+        int iNode = miRoot;
+        while (true) {
+            int iBase = iNode * STRIDE;
+            int iNodeLength = length(iNode);
+            int iCommon = commonLength(lHi, lLo, mNodes[iBase + HI], mNodes[iBase + LO],
+                Math.min(iLength, iNodeLength));
+            if (iCommon < iNodeLength) {
+                // The new prefix leaves the node's path: put a node where they part.
+                int iSplit;
+                if (iCommon == iLength) {
+                    iSplit = newNode(lHi, lLo, iLength, lExpires);
+                } else {
+                    iSplit = newNode(lHi & mask(iCommon), lLo & mask(iCommon - 64), iCommon,
+                        NO_VALUE);
+                    setChild(iSplit, bit(lHi, lLo, iCommon),
+                        newNode(lHi, lLo, iLength, lExpires));
+                }
+                iBase = iNode * STRIDE;
+                setChild(iSplit, bit(mNodes[iBase + HI], mNodes[iBase + LO], iCommon), iNode);
+                if (iParent < 0) {
+                    miRoot = iSplit;
+                } else {
+                    setChild(iParent, bit(lHi, lLo, length(iParent)), iSplit);
+                }
+                return;
+            }
+            if (iNodeLength == iLength) {
+                mNodes[iBase + EXPIRES] = Math.max(mNodes[iBase + EXPIRES], lExpires);
+                return;
+            }
+            int iBit = bit(lHi, lLo, iNodeLength);
+            int iChild = (int) (mNodes[iBase + LINKS] >>> (iBit == 0 ? ZERO_SHIFT : ONE_SHIFT)
+                & CHILD_MASK) - 1;
+            if (iChild < 0) {
+                setChild(iNode, iBit, newNode(lHi, lLo, iLength, lExpires));
+                return;
+            }
+            iParent = iNode;
+            iNode = iChild;
+        }
+    }
+
+    private int newNode(long lHi, long lLo, int iLength, long lExpires) {
+        if (miNodes == CHILD_MASK - 1) {
+            throw new IllegalStateException("Too many prefixes");
+        }
+        if ((miNodes + 1) * STRIDE > mNodes.length) {
+            mNodes = Arrays.copyOf(mNodes, mNodes.length * 2);
+        }
+        int iNode = miNodes++;
+        int iBase = iNode * STRIDE;
+        mNodes[iBase + HI] = lHi;
+        mNodes[iBase + LO] = lLo;
+        mNodes[iBase + EXPIRES] = lExpires;
+        mNodes[iBase + LINKS] = iLength;
+        return iNode;
+    }
+
+    private int length(int iNode) {
+        return (int) mNodes[iNode * STRIDE + LINKS] & 0xFF;
+    }
+
+    private void setChild(int iNode, int iBit, int iChild) {
+        int iShift = iBit == 0 ? ZERO_SHIFT : ONE_SHIFT;
+        int iIndex = iNode * STRIDE + LINKS;
+        mNodes[iIndex] = mNodes[iIndex] & ~(CHILD_MASK << iShift)
+            | (long) (iChild + 1) << iShift;
+    }
+
+    // The mask of the first iBits bits of a 64-bit half; all or nothing outside 0 to 64.
+    private static long mask(int iBits) {
+        if (iBits <= 0) {
+            return 0;
+        }
+        return iBits >= 64 ? -1L : -1L << (64 - iBits);
+    }
+
+    private static int bit(long lHi, long lLo, int iIndex) {
+        return iIndex < 64
+            ? (int) (lHi >>> (63 - iIndex)) & 1
+            : (int) (lLo >>> (127 - iIndex)) & 1;
+    }
+
+    private static int commonLength(long lHiA, long lLoA, long lHiB, long lLoB, int iLimit) {
+        long lDiff = lHiA ^ lHiB;
+        if (lDiff != 0) {
+            return Math.min(Long.numberOfLeadingZeros(lDiff), iLimit);
+        }
+        lDiff = lLoA ^ lLoB;
+        return lDiff != 0 ? Math.min(64 + Long.numberOfLeadingZeros(lDiff), iLimit) : iLimit;
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 address with an optional prefix length into two halves of an IPv6
+     * address, IPv4 addresses being mapped to <code>::ffff:0:0/96</code>.
+     *
+     * @param strValue e.g. <code>1.2.3.4</code>, <code>10.0.0.0/8</code> or
+     *     <code>::1</code>
+     * @param address receives the high and low 64 bits
+     * @return the prefix length in the 128-bit space, 128 without one, or -1 if invalid
+     */
+    static int parse(String strValue, long[] address) {
+        int iSlash = strValue.indexOf('/');
+        int iEnd = iSlash < 0 ? strValue.length() : iSlash;
+        int iMaxLength;
+        if (strValue.lastIndexOf(':', iEnd - 1) < 0) {
+            long lIpv4 = parseIpv4(strValue, 0, iEnd);
+            if (lIpv4 < 0) {
+                return -1;
+            }
+            address[0] = 0;
+            address[1] = 0xFFFF00000000L | lIpv4;
+            iMaxLength = 32;
+        } else {
+            if (!parseIpv6(strValue, 0, iEnd, address)) {
+                return -1;
+            }
+            iMaxLength = 128;
+        }
+        if (iSlash < 0) {
+            return 128;
+        }
+        int iLength = 0;
+        int i = iSlash + 1;
+        if (i == strValue.length() || strValue.length() - i > 3) {
+            return -1;
+        }
+        for (; i < strValue.length(); i++) {
+            char c = strValue.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            iLength = iLength * 10 + (c - '0');
+        }
+        return iLength > iMaxLength ? -1 : 128 - iMaxLength + iLength;
+    }
+
+    // Returns the 32 bits of a dotted IPv4 address, or -1 if invalid.
+    private static long parseIpv4(String str, int iStart, int iEnd) {
+        long lAddress = 0;
+        int iOctets = 0;
+        int i = iStart;
+        while (true) {
+            int j = i;
+            int iOctet = 0;
+            while (j < iEnd && j - i < 3 && str.charAt(j) >= '0' && str.charAt(j) <= '9') {
+                iOctet = iOctet * 10 + (str.charAt(j) - '0');
+                j++;
+            }
+            if (j == i || iOctet > 255) {
+                return -1;
+            }
+            lAddress = lAddress << 8 | iOctet;
+            iOctets++;
+            if (j == iEnd) {
+                break;
+            }
+            if (str.charAt(j) != '.' || iOctets == 4) {
+                return -1;
+            }
+            i = j + 1;
+        }
+        return iOctets == 4 ? lAddress : -1;
+    }
+
+    private static boolean parseIpv6(String str, int iStart, int iEnd, long[] address) {
+        int[] groups = new int[8];
+        int iGroups = 0;
+        // Where "::" is, as a group index, or -1.
+        int iGap = -1;
+        int i = iStart;
+        if (i < iEnd && str.charAt(i) == ':') {
+            if (i + 1 == iEnd || str.charAt(i + 1) != ':') {
+                return false;
+            }
+            iGap = 0;
+            i += 2;
+        }
+        while (i < iEnd) {
+            int j = i;
+            int iGroup = 0;
+            while (j < iEnd && j - i < 5 && Character.digit(str.charAt(j), 16) >= 0) {
+                iGroup = iGroup * 16 + Character.digit(str.charAt(j), 16);
+                j++;
+            }
+            if (j < iEnd && str.charAt(j) == '.') {
+                // An IPv4 address in the last 32 bits.
+                long lIpv4 = parseIpv4(str, i, iEnd);
+                if (lIpv4 < 0 || iGroups > 6) {
+                    return false;
+                }
+                groups[iGroups++] = (int) (lIpv4 >>> 16);
+                groups[iGroups++] = (int) (lIpv4 & 0xFFFF);
+                break;
+            }
+            if (j == i || j - i > 4 || iGroups == 8) {
+                return false;
+            }
+            groups[iGroups++] = iGroup;
+            if (j == iEnd) {
+                break;
+            }
+            if (str.charAt(j) != ':') {
+                return false;
+            }
+            j++;
+            if (j < iEnd && str.charAt(j) == ':') {
+                if (iGap >= 0) {
+                    return false;
+                }
+                iGap = iGroups;
+                j++;
+            } else if (j == iEnd) {
+                return false;
+            }
+            i = j;
+        }
+        if (iGap < 0 ? iGroups != 8 : iGroups > 7) {
+            return false;
+        }
+        long lHi = 0;
+        long lLo = 0;
+        int iShift = 8 - iGroups;
+        for (int k = 0; k < 8; k++) {
+            long lGroup;
+            if (iGap < 0 || k < iGap) {
+                lGroup = groups[k];
+            } else if (k >= iGap + iShift) {
+                lGroup = groups[k - iShift];
+            } else {
+                lGroup = 0;
+            }
+            if (k < 4) {
+                lHi = lHi << 16 | lGroup;
+            } else {
+                lLo = lLo << 16 | lGroup;
+            }
+        }
+        address[0] = lHi;
+        address[1] = lLo;
+        return true;
+    }
+}
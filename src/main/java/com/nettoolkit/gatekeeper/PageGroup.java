@@ -4,15 +4,29 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.UUID;
 import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.internal.ResultDecoder;
 import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONArray;
+import com.nettoolkit.json.JSONParser;
 
 /**
  * PageGroup is a model for classifying different pages on your site based on URL.
  * @see <a href="https://www.nettoolkit.com/docs/gatekeeper/overview/page-groups">Gatekeeper page group docs</a>
  */
 public class PageGroup {
+    static final ResultDecoder<PageGroup> DECODER = new ResultDecoder<PageGroup>() {
+        @Override
+        public PageGroup decode(JSONParser parser) throws JSONException, ParsingException {
+            return new PageGroup(parser);
+        }
+
+        @Override
+        public PageGroup fromJson(JSONObject json) throws ParsingException {
+            return new PageGroup(json);
+        }
+    };
+
     private UUID mId;
     private String mstrName;
     private String mstrPageVisitCheck;
@@ -40,6 +54,40 @@ public class PageGroup {
         mlistPages = listPages;
     }
 
+    /**
+     * Decodes a page group from a parser that has just returned the START_OBJECT of its JSON
+     * object, with the same result as {@link #PageGroup(JSONObject)} but without building the
+     * object.
+     */
+    protected PageGroup(JSONParser parser) throws JSONException, ParsingException {
+        String strId = "";
+        while (parser.nextKey()) {
+            switch (parser.getString()) {
+                case "id":
+                    strId = parser.nextString("");
+                    break;
+                case "name":
+                    mstrName = parser.nextString(null);
+                    break;
+                case "page_visit_check":
+                    mstrPageVisitCheck = parser.nextString(null);
+                    break;
+                case "pages":
+                    List<String> listPages = parser.nextStringList();
+                    mlistPages = listPages != null ? listPages : new ArrayList<>();
+                    break;
+                default:
+                    parser.skipNextValue();
+                    break;
+            }
+        }
+        try {
+            mId = UUID.fromString(strId);
+        } catch (Exception e) {
+            throw new ParsingException("Unable to parse page group ID", e, strId);
+        }
+    }
+
     /**
      * Get page group ID.
      *
@@ -5,9 +5,11 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.UUID;
 import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.internal.ResultDecoder;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONArray;
+import com.nettoolkit.json.JSONParser;
 
 /**
  * Policy is a model for the main building blocks of a rule set.
@@ -15,7 +17,18 @@ import com.nettoolkit.json.JSONArray;
  * @see <a href="https://www.nettoolkit.com/docs/gatekeeper/overview/policies">Gatekeeper policy docs</a>
  */
 public class Policy implements Serializable {
-    private JSONObject mjsonPolicy;
+    static final ResultDecoder<Policy> DECODER = new ResultDecoder<Policy>() {
+        @Override
+        public Policy decode(JSONParser parser) throws JSONException, ParsingException {
+            return new Policy(parser);
+        }
+
+        @Override
+        public Policy fromJson(JSONObject json) throws ParsingException {
+            return new Policy(json);
+        }
+    };
+
     private UUID mId;
     private String mstrName;
     private boolean mbVisitorNegated;
@@ -116,8 +129,136 @@ public class Policy implements Serializable {
         mstrDescription = jsonPolicy.optString("description");
         mlCreated = jsonPolicy.optLong("created");
         mbIsDefault = jsonPolicy.optBoolean("is_default");
+    }
+
+    /**
+     * Decodes a policy from a parser that has just returned the START_OBJECT of its JSON object,
+     * with the same result as {@link #Policy(JSONObject)} but without building the object.
+     */
+    protected Policy(JSONParser parser) throws JSONException, ParsingException {
+        String strId = null;
+        List<String> listVisitorGroupIds = null;
+        List<String> listPageGroupIds = null;
+        String strIpAppenderVisitorGroupId = null;
+        mstrCaptchaStatus = "";
+        mstrUserAgentType = "";
+        mstrTimeIntervalUnit = "";
+        mstrAuthorization = "";
+        mstrReason = "";
+        mstrDescription = "";
+        while (parser.nextKey()) {
+            switch (parser.getString()) {
+                case "id":
+                    strId = parser.nextString(null);
+                    break;
+                case "name":
+                    mstrName = parser.nextString(null);
+                    break;
+                case "visitor_negated":
+                    mbVisitorNegated = parser.nextBoolean(false);
+                    break;
+                case "visitor_group_ids":
+                    listVisitorGroupIds = parser.nextStringList();
+                    break;
+                case "page_group_ids":
+                    listPageGroupIds = parser.nextStringList();
+                    break;
+                case "captcha_status":
+                    mstrCaptchaStatus = parser.nextString("");
+                    break;
+                case "user_agent_type":
+                    mstrUserAgentType = parser.nextString("");
+                    break;
+                case "num_times":
+                    miNumTimes = parser.nextInt(0);
+                    break;
+                case "time_interval_num":
+                    miTimeIntervalNum = parser.nextInt(0);
+                    break;
+                case "time_interval_unit":
+                    mstrTimeIntervalUnit = parser.nextString("");
+                    break;
+                case "visit_interval":
+                    miVisitInterval = parser.nextInt(0);
+                    break;
+                case "authorization":
+                    mstrAuthorization = parser.nextString("");
+                    break;
+                case "reason":
+                    mstrReason = parser.nextString("");
+                    break;
+                case "ip_appender":
+                    if (parser.next() != JSONParser.Token.START_OBJECT) {
+                        parser.skipValue();
+                        break;
+                    }
+                    while (parser.nextKey()) {
+                        switch (parser.getString()) {
+                            case "visitor_group_id":
+                                strIpAppenderVisitorGroupId = parser.nextString(null);
+                                break;
+                            case "expiration_time_num":
+                                miIpAppenderExpirationTimeNum = parser.nextInt(0);
+                                break;
+                            case "expiration_time_unit":
+                                mstrIpAppenderExpirationTimeUnit = parser.nextString("");
+                                break;
+                            default:
+                                parser.skipNextValue();
+                                break;
+                        }
+                    }
+                    break;
+                case "priority":
+                    miPriority = parser.nextInt(0);
+                    break;
+                case "enabled":
+                    mbEnabled = parser.nextBoolean(false);
+                    break;
+                case "description":
+                    mstrDescription = parser.nextString("");
+                    break;
+                case "created":
+                    mlCreated = parser.nextLong(0);
+                    break;
+                case "is_default":
+                    mbIsDefault = parser.nextBoolean(false);
+                    break;
+                default:
+                    parser.skipNextValue();
+                    break;
+            }
+        }
+        try {
+            mId = UUID.fromString(strId);
+        } catch (Exception e) {
+            throw new ParsingException("Unable to parse policy ID", e, strId);
+        }
+        mlistVisitorGroupIds = parseIds(listVisitorGroupIds, "visitor group IDs");
+        mlistPageGroupIds = parseIds(listPageGroupIds, "page group IDs");
+        if (strIpAppenderVisitorGroupId != null) {
+            try {
+                mIpAppenderVisitorGroupId = UUID.fromString(strIpAppenderVisitorGroupId);
+            } catch (Exception e) {
+                throw new ParsingException("Unable to parse IP appender visitor group ID",
+                    e, strIpAppenderVisitorGroupId);
+            }
+        }
+    }
 
-        mjsonPolicy = jsonPolicy;
+    private static List<UUID> parseIds(List<String> listIds, String strName)
+            throws ParsingException {
+        List<UUID> listUuids = new ArrayList<>();
+        if (listIds != null) {
+            for (String strId : listIds) {
+                try {
+                    listUuids.add(UUID.fromString(strId));
+                } catch (Exception e) {
+                    throw new ParsingException("Unable to parse " + strName + " value", e, strId);
+                }
+            }
+        }
+        return listUuids;
     }
 
     /**
@@ -269,8 +410,5 @@ public class Policy implements Serializable {
      * @return whether policy is a default 
      */
     public boolean isDefault() { return mbIsDefault; }
-
-    // @Override
-    // public String toString() { return mjsonPolicy.toString(); }
 }
 
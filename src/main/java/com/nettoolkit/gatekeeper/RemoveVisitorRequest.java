@@ -1,5 +1,6 @@
 package com.nettoolkit.gatekeeper;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.UUID;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.BadArgumentException;
@@ -29,6 +30,11 @@ public class RemoveVisitorRequest extends DeleteRequest {
         return "/v1/gatekeeper/visitor-groups/" + mVisitorGroupId + "/visitors";
     }
 
+    @Override
+    protected String getPathTemplate() {
+        return "/v1/gatekeeper/visitor-groups/{visitorGroupId}/visitors";
+    }
+
     /**
      * Sets the visitor group ID. The visitor will be removed from this visitor group.
      * <em>required</em>
@@ -76,5 +82,19 @@ public class RemoveVisitorRequest extends DeleteRequest {
         }
         getClient().send(this);
     }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future that completes once the request succeeds
+     */
+    public CompletableFuture<Void> sendAsync() {
+        if (mVisitorGroupId == null) {
+            return CompletableFuture.failedFuture(
+                new BadArgumentException("Missing visitor group ID", mVisitorGroupId)
+            );
+        }
+        return thenParse(getClient().sendAsync(this), response -> null);
+    }
 }
 
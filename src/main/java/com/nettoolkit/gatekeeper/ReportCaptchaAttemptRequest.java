@@ -1,6 +1,7 @@
 package com.nettoolkit.gatekeeper;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.internal.request.PutRequest;
 import com.nettoolkit.internal.http.HttpContentType;
@@ -32,6 +33,9 @@ public class ReportCaptchaAttemptRequest extends PutRequest {
         return "/v1/gatekeeper/visits/" + mVisitId + "/captcha";
     }
 
+    @Override
+    protected String getPathTemplate() { return "/v1/gatekeeper/visits/{visitId}/captcha"; }
+
     /**
      * Sets the visit ID. 
      * <em>required</em>
@@ -76,6 +80,15 @@ public class ReportCaptchaAttemptRequest extends PutRequest {
     public void send() throws NetToolKitException {
         getClient().send(this);
     }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future that completes once the request succeeds
+     */
+    public CompletableFuture<Void> sendAsync() {
+        return thenParse(getClient().sendAsync(this), response -> null);
+    }
 }
 
 
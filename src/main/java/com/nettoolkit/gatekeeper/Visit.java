@@ -5,8 +5,11 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.UUID;
 import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.internal.ResultDecoder;
+import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONArray;
+import com.nettoolkit.json.JSONParser;
 
 /**
  * Visit is a model for visit information and authorization.
@@ -15,6 +18,18 @@ import com.nettoolkit.json.JSONArray;
  * @see <a href="https://www.nettoolkit.com/docs/gatekeeper/overview/policies">Gatekeeper policy docs</a>
  */
 public class Visit implements Serializable {
+    static final ResultDecoder<Visit> DECODER = new ResultDecoder<Visit>() {
+        @Override
+        public Visit decode(JSONParser parser) throws JSONException, ParsingException {
+            return new Visit(parser);
+        }
+
+        @Override
+        public Visit fromJson(JSONObject json) throws ParsingException {
+            return new Visit(json);
+        }
+    };
+
     private UUID mId;
     private String mstrIpAddress;
     private String mstrDomain;
@@ -73,6 +88,77 @@ public class Visit implements Serializable {
         }
     }
 
+    /**
+     * Decodes a visit from a parser that has just returned the START_OBJECT of its JSON object,
+     * with the same result as {@link #Visit(JSONObject)} but without building the object.
+     */
+    protected Visit(JSONParser parser) throws JSONException, ParsingException {
+        String strId = null;
+        String strPolicyId = null;
+        while (parser.nextKey()) {
+            switch (parser.getString()) {
+                case "id":
+                    strId = parser.nextString(null);
+                    break;
+                case "ip":
+                    mstrIpAddress = parser.nextString(null);
+                    break;
+                case "domain":
+                    mstrDomain = parser.nextString(null);
+                    break;
+                case "page":
+                    mstrPage = parser.nextString(null);
+                    break;
+                case "user_id":
+                    mlUserId = parser.nextLong(0);
+                    break;
+                case "user_agent":
+                    mstrUserAgent = parser.nextString(null);
+                    break;
+                case "country_code":
+                    mstrCountryCode = parser.nextString(null);
+                    break;
+                case "country_name":
+                    mstrCountryName = parser.nextString(null);
+                    break;
+                case "tags":
+                    List<String> listTags = parser.nextStringList();
+                    mlistTags = listTags != null ? listTags : new ArrayList<>();
+                    break;
+                case "policy_id":
+                    strPolicyId = parser.nextString(null);
+                    break;
+                case "policy_name":
+                    mstrPolicyName = parser.nextString(null);
+                    break;
+                case "authorization":
+                    mstrAuthorization = parser.nextString(null);
+                    break;
+                case "reason":
+                    mstrReason = parser.nextString(null);
+                    break;
+                case "created":
+                    mlCreated = parser.nextLong(0);
+                    break;
+                default:
+                    parser.skipNextValue();
+                    break;
+            }
+        }
+        try {
+            mId = UUID.fromString(strId);
+        } catch (Exception e) {
+            throw new ParsingException("Unable to parse visit ID", e, strId);
+        }
+        if (strPolicyId != null) {
+            try {
+                mPolicyId = UUID.fromString(strPolicyId);
+            } catch (Exception e) {
+                throw new ParsingException("Unable to parse policy ID", e, strPolicyId);
+            }
+        }
+    }
+
     /**
      * Get visit ID.
      *
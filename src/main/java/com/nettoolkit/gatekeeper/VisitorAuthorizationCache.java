@@ -0,0 +1,377 @@
+package com.nettoolkit.gatekeeper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import com.nettoolkit.exception.NetToolKitException;
+
+/**
+ * VisitorAuthorizationCache answers repeat visit authorizations locally, so a visitor browsing a
+ * site needs one round trip to Gatekeeper rather than one per page view. Once set with
+ * {@link GatekeeperClient#setAuthorizationCache}, {@link AuthorizeVisitRequest#send} and
+ * {@link AuthorizeVisitRequest#sendAsync} look up the visit by a key made of the request's
+ * {@link KeyField}s (by default the IP address, URL, user agent and user ID) and only send the
+ * request when there's no fresh visit for it.
+ * <ul>
+ * <li>How long a visit is fresh depends on its authorization. Only authorizations with a TTL are
+ * cached; by default that's just "allow", for 60 seconds.</li>
+ * <li>With a stale-while-revalidate window, a visit that has just expired is still returned for
+ * that long, while one request per key is sent in the background to refresh it.</li>
+ * <li>Once the cache holds its maximum size, the least recently used visits are evicted.</li>
+ * </ul>
+ * <p>A visit from the cache is the one Gatekeeper returned for the first request with the same
+ * key, so its ID is that request's, and page views answered from the cache aren't recorded as
+ * visits. Authorizations with a visit-specific follow-up, such as "captcha", should have no TTL
+ * or a short one.
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * gatekeeperClient.setAuthorizationCache(VisitorAuthorizationCache.newBuilder()
+ *     .ttl("allow", Duration.ofMinutes(5))
+ *     .ttl("captcha", Duration.ofSeconds(10))
+ *     .staleWhileRevalidate(Duration.ofSeconds(30))
+ *     .maximumSize(100_000)
+ *     .build());
+ * </pre></blockquote>
+ */
+public class VisitorAuthorizationCache {
+    /**
+     * The request parameters the cache key can be made of.
+     */
+    public enum KeyField {
+        IP("ip"), URL("url"), USER_AGENT("user_agent"), USER_ID("user_id");
+
+        private final String mstrParameter;
+
+        KeyField(String strParameter) {
+            mstrParameter = strParameter;
+        }
+    }
+
+    // Keys are spread over segments, each locked on its own, to keep threads authorizing
+    // different visitors from contending.
+    private static final int SEGMENTS = 16;
+
+    private final KeyField[] mKeyFields;
+    private final Map<String, Long> mmapTtlNanos;
+    private final long mlDefaultTtlNanos;
+    private final long mlStaleNanos;
+    private final Segment[] mSegments;
+    private final LongAdder mlHits = new LongAdder();
+    private final LongAdder mlStaleHits = new LongAdder();
+    private final LongAdder mlMisses = new LongAdder();
+    private final LongAdder mlEvictions = new LongAdder();
+    private final LongAdder mlRefreshFailures = new LongAdder();
+
+    private VisitorAuthorizationCache(Builder builder) {
+        mKeyFields = builder.mKeyFields;
+        mmapTtlNanos = new HashMap<>();
+        for (Map.Entry<String, Duration> entry : builder.mmapTtls.entrySet()) {
+            mmapTtlNanos.put(entry.getKey(), entry.getValue().toNanos());
+        }
+        mlDefaultTtlNanos = builder.mDefaultTtl.toNanos();
+        mlStaleNanos = builder.mStaleWhileRevalidate.toNanos();
+        int iSegmentSize = (builder.miMaximumSize + SEGMENTS - 1) / SEGMENTS;
+        mSegments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            mSegments[i] = new Segment(iSegmentSize);
+        }
+    }
+
+    public static Builder newBuilder() { return new Builder(); }
+
+    /**
+     * Returns counts of the lookups and evictions so far.
+     *
+     * @return the stats
+     */
+    public Stats getStats() {
+        return new Stats(
+            mlHits.sum(),
+            mlStaleHits.sum(),
+            mlMisses.sum(),
+            mlEvictions.sum(),
+            mlRefreshFailures.sum()
+        );
+    }
+
+    /**
+     * Returns the number of visits in the cache, including expired ones not yet removed.
+     *
+     * @return the size
+     */
+    public int size() {
+        int iSize = 0;
+        for (Segment segment : mSegments) {
+            synchronized (segment) {
+                iSize += segment.size();
+            }
+        }
+        return iSize;
+    }
+
+    /**
+     * Removes every visit, e.g. after changing policies.
+     */
+    public void invalidateAll() {
+        for (Segment segment : mSegments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    Visit authorize(AuthorizeVisitRequest request) throws NetToolKitException {
+        String strKey = keyOf(request);
+        Visit visit = lookup(strKey, request);
+        if (visit != null) {
+            return visit;
+        }
+        visit = request.sendUncached();
+        put(strKey, visit);
+        return visit;
+    }
+
+    CompletableFuture<Visit> authorizeAsync(AuthorizeVisitRequest request) {
+        String strKey = keyOf(request);
+        Visit visit = lookup(strKey, request);
+        if (visit != null) {
+            return CompletableFuture.completedFuture(visit);
+        }
+        return request.sendUncachedAsync().thenApply(sentVisit -> {
+            put(strKey, sentVisit);
+            return sentVisit;
+        });
+    }
+
+    // Returns the cached visit, refreshing it if stale, or null on a miss.
+    private Visit lookup(String strKey, AuthorizeVisitRequest request) {
+        Segment segment = segmentFor(strKey);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(strKey);
+        }
+        long lNow = System.nanoTime();
+        if (entry != null) {
+            if (lNow - entry.mlExpiresNanos < 0) {
+                mlHits.increment();
+                return entry.mVisit;
+            }
+            if (lNow - entry.mlExpiresNanos < mlStaleNanos) {
+                mlStaleHits.increment();
+                if (entry.mbRefreshing.compareAndSet(false, true)) {
+                    refresh(strKey, request, entry);
+                }
+                return entry.mVisit;
+            }
+        }
+        mlMisses.increment();
+        return null;
+    }
+
+    private void refresh(String strKey, AuthorizeVisitRequest request, Entry entry) {
+        request.sendUncachedAsync().whenComplete((visit, failure) -> {
+            if (failure == null) {
+                put(strKey, visit);
+            } else {
+                mlRefreshFailures.increment();
+                // Let the next stale hit try again.
+                entry.mbRefreshing.set(false);
+            }
+        });
+    }
+
+    private void put(String strKey, Visit visit) {
+        Long lTtlNanos = visit.getAuthorization() == null
+            ? null
+            : mmapTtlNanos.get(visit.getAuthorization());
+        long lTtl = lTtlNanos != null ? lTtlNanos : mlDefaultTtlNanos;
+        Segment segment = segmentFor(strKey);
+        synchronized (segment) {
+            if (lTtl <= 0) {
+                // The authorization changed to one that isn't cached.
+                segment.remove(strKey);
+            } else {
+                segment.put(strKey, new Entry(visit, System.nanoTime() + lTtl));
+            }
+        }
+    }
+
+    private String keyOf(AuthorizeVisitRequest request) {
+        StringBuilder sb = new StringBuilder();
+        for (KeyField keyField : mKeyFields) {
+            // NUL can't appear in any of the fields, so keys of different visits can't collide.
+            sb.append(request.getParameters().get(keyField.mstrParameter)).append('\0');
+        }
+        return sb.toString();
+    }
+
+    private Segment segmentFor(String strKey) {
+        int iHash = strKey.hashCode();
+        return mSegments[(iHash ^ (iHash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static class Entry {
+        final Visit mVisit;
+        final long mlExpiresNanos;
+        final AtomicBoolean mbRefreshing = new AtomicBoolean();
+
+        Entry(Visit visit, long lExpiresNanos) {
+            mVisit = visit;
+            mlExpiresNanos = lExpiresNanos;
+        }
+    }
+
+    // A least recently used map; callers synchronize on it.
+    private class Segment extends LinkedHashMap<String, Entry> {
+        private final int miMaximumSize;
+
+        Segment(int iMaximumSize) {
+            super(16, 0.75f, true);
+            miMaximumSize = iMaximumSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > miMaximumSize) {
+                mlEvictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Stats holds counts of a cache's lookups since it was built. A stale hit returned a visit
+     * past its TTL and started a refresh.
+     */
+    public static class Stats {
+        private final long mlHits;
+        private final long mlStaleHits;
+        private final long mlMisses;
+        private final long mlEvictions;
+        private final long mlRefreshFailures;
+
+        Stats(long lHits, long lStaleHits, long lMisses, long lEvictions, long lRefreshFailures) {
+            mlHits = lHits;
+            mlStaleHits = lStaleHits;
+            mlMisses = lMisses;
+            mlEvictions = lEvictions;
+            mlRefreshFailures = lRefreshFailures;
+        }
+
+        public long getHits() { return mlHits; }
+        public long getStaleHits() { return mlStaleHits; }
+        public long getMisses() { return mlMisses; }
+        public long getEvictions() { return mlEvictions; }
+        public long getRefreshFailures() { return mlRefreshFailures; }
+
+        /**
+         * Returns the share of lookups answered from the cache, fresh or stale.
+         *
+         * @return the hit rate, or 0 if there were no lookups
+         */
+        public double getHitRate() {
+            long lLookups = mlHits + mlStaleHits + mlMisses;
+            return lLookups == 0 ? 0 : (double) (mlHits + mlStaleHits) / lLookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "hits=%d, staleHits=%d, misses=%d, hitRate=%.3f, evictions=%d, refreshFailures=%d",
+                mlHits, mlStaleHits, mlMisses, getHitRate(), mlEvictions, mlRefreshFailures
+            );
+        }
+    }
+
+    public static class Builder {
+        private KeyField[] mKeyFields = KeyField.values();
+        private final Map<String, Duration> mmapTtls = new HashMap<>();
+        private Duration mDefaultTtl = Duration.ZERO;
+        private Duration mStaleWhileRevalidate = Duration.ZERO;
+        private int miMaximumSize = 10_000;
+
+        public Builder() {
+            mmapTtls.put("allow", Duration.ofSeconds(60));
+        }
+
+        /**
+         * Sets the request parameters the cache key is made of. Visits whose requests agree on
+         * these share a cache entry. Default is all of them.
+         *
+         * @param keyFields
+         * @return this
+         */
+        public Builder key(KeyField... keyFields) {
+            List<KeyField> listKeyFields = new ArrayList<>();
+            for (KeyField keyField : keyFields) {
+                if (!listKeyFields.contains(keyField)) {
+                    listKeyFields.add(keyField);
+                }
+            }
+            mKeyFields = listKeyFields.toArray(new KeyField[0]);
+            Arrays.sort(mKeyFields);
+            return this;
+        }
+
+        /**
+         * Sets how long visits with an authorization stay fresh. A zero TTL stops them being
+         * cached. Default is 60s for "allow".
+         *
+         * @param strAuthorization e.g. "allow", "deny", "captcha" or a custom authorization
+         * @param ttl
+         * @return this
+         */
+        public Builder ttl(String strAuthorization, Duration ttl) {
+            mmapTtls.put(strAuthorization, ttl);
+            return this;
+        }
+
+        /**
+         * Sets how long visits with an authorization without its own TTL stay fresh. Default is
+         * zero, which doesn't cache them.
+         *
+         * @param defaultTtl
+         * @return this
+         */
+        public Builder defaultTtl(Duration defaultTtl) {
+            mDefaultTtl = defaultTtl;
+            return this;
+        }
+
+        /**
+         * Sets how long past its TTL a visit is still returned while it's refreshed in the
+         * background. Default is zero, which sends the request as soon as a visit expires.
+         *
+         * @param staleWhileRevalidate
+         * @return this
+         */
+        public Builder staleWhileRevalidate(Duration staleWhileRevalidate) {
+            mStaleWhileRevalidate = staleWhileRevalidate;
+            return this;
+        }
+
+        /**
+         * Sets about how many visits the cache holds before evicting the least recently used.
+         * Default is 10,000.
+         *
+         * @param iMaximumSize
+         * @return this
+         */
+        public Builder maximumSize(int iMaximumSize) {
+            miMaximumSize = Math.max(iMaximumSize, 1);
+            return this;
+        }
+
+        public VisitorAuthorizationCache build() {
+            return new VisitorAuthorizationCache(this);
+        }
+    }
+}
@@ -5,9 +5,11 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.UUID;
 import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.internal.ResultDecoder;
 import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONArray;
+import com.nettoolkit.json.JSONParser;
 
 /**
  * VisitorGroup is a model for classifying incoming visits based on information about the visitor.
@@ -15,7 +17,18 @@ import com.nettoolkit.json.JSONArray;
  * @see <a href="https://www.nettoolkit.com/docs/gatekeeper/overview/visitor-groups">Gatekeeper visitor group docs</a>
  */
 public class VisitorGroup implements Serializable {
-    private JSONObject mjsonVisitorGroup;
+    static final ResultDecoder<VisitorGroup> DECODER = new ResultDecoder<VisitorGroup>() {
+        @Override
+        public VisitorGroup decode(JSONParser parser) throws JSONException, ParsingException {
+            return new VisitorGroup(parser);
+        }
+
+        @Override
+        public VisitorGroup fromJson(JSONObject json) throws ParsingException {
+            return new VisitorGroup(json);
+        }
+    };
+
     private UUID mId;
     private String mstrName;
     private String mstrType;
@@ -48,7 +61,55 @@ public class VisitorGroup implements Serializable {
             }
         }
         mlistVisitors = listVisitors;
-        mjsonVisitorGroup = jsonVisitorGroup;
+    }
+
+    /**
+     * Decodes a visitor group from a parser that has just returned the START_OBJECT of its JSON
+     * object, with the same result as {@link #VisitorGroup(JSONObject)} but without building the
+     * object.
+     */
+    protected VisitorGroup(JSONParser parser) throws JSONException, ParsingException {
+        String strId = "";
+        List<Visitor> listVisitors = new ArrayList<>();
+        while (parser.nextKey()) {
+            switch (parser.getString()) {
+                case "id":
+                    strId = parser.nextString("");
+                    break;
+                case "name":
+                    mstrName = parser.nextString(null);
+                    break;
+                case "visitor_type":
+                    mstrType = parser.nextString(null);
+                    break;
+                case "operator":
+                    mstrOperator = parser.nextString(null);
+                    break;
+                case "visitors":
+                    if (parser.next() != JSONParser.Token.START_ARRAY) {
+                        parser.skipValue();
+                        break;
+                    }
+                    for (JSONParser.Token token = parser.next();
+                            token != JSONParser.Token.END_ARRAY; token = parser.next()) {
+                        if (token != JSONParser.Token.START_OBJECT) {
+                            throw new ParsingException("Unable to parse visitor",
+                                parser.getValue());
+                        }
+                        listVisitors.add(new Visitor(parser));
+                    }
+                    break;
+                default:
+                    parser.skipNextValue();
+                    break;
+            }
+        }
+        try {
+            mId = UUID.fromString(strId);
+        } catch (Exception e) {
+            throw new ParsingException("Unable to parse visitor group ID", e, strId);
+        }
+        mlistVisitors = listVisitors;
     }
 
     /**
@@ -82,7 +143,12 @@ public class VisitorGroup implements Serializable {
      */
     public String getOperator() { return mstrOperator; }
 
-    // public JSONObject toJson() { return mjsonVisitorGroup; }
+    /**
+     * Get the members of this visitor group.
+     *
+     * @return visitors
+     */
+    public List<Visitor> getVisitors() { return mlistVisitors; }
 
     public static class Visitor {
         private String mstrValue;
@@ -107,6 +173,38 @@ public class VisitorGroup implements Serializable {
             }
         }
 
+        protected Visitor(JSONParser parser) throws JSONException {
+            String strCreatorType = null;
+            String strCreatorName = null;
+            while (parser.nextKey()) {
+                switch (parser.getString()) {
+                    case "value":
+                        mstrValue = parser.nextString(null);
+                        break;
+                    case "created":
+                        mlCreated = parser.nextLong(0);
+                        break;
+                    case "expires":
+                        mlExpires = parser.nextLong(0);
+                        break;
+                    case "creator_type":
+                        strCreatorType = parser.nextString(null);
+                        break;
+                    case "creator_name":
+                        strCreatorName = parser.nextString(null);
+                        break;
+                    default:
+                        parser.skipNextValue();
+                        break;
+                }
+            }
+            if (strCreatorType != null && strCreatorName != null) {
+                mstrCreator = strCreatorType + " " + strCreatorName;
+            } else {
+                mstrCreator = strCreatorType;
+            }
+        }
+
         public String getValue() { return mstrValue; }
         public Long getCreated() { return mlCreated; }
         public Long getExpires() { return mlExpires; }
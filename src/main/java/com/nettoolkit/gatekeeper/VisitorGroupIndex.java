@@ -0,0 +1,202 @@
+package com.nettoolkit.gatekeeper;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import com.nettoolkit.exception.NetToolKitException;
+
+/**
+ * VisitorGroupIndex answers visitor group membership checks locally, from the member lists that
+ * {@link GetVisitorGroupsRequest} returns, instead of sending a
+ * {@link CheckVisitorGroupMembershipRequest} per check.
+ * <ul>
+ * <li>IP groups are compiled into a path-compressed binary trie of their IPv4 and IPv6
+ * addresses and CIDR blocks, so a check costs one walk down the trie.</li>
+ * <li>Other groups match the visitor against their values exactly. USER_ID groups with an
+ * operator other than IN compare ranges on the server and aren't indexed.</li>
+ * <li>A member stops matching once its expiration time has passed, even between refreshes.</li>
+ * <li>{@link #startRefreshing} reloads every group in the background. A failed reload keeps the
+ * groups already loaded.</li>
+ * </ul>
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * VisitorGroupIndex index = new VisitorGroupIndex(gatekeeperClient);
+ * index.refresh();
+ * index.startRefreshing(Duration.ofMinutes(1));
+ * if (index.isMember(blocklistId, request.getRemoteAddr())) {
+ *     ...
+ * }
+ * </pre></blockquote>
+ */
+public class VisitorGroupIndex implements AutoCloseable {
+    private final GatekeeperClient mClient;
+    private volatile Map<UUID, Group> mmapGroups = Collections.emptyMap();
+    private volatile boolean mbClosed;
+    private volatile long mlLastRefreshed;
+    private final LongAdder mlRefreshFailures = new LongAdder();
+
+    public VisitorGroupIndex(GatekeeperClient client) {
+        mClient = client;
+    }
+
+    /**
+     * Loads every visitor group, replacing the groups loaded before.
+     *
+     * @throws NetToolKitException if the groups can't be retrieved
+     */
+    public void refresh() throws NetToolKitException {
+        load(mClient.newGetVisitorGroupsRequest().send());
+    }
+
+    /**
+     * Indexes the given groups, replacing the groups loaded before. Checks in progress see either
+     * the old groups or the new ones.
+     *
+     * @param visitorGroups the groups, with their visitors
+     */
+    public void load(Collection<VisitorGroup> visitorGroups) {
+        Map<UUID, Group> mapGroups = new HashMap<>();
+        for (VisitorGroup visitorGroup : visitorGroups) {
+            Group group = Group.of(visitorGroup);
+            if (group != null) {
+                mapGroups.put(visitorGroup.getId(), group);
+            }
+        }
+        mmapGroups = mapGroups;
+        mlLastRefreshed = System.currentTimeMillis();
+    }
+
+    /**
+     * Reloads every group each interval, in the background, until {@link #close}. The first
+     * reload happens after one interval; call {@link #refresh} first to load the groups now.
+     *
+     * @param interval the time between the end of one reload and the start of the next
+     */
+    public void startRefreshing(Duration interval) {
+        CompletableFuture.runAsync(
+            () -> { },
+            CompletableFuture.delayedExecutor(interval.toNanos(), TimeUnit.NANOSECONDS)
+        ).thenCompose(v -> {
+            if (mbClosed) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return mClient.newGetVisitorGroupsRequest().sendAsync();
+        }).whenComplete((listVisitorGroups, failure) -> {
+            if (mbClosed) {
+                return;
+            }
+            if (failure == null) {
+                load(listVisitorGroups);
+            } else {
+                mlRefreshFailures.increment();
+            }
+            startRefreshing(interval);
+        });
+    }
+
+    /**
+     * Stops background refreshes. The groups already loaded can still be checked.
+     */
+    @Override
+    public void close() {
+        mbClosed = true;
+    }
+
+    /**
+     * Returns whether a visitor is an unexpired member of a visitor group.
+     *
+     * @param visitorGroupId the group
+     * @param strVisitor an IP address for IP groups, or the value to match for other groups
+     * @return whether the visitor is a member
+     * @throws IllegalArgumentException if the group isn't indexed
+     */
+    public boolean isMember(UUID visitorGroupId, String strVisitor) {
+        Group group = mmapGroups.get(visitorGroupId);
+        if (group == null) {
+            throw new IllegalArgumentException("Visitor group " + visitorGroupId
+                + " is not indexed");
+        }
+        return group.contains(strVisitor, System.currentTimeMillis());
+    }
+
+    /**
+     * Returns whether a visitor group was loaded and can be checked locally.
+     *
+     * @param visitorGroupId the group
+     * @return whether {@link #isMember} can check it
+     */
+    public boolean isIndexed(UUID visitorGroupId) {
+        return mmapGroups.containsKey(visitorGroupId);
+    }
+
+    /**
+     * Returns when the groups were last loaded.
+     *
+     * @return the time in epoch milliseconds, or 0 if they never were
+     */
+    public long getLastRefreshed() { return mlLastRefreshed; }
+
+    public long getRefreshFailures() { return mlRefreshFailures.sum(); }
+
+    private static class Group {
+        private final IpPrefixTrie mTrie;
+        private final Map<String, Long> mmapExpires;
+
+        private Group(IpPrefixTrie trie, Map<String, Long> mapExpires) {
+            mTrie = trie;
+            mmapExpires = mapExpires;
+        }
+
+        // Returns null for groups that can't be matched locally.
+        static Group of(VisitorGroup visitorGroup) {
+            List<VisitorGroup.Visitor> listVisitors = visitorGroup.getVisitors();
+            long lNow = System.currentTimeMillis();
+            if ("IP".equalsIgnoreCase(visitorGroup.getType())) {
+                IpPrefixTrie trie = new IpPrefixTrie();
+                for (VisitorGroup.Visitor visitor : listVisitors) {
+                    long lExpires = expiresOf(visitor);
+                    if (visitor.getValue() != null && lExpires > lNow) {
+                        // Values that aren't addresses can't match any visitor.
+                        trie.add(visitor.getValue(), lExpires);
+                    }
+                }
+                return new Group(trie, null);
+            }
+            if ("USER_ID".equalsIgnoreCase(visitorGroup.getType())
+                    && !"IN".equalsIgnoreCase(visitorGroup.getOperator())) {
+                return null;
+            }
+            Map<String, Long> mapExpires = new HashMap<>();
+            for (VisitorGroup.Visitor visitor : listVisitors) {
+                long lExpires = expiresOf(visitor);
+                if (visitor.getValue() != null && lExpires > lNow) {
+                    mapExpires.merge(visitor.getValue(), lExpires, Math::max);
+                }
+            }
+            return new Group(null, mapExpires);
+        }
+
+        boolean contains(String strVisitor, long lNow) {
+            if (strVisitor == null) {
+                return false;
+            }
+            if (mTrie != null) {
+                return mTrie.contains(strVisitor, lNow);
+            }
+            Long lExpires = mmapExpires.get(strVisitor);
+            return lExpires != null && lExpires > lNow;
+        }
+
+        private static long expiresOf(VisitorGroup.Visitor visitor) {
+            Long lExpires = visitor.getExpires();
+            return lExpires == null || lExpires <= 0 ? Long.MAX_VALUE : lExpires;
+        }
+    }
+}
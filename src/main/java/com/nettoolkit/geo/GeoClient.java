@@ -1,6 +1,7 @@
 package com.nettoolkit.geo;
 
 import com.nettoolkit.internal.NetToolKitClient;
+import com.nettoolkit.internal.http.HttpTransport;
 
 public class GeoClient extends NetToolKitClient {
     /**
@@ -16,6 +17,10 @@ public class GeoClient extends NetToolKitClient {
         super(strApiKey, bUseHttps);
     }
 
+    public GeoClient(String strApiKey, boolean bUseHttps, HttpTransport transport) {
+        super(strApiKey, bUseHttps, transport);
+    }
+
     /**
      * Creates a new request to authorize a visit. Call {@link com.nettoolkit.gatekeeper.AuthorizeVisitRequest#send} to execute.
      *
@@ -1,10 +1,29 @@
 package com.nettoolkit.geo;
 
 import java.util.ArrayList;
+import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.internal.ResultDecoder;
 import com.nettoolkit.json.JSONException;
 import com.nettoolkit.json.JSONObject;
+import com.nettoolkit.json.JSONParser;
 
 public class Geocode {
+    static final ResultDecoder<Geocode> DECODER = new ResultDecoder<Geocode>() {
+        @Override
+        public Geocode decode(JSONParser parser) throws JSONException {
+            return Geocode.decode(parser);
+        }
+
+        @Override
+        public Geocode fromJson(JSONObject json) throws ParsingException {
+            try {
+                return Geocode.fromJson(json);
+            } catch (JSONException jsone) {
+                throw new ParsingException(jsone, json);
+            }
+        }
+    };
+
     private String mstrAddress;
     private String mstrHouseNumber;
     private String mstrStreet;
@@ -24,6 +43,9 @@ public class Geocode {
     private Double mdLongitude;
     private JSONObject mjsonOriginal;
 
+    private Geocode() {
+    }
+
     private Geocode(
         String strAddress,
         String strHouseNumber,
@@ -87,6 +109,94 @@ public class Geocode {
         );
     }
 
+    /**
+     * Decodes a geocode from a parser that has just returned the START_OBJECT of its JSON
+     * object, with the same result as {@link #fromJson} except that the original JSON isn't kept.
+     *
+     * @param parser the parser
+     * @return the geocode
+     * @throws JSONException if the geocode isn't valid JSON or a coordinate isn't a number
+     */
+    public static Geocode decode(JSONParser parser) throws JSONException {
+        Geocode geocode = new Geocode();
+        String strProvider = null;
+        String strPrecision = null;
+        while (parser.nextKey()) {
+            switch (parser.getString()) {
+                case "address":
+                    geocode.mstrAddress = parser.nextString(null);
+                    break;
+                case "house_number":
+                    geocode.mstrHouseNumber = parser.nextString(null);
+                    break;
+                case "street":
+                    geocode.mstrStreet = parser.nextString(null);
+                    break;
+                case "street_name":
+                    geocode.mstrStreetName = parser.nextString(null);
+                    break;
+                case "street_number":
+                    geocode.mstrStreetNumber = parser.nextString(null);
+                    break;
+                case "street_type":
+                    geocode.mstrStreetType = parser.nextString(null);
+                    break;
+                case "city":
+                    geocode.mstrCity = parser.nextString(null);
+                    break;
+                case "postal_code":
+                    geocode.mstrPostalCode = parser.nextString(null);
+                    break;
+                case "county":
+                    geocode.mstrCounty = parser.nextString(null);
+                    break;
+                case "state":
+                    geocode.mstrState = parser.nextString(null);
+                    break;
+                case "state_code":
+                    geocode.mstrStateCode = parser.nextString(null);
+                    break;
+                case "country":
+                    geocode.mstrCountry = parser.nextString(null);
+                    break;
+                case "country_code":
+                    geocode.mstrCountryCode = parser.nextString(null);
+                    break;
+                case "provider":
+                    strProvider = parser.nextString(null);
+                    break;
+                case "precision":
+                    strPrecision = parser.nextString(null);
+                    break;
+                case "latitude":
+                    geocode.mdLatitude = nextDouble(parser, "latitude");
+                    break;
+                case "longitude":
+                    geocode.mdLongitude = nextDouble(parser, "longitude");
+                    break;
+                default:
+                    parser.skipNextValue();
+                    break;
+            }
+        }
+        geocode.mProvider = Provider.fromString(strProvider);
+        geocode.mPrecision = Precision.fromString(strPrecision);
+        return geocode;
+    }
+
+    // Reads a coordinate as JSONObject.getDouble does.
+    private static Double nextDouble(JSONParser parser, String strKey) throws JSONException {
+        Object value = parser.nextValue();
+        try {
+            return value instanceof Number
+                ? ((Number) value).doubleValue()
+                : Double.parseDouble((String) value);
+        } catch (Exception e) {
+            throw new JSONException("JSONObject[" + JSONObject.quote(strKey)
+                + "] is not a number.");
+        }
+    }
+
     public String getAddress() { return mstrAddress; }
 
     public String getHouseNumber() { return mstrHouseNumber; }
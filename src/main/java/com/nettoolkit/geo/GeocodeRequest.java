@@ -1,6 +1,7 @@
 package com.nettoolkit.geo;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.List;
 import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
@@ -20,6 +21,8 @@ import com.nettoolkit.json.JSONObject;
  * </pre></blockquote>
  */
 public class GeocodeRequest extends GetRequest {
+    protected boolean mbRetainOriginalJson = true;
+
     public GeocodeRequest(GeoClient client) {
         super(client);
     }
@@ -104,6 +107,22 @@ public class GeocodeRequest extends GetRequest {
         return this;
     }
 
+    /**
+     * Sets whether each geocode keeps the JSON object it was read from, see
+     * {@link Geocode#getOriginalJson}. Without it, geocodes are decoded straight from the
+     * response text, which is faster and holds less memory. Defaults to true.
+     *
+     * @param bRetainOriginalJson whether to keep the original JSON
+     * @return this
+     */
+    public GeocodeRequest retainOriginalJson(boolean bRetainOriginalJson) {
+        mbRetainOriginalJson = bRetainOriginalJson;
+        return this;
+    }
+
+    @Override
+    public boolean isLazyResponse() { return !mbRetainOriginalJson; }
+
     /**
      * Sends the request.
      *
@@ -111,7 +130,22 @@ public class GeocodeRequest extends GetRequest {
      * @throws NetToolKitException
      */
     public List<Geocode> send() throws NetToolKitException {
-        ApiResponse response = getClient().send(this);
+        return parseGeocodes(getClient().send(this));
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     *
+     * @return a future for a list of geocode objects
+     */
+    public CompletableFuture<List<Geocode>> sendAsync() {
+        return thenParse(getClient().sendAsync(this), this::parseGeocodes);
+    }
+
+    private List<Geocode> parseGeocodes(ApiResponse response) throws ParsingException {
+        if (!mbRetainOriginalJson) {
+            return response.decodeResults("geocode", Geocode.DECODER);
+        }
         JSONArray jsonGeocodes = response.getResults();
         List<Geocode> listGeocodes = new ArrayList<>();
         for (int i = 0; i < jsonGeocodes.length(); i++) {
@@ -0,0 +1,68 @@
+package com.nettoolkit.internal;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * ApiCallEvent is a JDK Flight Recorder event for one HTTP exchange with the web API. Every
+ * attempt of a request gets its own event, so retries and hedged copies show up separately.
+ * <p>The event is disabled by default. Enable it in a recording with
+ * <code>-XX:StartFlightRecording:settings=profile,+com.nettoolkit.ApiCall#enabled=true</code>
+ * (JDK 17+), or with a .jfc file that sets <code>com.nettoolkit.ApiCall#enabled</code> to true.
+ * While it is not recorded, the client doesn't create the event or do any of the bookkeeping
+ * for it.
+ */
+@Name("com.nettoolkit.ApiCall")
+@Label("NetToolKit API Call")
+@Description("An HTTP exchange with the NetToolKit web API")
+@Category({"NetToolKit"})
+@Enabled(false)
+@StackTrace(false)
+public final class ApiCallEvent extends Event {
+    private static final EventType TYPE = EventType.getEventType(ApiCallEvent.class);
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @Description("Bytes received on the wire, before decompression")
+    @DataAmount
+    long responseBytes;
+
+    @Label("HTTP Status")
+    int httpStatus;
+
+    @Label("Status Code")
+    @Description("The API status code, or TIMEOUT, CONNECTION_FAILURE, PARSE_FAILURE or OTHER")
+    String statusCode;
+
+    @Label("Retry Count")
+    @Description("The number of attempts of this request made before this one")
+    int retryCount;
+
+    @Label("Parse Time")
+    @Timespan
+    long parseTime;
+
+    /**
+     * Returns whether any recording takes these events, so callers can skip creating one.
+     *
+     * @return whether the event type is enabled
+     */
+    static boolean isTypeEnabled() { return TYPE.isEnabled(); }
+}
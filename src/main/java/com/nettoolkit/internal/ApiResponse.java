@@ -1,15 +1,23 @@
 package com.nettoolkit.internal;
 
 import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.exception.ApiException;
+import com.nettoolkit.internal.http.JsonBody;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONArray;
 import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONIndex;
+import com.nettoolkit.json.JSONParser;
 
 public class ApiResponse {
     private String mstrResponseBody;
     private JSONObject mjsonResponseBody;
+    // Set instead of mjsonResponseBody until it's needed when the body was parsed lazily.
+    private JSONIndex mIndex;
+    private JSONArray mjsonResults;
 
     public ApiResponse(HttpResponse<String> response)
             throws ParsingException, ApiException {
@@ -17,17 +25,64 @@ public class ApiResponse {
         mjsonResponseBody = parseResponse(mstrResponseBody);
     }
 
+    public ApiResponse(JsonBody body) throws ParsingException, ApiException {
+        mstrResponseBody = body.getRaw();
+        mIndex = body.getIndex();
+        if (mIndex == null) {
+            mjsonResponseBody = checkResponse(body.getJson());
+        } else {
+            // Only the status fields are read up front.
+            JSONObject jsonStatus = new JSONObject();
+            try {
+                int iRoot = mIndex.root();
+                jsonStatus.putOpt("code", mIndex.value(mIndex.find(iRoot, "code")));
+                jsonStatus.putOpt("message", mIndex.value(mIndex.find(iRoot, "message")));
+            } catch (JSONException jsone) {
+                throw new ParsingException(jsone, getSource());
+            }
+            try {
+                checkResponse(jsonStatus);
+            } catch (ParsingException pe) {
+                // Report it with the whole body, as when parsing eagerly.
+                checkResponse(getJsonBody());
+                throw pe;
+            }
+        }
+    }
+
+    /**
+     * Returns the raw response text. Responses parsed from a {@link JsonBody} only keep it if
+     * the client was set to retain raw response bodies; otherwise this returns null.
+     *
+     * @return the raw response body, or null if it wasn't retained
+     */
     public String getRawResponseBody() { return mstrResponseBody; }
 
     public JSONArray getResults() throws ParsingException {
-        JSONArray jsonResults = mjsonResponseBody.optJSONArray("results");
+        if (mjsonResults == null && mjsonResponseBody == null) {
+            Object results = readLazily("results", -1);
+            if (results instanceof JSONArray) {
+                mjsonResults = (JSONArray) results;
+            }
+        }
+        if (mjsonResults != null) {
+            return mjsonResults;
+        }
+        JSONObject jsonBody = getJsonBody();
+        JSONArray jsonResults = jsonBody.optJSONArray("results");
         if (jsonResults == null) {
-            throw new ParsingException("Missing 'results' from response", mjsonResponseBody);
+            throw new ParsingException("Missing 'results' from response", jsonBody);
         }
         return jsonResults;
     }
 
     public JSONObject getFirstResult() throws ParsingException {
+        if (mjsonResults == null && mjsonResponseBody == null) {
+            Object result = readLazily("results", 0);
+            if (result != null) {
+                return result instanceof JSONObject ? (JSONObject) result : null;
+            }
+        }
         JSONArray jsonResults = getResults();
         if (jsonResults.length() < 1) {
             throw new ParsingException("No results", jsonResults);
@@ -35,7 +90,82 @@ public class ApiResponse {
         return jsonResults.optJSONObject(0);
     }
 
+    /**
+     * Decodes each of the results into a model object. When the response was parsed lazily, the
+     * results are decoded straight from the response text and no JSON objects are built.
+     *
+     * @param strName what a result is, for the error if one isn't an object
+     * @param decoder decodes one result
+     * @return the model objects
+     * @throws ParsingException if the results are missing or a result is invalid
+     */
+    public <T> List<T> decodeResults(String strName, ResultDecoder<T> decoder)
+            throws ParsingException {
+        List<T> listResults = new ArrayList<>();
+        if (mjsonResults == null && mjsonResponseBody == null) {
+            int iResults = -1;
+            try {
+                iResults = mIndex.find(mIndex.root(), "results");
+            } catch (JSONException jsone) {
+                // Reported from the whole body below.
+            }
+            if (mIndex.isArray(iResults)) {
+                JSONParser parser = mIndex.parser(iResults);
+                try {
+                    parser.next();
+                    for (JSONParser.Token token = parser.next();
+                            token != JSONParser.Token.END_ARRAY; token = parser.next()) {
+                        if (token != JSONParser.Token.START_OBJECT) {
+                            throw new ParsingException("Invalid " + strName + " encountered",
+                                parser.getValue());
+                        }
+                        listResults.add(decoder.decode(parser));
+                    }
+                } catch (JSONException jsone) {
+                    throw new ParsingException(jsone, getSource());
+                }
+                return listResults;
+            }
+        }
+        JSONArray jsonResults = getResults();
+        for (int i = 0; i < jsonResults.length(); i++) {
+            JSONObject jsonResult = jsonResults.optJSONObject(i);
+            if (jsonResult == null) {
+                throw new ParsingException("Invalid " + strName + " encountered",
+                    jsonResults.opt(i));
+            }
+            listResults.add(decoder.fromJson(jsonResult));
+        }
+        return listResults;
+    }
+
     // Helpers
+    private JSONObject getJsonBody() throws ParsingException {
+        if (mjsonResponseBody == null) {
+            try {
+                mjsonResponseBody = mIndex.toJSONObject();
+            } catch (JSONException jsone) {
+                throw new ParsingException(jsone, getSource());
+            }
+        }
+        return mjsonResponseBody;
+    }
+
+    // Reads a value of a lazily parsed body, or an element of it if iElement isn't -1. Returns
+    // null if it's missing or invalid, so the caller can report it from the whole body.
+    private Object readLazily(String strKey, int iElement) {
+        try {
+            int iPos = mIndex.find(mIndex.root(), strKey);
+            return mIndex.value(iElement < 0 ? iPos : mIndex.element(iPos, iElement));
+        } catch (JSONException jsone) {
+            return null;
+        }
+    }
+
+    private Object getSource() {
+        return mstrResponseBody != null ? mstrResponseBody : mIndex.toString();
+    }
+
     protected static JSONObject parseResponse(String strResponse)
             throws ParsingException, ApiException {
         if (strResponse == null || strResponse.length() < 1) {
@@ -43,15 +173,24 @@ public class ApiResponse {
         }
 
         try {
-            JSONObject jsonResponse = new JSONObject(strResponse);
-            int iCode = jsonResponse.getInt("code");
-            if (iCode >= 2000) {
-                throw new ApiException(iCode, jsonResponse.optString("message"));
-            }
-            return jsonResponse;
+            return checkResponse(new JSONObject(strResponse));
         } catch (JSONException jsone) {
             throw new ParsingException(jsone, strResponse);
         }
     }
+
+    protected static JSONObject checkResponse(JSONObject jsonResponse)
+            throws ParsingException, ApiException {
+        int iCode;
+        try {
+            iCode = jsonResponse.getInt("code");
+        } catch (JSONException jsone) {
+            throw new ParsingException(jsone, jsonResponse);
+        }
+        if (iCode >= 2000) {
+            throw new ApiException(iCode, jsonResponse.optString("message"));
+        }
+        return jsonResponse;
+    }
 }
 
@@ -1,16 +1,22 @@
 package com.nettoolkit.internal;
 
 import java.net.http.HttpResponse;
+import java.util.List;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.exception.ResponseParsingException;
 import com.nettoolkit.exception.ApiException;
+import com.nettoolkit.internal.http.JsonBody;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONArray;
 import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONIndex;
 
 public class ApiV2Response {
     private String mstrResponseBody;
     private JSONObject mjsonResponseBody;
+    // Set instead of mjsonResponseBody until it's needed when the body was parsed lazily.
+    private JSONIndex mIndex;
+    private JSONObject mjsonData;
 
     public ApiV2Response(HttpResponse<String> response)
             throws ParsingException, ApiException {
@@ -18,25 +24,88 @@ public class ApiV2Response {
         mjsonResponseBody = parseBody(mstrResponseBody);
     }
 
+    public ApiV2Response(JsonBody body) throws ParsingException, ApiException {
+        mstrResponseBody = body.getRaw();
+        mIndex = body.getIndex();
+        if (mIndex == null) {
+            mjsonResponseBody = checkBody(body.getJson());
+        } else {
+            // Only the errors are read up front.
+            JSONObject jsonStatus = new JSONObject();
+            try {
+                jsonStatus.putOpt("errors", mIndex.value(mIndex.find(mIndex.root(), "errors")));
+            } catch (JSONException jsone) {
+                throw new ParsingException(jsone, getSource());
+            }
+            try {
+                checkBody(jsonStatus);
+            } catch (ParsingException pe) {
+                // Report it with the whole body, as when parsing eagerly.
+                checkBody(parseWhole());
+                throw pe;
+            }
+        }
+    }
+
+    /**
+     * Returns the raw response text. Responses parsed from a {@link JsonBody} only keep it if
+     * the client was set to retain raw response bodies; otherwise this returns null.
+     *
+     * @return the raw response body, or null if it wasn't retained
+     */
     public String getRawResponseBody() { return mstrResponseBody; }
 
-    public JSONObject getJsonBody() { return mjsonResponseBody; }
+    /**
+     * Returns the parsed response body. A body parsed lazily is parsed whole on the first call.
+     *
+     * @return the response body
+     * @throws IllegalStateException if the body was parsed lazily and isn't valid JSON
+     */
+    public JSONObject getJsonBody() {
+        try {
+            return parseWhole();
+        } catch (ParsingException pe) {
+            throw new IllegalStateException(pe);
+        }
+    }
 
     public JSONObject getData() throws ResponseParsingException {
+        if (mjsonData == null && mjsonResponseBody == null) {
+            Object data = readLazily("data", null);
+            if (data instanceof JSONObject) {
+                mjsonData = (JSONObject) data;
+            }
+        }
+        if (mjsonData != null) {
+            return mjsonData;
+        }
+        JSONObject jsonBody;
+        try {
+            jsonBody = parseWhole();
+        } catch (ParsingException pe) {
+            Throwable cause = pe.getCause() != null ? pe.getCause() : pe;
+            throw new ResponseParsingException(cause, pe.getSource());
+        }
         try {
-            return mjsonResponseBody.getJSONObject("data");
+            return jsonBody.getJSONObject("data");
         } catch (Exception e) {
             throw ResponseParsingException.expectedJsonObject(
                 "body",
                 "data",
-                mjsonResponseBody.opt("data"),
+                jsonBody.opt("data"),
                 e,
-                mjsonResponseBody
+                jsonBody
             );
         }
     }
 
     public JSONObject getDataJsonObject(String strKey) throws ResponseParsingException {
+        if (mjsonData == null && mjsonResponseBody == null) {
+            Object value = readLazily("data", strKey);
+            if (value instanceof JSONObject) {
+                return (JSONObject) value;
+            }
+        }
         JSONObject jsonData = getData();
         try {
             return jsonData.getJSONObject(strKey);
@@ -52,6 +121,12 @@ public class ApiV2Response {
     }
 
     public JSONArray getDataJsonArray(String strKey) throws ResponseParsingException {
+        if (mjsonData == null && mjsonResponseBody == null) {
+            Object value = readLazily("data", strKey);
+            if (value instanceof JSONArray) {
+                return (JSONArray) value;
+            }
+        }
         JSONObject jsonData = getData();
         try {
             return jsonData.getJSONArray(strKey);
@@ -67,22 +142,58 @@ public class ApiV2Response {
     }
 
     // Helpers
+    private JSONObject parseWhole() throws ParsingException {
+        if (mjsonResponseBody == null) {
+            try {
+                mjsonResponseBody = mIndex.toJSONObject();
+            } catch (JSONException jsone) {
+                throw new ParsingException(jsone, getSource());
+            }
+        }
+        return mjsonResponseBody;
+    }
+
+    // Reads a value of a lazily parsed body, or a value within it if strInnerKey isn't null.
+    // Returns null if it's missing or invalid, so the caller can report it from the whole body.
+    private Object readLazily(String strKey, String strInnerKey) {
+        try {
+            int iPos = mIndex.find(mIndex.root(), strKey);
+            return mIndex.value(strInnerKey == null ? iPos : mIndex.find(iPos, strInnerKey));
+        } catch (JSONException jsone) {
+            return null;
+        }
+    }
+
+    private Object getSource() {
+        return mstrResponseBody != null ? mstrResponseBody : mIndex.toString();
+    }
+
     protected static JSONObject parseBody(String strResponseJson)
             throws ParsingException, ApiException {
         if (strResponseJson == null || strResponseJson.length() < 1) {
             throw new ParsingException("Got empty response", strResponseJson);
         }
         try {
-            JSONObject jsonBody = new JSONObject(strResponseJson);
-            JSONArray jsonErrors = jsonBody.optJSONArray("errors");
-            if (jsonErrors != null && jsonErrors.length() > 0) {
-                throw new ApiException(ApiException.ApiError.listFromJson(jsonErrors));
-            }
-            return jsonBody;
+            return checkBody(new JSONObject(strResponseJson));
         } catch (JSONException jsone) {
             throw new ParsingException(jsone, strResponseJson);
         }
     }
+
+    protected static JSONObject checkBody(JSONObject jsonBody)
+            throws ParsingException, ApiException {
+        JSONArray jsonErrors = jsonBody.optJSONArray("errors");
+        if (jsonErrors != null && jsonErrors.length() > 0) {
+            List<ApiException.ApiError> listErrors;
+            try {
+                listErrors = ApiException.ApiError.listFromJson(jsonErrors);
+            } catch (JSONException jsone) {
+                throw new ParsingException(jsone, jsonBody);
+            }
+            throw new ApiException(listErrors);
+        }
+        return jsonBody;
+    }
 }
 
 
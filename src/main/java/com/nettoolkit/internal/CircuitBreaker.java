@@ -0,0 +1,373 @@
+package com.nettoolkit.internal;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CircuitBreaker stops sending requests to an endpoint that keeps failing or responding slowly,
+ * so callers fail fast with a {@link com.nettoolkit.exception.CircuitBreakerOpenException}
+ * instead of each waiting for the full timeout.
+ * <p>Each endpoint ("POST /v1/gatekeeper/visits") has its own circuit, which records the outcome
+ * of its last <code>windowSize</code> calls:
+ * <ul>
+ * <li>CLOSED: calls go through. Once the window holds at least <code>minimumCalls</code> calls,
+ * the circuit opens if the share of failures or of slow calls reaches its threshold. Connection
+ * failures, timeouts, unparseable responses and server errors (status codes 2000 to 2999) are
+ * failures; other API errors mean the endpoint is answering and count as successes.</li>
+ * <li>OPEN: calls fail at once. After <code>openDuration</code>, the circuit turns half-open.</li>
+ * <li>HALF_OPEN: up to <code>halfOpenProbes</code> calls go through as probes, the rest fail at
+ * once. When all probes have completed, the circuit closes if they stayed under the thresholds
+ * and opens again otherwise. Only the probes count: calls let through before the circuit opened
+ * that complete while it is half-open are ignored.</li>
+ * </ul>
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * CircuitBreaker circuitBreaker = CircuitBreaker.newBuilder()
+ *     .failureRateThreshold(0.5)
+ *     .slowCalls(Duration.ofMillis(500), 0.8)
+ *     .openDuration(Duration.ofSeconds(5))
+ *     .listener((strEndpoint, from, to) -&gt; log.warn(strEndpoint + " is now " + to))
+ *     .build();
+ * gatekeeperClient.setCircuitBreaker(circuitBreaker);
+ * </pre></blockquote>
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    /**
+     * Listener is called whenever a circuit changes state, on the thread that caused the change.
+     * It should return quickly.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void onStateChange(String strEndpoint, State fromState, State toState);
+    }
+
+    /**
+     * Returned by {@link #tryAcquirePermission} when the call may not go through.
+     */
+    public static final long NOT_PERMITTED = -1;
+
+    // The permit of calls let through while closed; probes get the number of their half-open
+    // period instead, which starts at 1.
+    private static final long CLOSED_PERMIT = 0;
+
+    private static final byte SUCCESS = 0;
+    private static final byte FAILURE = 1;
+    private static final byte SLOW = 2;
+
+    private final ConcurrentHashMap<String, Circuit> mmapCircuits = new ConcurrentHashMap<>();
+    private final double mdFailureRateThreshold;
+    private final double mdSlowCallRateThreshold;
+    private final long mlSlowCallNanos;
+    private final int miWindowSize;
+    private final int miMinimumCalls;
+    private final long mlOpenNanos;
+    private final int miHalfOpenProbes;
+    private final Listener mListener;
+
+    private CircuitBreaker(Builder builder) {
+        mdFailureRateThreshold = builder.mdFailureRateThreshold;
+        mdSlowCallRateThreshold = builder.mdSlowCallRateThreshold;
+        mlSlowCallNanos = builder.mSlowCallDuration.toNanos();
+        miWindowSize = builder.miWindowSize;
+        miMinimumCalls = Math.min(builder.miMinimumCalls, builder.miWindowSize);
+        mlOpenNanos = builder.mOpenDuration.toNanos();
+        miHalfOpenProbes = builder.miHalfOpenProbes;
+        mListener = builder.mListener;
+    }
+
+    public static Builder newBuilder() { return new Builder(); }
+
+    /**
+     * Gets the state of an endpoint's circuit. An open circuit whose open duration has elapsed is
+     * reported as HALF_OPEN.
+     *
+     * @param strEndpoint the endpoint, as returned by
+     *     {@link com.nettoolkit.internal.request.BaseApiRequest#getEndpoint}
+     * @return the state
+     */
+    public State getState(String strEndpoint) {
+        Circuit circuit = mmapCircuits.get(strEndpoint);
+        return circuit == null ? State.CLOSED : circuit.getState(System.nanoTime());
+    }
+
+    /**
+     * Asks whether a call to the endpoint may go through. Every permitted call must be followed
+     * by exactly one of {@link #onSuccess}, {@link #onFailure} or {@link #onIgnored}, passing the
+     * permit back, so that probes can be told from calls let through before the circuit opened.
+     *
+     * @param strEndpoint the endpoint
+     * @return the call's permit, or {@link #NOT_PERMITTED}
+     */
+    public long tryAcquirePermission(String strEndpoint) {
+        return circuit(strEndpoint).tryAcquirePermission(System.nanoTime());
+    }
+
+    /**
+     * Records a call that completed, possibly with an API error that doesn't indicate a problem
+     * with the endpoint.
+     *
+     * @param strEndpoint the endpoint
+     * @param lPermit the permit from {@link #tryAcquirePermission}
+     * @param lDurationNanos how long the call took
+     */
+    public void onSuccess(String strEndpoint, long lPermit, long lDurationNanos) {
+        record(strEndpoint, lPermit, lDurationNanos >= mlSlowCallNanos ? SLOW : SUCCESS);
+    }
+
+    /**
+     * Records a call that failed.
+     *
+     * @param strEndpoint the endpoint
+     * @param lPermit the permit from {@link #tryAcquirePermission}
+     * @param lDurationNanos how long the call took
+     */
+    public void onFailure(String strEndpoint, long lPermit, long lDurationNanos) {
+        record(strEndpoint, lPermit,
+            lDurationNanos >= mlSlowCallNanos ? FAILURE | SLOW : FAILURE);
+    }
+
+    /**
+     * Records that a permitted call was not made after all, e.g. because it was rate limited.
+     *
+     * @param strEndpoint the endpoint
+     * @param lPermit the permit from {@link #tryAcquirePermission}
+     */
+    public void onIgnored(String strEndpoint, long lPermit) {
+        circuit(strEndpoint).release(lPermit);
+    }
+
+    private void record(String strEndpoint, long lPermit, int iOutcome) {
+        circuit(strEndpoint).record((byte) iOutcome, lPermit, System.nanoTime());
+    }
+
+    private Circuit circuit(String strEndpoint) {
+        Circuit circuit = mmapCircuits.get(strEndpoint);
+        if (circuit == null) {
+            circuit = mmapCircuits.computeIfAbsent(strEndpoint, Circuit::new);
+        }
+        return circuit;
+    }
+
+    private class Circuit {
+        private final String mstrEndpoint;
+        private final byte[] mOutcomes = new byte[miWindowSize];
+        private volatile State mState = State.CLOSED;
+        private int miNext;
+        private int miCalls;
+        private int miFailures;
+        private int miSlowCalls;
+        private long mlOpenedNanos;
+        // The number of the current or last half-open period, which probes get as their permit.
+        private long mlHalfOpenPeriod;
+        private int miProbesStarted;
+        private int miProbesCompleted;
+
+        Circuit(String strEndpoint) {
+            mstrEndpoint = strEndpoint;
+        }
+
+        synchronized State getState(long lNow) {
+            if (mState == State.OPEN && lNow - mlOpenedNanos >= mlOpenNanos) {
+                return State.HALF_OPEN;
+            }
+            return mState;
+        }
+
+        long tryAcquirePermission(long lNow) {
+            if (mState == State.CLOSED) {
+                return CLOSED_PERMIT;
+            }
+            State fromState;
+            long lPermit;
+            synchronized (this) {
+                fromState = mState;
+                if (fromState == State.CLOSED) {
+                    return CLOSED_PERMIT;
+                }
+                if (mState == State.OPEN) {
+                    if (lNow - mlOpenedNanos < mlOpenNanos) {
+                        return NOT_PERMITTED;
+                    }
+                    transition(State.HALF_OPEN);
+                    mlHalfOpenPeriod++;
+                }
+                if (miProbesStarted >= miHalfOpenProbes) {
+                    return NOT_PERMITTED;
+                }
+                miProbesStarted++;
+                lPermit = mlHalfOpenPeriod;
+            }
+            notifyListener(fromState, State.HALF_OPEN);
+            return lPermit;
+        }
+
+        synchronized void release(long lPermit) {
+            if (isProbe(lPermit) && miProbesStarted > miProbesCompleted) {
+                miProbesStarted--;
+            }
+        }
+
+        void record(byte outcome, long lPermit, long lNow) {
+            State fromState;
+            State toState;
+            synchronized (this) {
+                fromState = mState;
+                if (mState == State.OPEN) {
+                    // A call that started before the circuit opened.
+                    return;
+                }
+                if (mState == State.HALF_OPEN && !isProbe(lPermit)) {
+                    // A call that started before the circuit opened, or a probe of an earlier
+                    // half-open period.
+                    return;
+                }
+                add(outcome);
+                if (mState == State.HALF_OPEN) {
+                    if (++miProbesCompleted < miHalfOpenProbes) {
+                        return;
+                    }
+                    transition(isOverThreshold() ? State.OPEN : State.CLOSED);
+                } else if (miCalls >= miMinimumCalls && isOverThreshold()) {
+                    transition(State.OPEN);
+                }
+                if (mState == State.OPEN) {
+                    mlOpenedNanos = lNow;
+                }
+                toState = mState;
+            }
+            notifyListener(fromState, toState);
+        }
+
+        // Whether the call is a probe of the current half-open period.
+        private boolean isProbe(long lPermit) {
+            return mState == State.HALF_OPEN && lPermit == mlHalfOpenPeriod;
+        }
+
+        private void add(byte outcome) {
+            if (miCalls == mOutcomes.length) {
+                byte oldest = mOutcomes[miNext];
+                miFailures -= oldest & FAILURE;
+                miSlowCalls -= (oldest & SLOW) >> 1;
+            } else {
+                miCalls++;
+            }
+            mOutcomes[miNext] = outcome;
+            miNext = (miNext + 1) % mOutcomes.length;
+            miFailures += outcome & FAILURE;
+            miSlowCalls += (outcome & SLOW) >> 1;
+        }
+
+        // In HALF_OPEN, only the probes are in the window, so the rates cover just the probes.
+        private boolean isOverThreshold() {
+            return miFailures >= mdFailureRateThreshold * miCalls
+                || miSlowCalls >= mdSlowCallRateThreshold * miCalls;
+        }
+
+        private void transition(State toState) {
+            mState = toState;
+            miNext = 0;
+            miCalls = 0;
+            miFailures = 0;
+            miSlowCalls = 0;
+            miProbesStarted = 0;
+            miProbesCompleted = 0;
+        }
+
+        private void notifyListener(State fromState, State toState) {
+            if (mListener != null && fromState != toState) {
+                mListener.onStateChange(mstrEndpoint, fromState, toState);
+            }
+        }
+    }
+
+    public static class Builder {
+        private double mdFailureRateThreshold = 0.5;
+        private double mdSlowCallRateThreshold = 0.8;
+        private Duration mSlowCallDuration = Duration.ofSeconds(2);
+        private int miWindowSize = 50;
+        private int miMinimumCalls = 10;
+        private Duration mOpenDuration = Duration.ofSeconds(10);
+        private int miHalfOpenProbes = 3;
+        private Listener mListener;
+
+        /**
+         * Sets the share of failed calls at which the circuit opens. Default is 0.5.
+         *
+         * @param dFailureRateThreshold
+         * @return this
+         */
+        public Builder failureRateThreshold(double dFailureRateThreshold) {
+            mdFailureRateThreshold = dFailureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets how long a call may take before it counts as slow, and the share of slow calls at
+         * which the circuit opens. Defaults are 2s and 0.8.
+         *
+         * @param slowCallDuration
+         * @param dSlowCallRateThreshold
+         * @return this
+         */
+        public Builder slowCalls(Duration slowCallDuration, double dSlowCallRateThreshold) {
+            mSlowCallDuration = slowCallDuration;
+            mdSlowCallRateThreshold = dSlowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the number of most recent calls the rates are computed over, and the number of
+         * calls needed before the circuit can open. Defaults are 50 and 10.
+         *
+         * @param iWindowSize
+         * @param iMinimumCalls
+         * @return this
+         */
+        public Builder window(int iWindowSize, int iMinimumCalls) {
+            miWindowSize = Math.max(iWindowSize, 1);
+            miMinimumCalls = Math.max(iMinimumCalls, 1);
+            return this;
+        }
+
+        /**
+         * Sets how long the circuit stays open before probing the endpoint. Default is 10s.
+         *
+         * @param openDuration
+         * @return this
+         */
+        public Builder openDuration(Duration openDuration) {
+            mOpenDuration = openDuration;
+            return this;
+        }
+
+        /**
+         * Sets the number of probe calls let through while half-open. Default is 3.
+         *
+         * @param iHalfOpenProbes
+         * @return this
+         */
+        public Builder halfOpenProbes(int iHalfOpenProbes) {
+            miHalfOpenProbes = Math.max(iHalfOpenProbes, 1);
+            return this;
+        }
+
+        /**
+         * Sets the listener called when a circuit changes state.
+         *
+         * @param listener
+         * @return this
+         */
+        public Builder listener(Listener listener) {
+            mListener = listener;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.nettoolkit.internal;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import com.nettoolkit.api.StatusCode;
+import com.nettoolkit.exception.ApiConnectionException;
+import com.nettoolkit.exception.ApiException;
+import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.internal.http.JsonBody;
+import com.nettoolkit.internal.request.BaseApiRequest;
+
+/**
+ * ClientMetrics keeps latency histograms for every request a client sends, per endpoint and per
+ * outcome. Each attempt's time is split into three phases:
+ * <ul>
+ * <li>build: turning the request into an HTTP request, including serializing its body</li>
+ * <li>network: from sending the HTTP request until its body has been received</li>
+ * <li>parse: tokenizing the JSON body and reading it into the response and models</li>
+ * </ul>
+ * <p>The outcome is the {@link StatusCode} name of the response (OK for successful responses), or
+ * one of {@link #TIMEOUT}, {@link #CONNECTION_FAILURE}, {@link #PARSE_FAILURE} or {@link #OTHER}.
+ * Requests rejected by the rate limiter or circuit breaker are never sent and aren't recorded.
+ * <p>Every client records into a ClientMetrics of its own by default, so this recording is always
+ * on unless turned off with {@link NetToolKitClient#setMetrics setMetrics(null)}.
+ * <p>Histograms are log-linear, like HdrHistogram: each power of two is split into 32 buckets,
+ * so reported percentiles are within about 3% of the recorded values. Recording only increments
+ * atomic counters and never locks.
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * for (ClientMetrics.Snapshot snapshot : gatekeeperClient.getMetrics().getSnapshots()) {
+ *     System.out.println(snapshot);
+ * }
+ * </pre></blockquote>
+ */
+public class ClientMetrics {
+    public static final String TIMEOUT = "TIMEOUT";
+    public static final String CONNECTION_FAILURE = "CONNECTION_FAILURE";
+    public static final String PARSE_FAILURE = "PARSE_FAILURE";
+    /**
+     * An API error with an unrecognized status code, or an unexpected exception.
+     */
+    public static final String OTHER = "OTHER";
+
+    private static final StatusCode[] STATUS_CODES = StatusCode.values();
+    private static final int TIMEOUT_INDEX = STATUS_CODES.length;
+    private static final int CONNECTION_FAILURE_INDEX = TIMEOUT_INDEX + 1;
+    private static final int PARSE_FAILURE_INDEX = TIMEOUT_INDEX + 2;
+    private static final int OTHER_INDEX = TIMEOUT_INDEX + 3;
+    private static final int OUTCOMES = TIMEOUT_INDEX + 4;
+
+    private final ConcurrentHashMap<String, AtomicReferenceArray<Timings>> mmapEndpoints =
+        new ConcurrentHashMap<>();
+
+    /**
+     * Returns a snapshot of every endpoint and outcome recorded so far, sorted by endpoint and
+     * outcome.
+     *
+     * @return the snapshots
+     */
+    public List<Snapshot> getSnapshots() {
+        List<Snapshot> listSnapshots = new ArrayList<>();
+        for (Map.Entry<String, AtomicReferenceArray<Timings>> entry : mmapEndpoints.entrySet()) {
+            AtomicReferenceArray<Timings> outcomes = entry.getValue();
+            for (int i = 0; i < OUTCOMES; i++) {
+                Timings timings = outcomes.get(i);
+                if (timings != null) {
+                    listSnapshots.add(timings.snapshot(entry.getKey(), outcomeName(i)));
+                }
+            }
+        }
+        Collections.sort(listSnapshots, (a, b) -> {
+            int iCompare = a.getEndpoint().compareTo(b.getEndpoint());
+            return iCompare != 0 ? iCompare : a.getOutcome().compareTo(b.getOutcome());
+        });
+        return Collections.unmodifiableList(listSnapshots);
+    }
+
+    public void reset() {
+        mmapEndpoints.clear();
+    }
+
+    /**
+     * Records one attempt.
+     *
+     * @param strEndpoint the endpoint
+     * @param attempt the attempt
+     * @param failure why the attempt failed, or null if it succeeded
+     */
+    void record(String strEndpoint, Attempt attempt, Throwable failure) {
+        long lEndNanos = System.nanoTime();
+        AtomicReferenceArray<Timings> outcomes = mmapEndpoints.get(strEndpoint);
+        if (outcomes == null) {
+            outcomes = mmapEndpoints.computeIfAbsent(
+                strEndpoint,
+                k -> new AtomicReferenceArray<>(OUTCOMES)
+            );
+        }
+        int iOutcome = outcomeIndex(failure);
+        Timings timings = outcomes.get(iOutcome);
+        if (timings == null) {
+            outcomes.compareAndSet(iOutcome, null, new Timings());
+            timings = outcomes.get(iOutcome);
+        }
+        timings.record(attempt, lEndNanos);
+    }
+
+    /**
+     * Returns the outcome of an attempt.
+     *
+     * @param failure why the attempt failed, or null if it succeeded
+     * @return the status code name or outcome constant
+     */
+    static String outcomeOf(Throwable failure) {
+        return outcomeName(outcomeIndex(failure));
+    }
+
+    private static int outcomeIndex(Throwable failure) {
+        if (failure == null) {
+            return StatusCode.OK.ordinal();
+        } else if (failure instanceof ApiException) {
+            StatusCode statusCode = ((ApiException) failure).getStatusCode();
+            return statusCode == null ? OTHER_INDEX : statusCode.ordinal();
+        } else if (failure instanceof ApiConnectionException) {
+            return failure.getCause() instanceof HttpTimeoutException
+                ? TIMEOUT_INDEX
+                : CONNECTION_FAILURE_INDEX;
+        } else if (failure instanceof ParsingException) {
+            return PARSE_FAILURE_INDEX;
+        }
+        return OTHER_INDEX;
+    }
+
+    private static String outcomeName(int iOutcome) {
+        if (iOutcome < TIMEOUT_INDEX) {
+            return STATUS_CODES[iOutcome].name();
+        } else if (iOutcome == TIMEOUT_INDEX) {
+            return TIMEOUT;
+        } else if (iOutcome == CONNECTION_FAILURE_INDEX) {
+            return CONNECTION_FAILURE;
+        } else if (iOutcome == PARSE_FAILURE_INDEX) {
+            return PARSE_FAILURE;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Attempt marks the phase boundaries of one attempt, and keeps the sizes and status of its
+     * HTTP exchange for {@link ApiCallEvent}. Phases an attempt didn't reach aren't recorded.
+     */
+    static final class Attempt {
+        private final long mlStartNanos = System.nanoTime();
+        private long mlBuiltNanos = -1;
+        private long mlReceivedNanos = -1;
+        private long mlJsonParseNanos;
+        private HttpRequest mHttpRequest;
+        private int miHttpStatus;
+        private long mlReceivedBytes;
+
+        void built(HttpRequest httpRequest) {
+            mlBuiltNanos = System.nanoTime();
+            mHttpRequest = httpRequest;
+        }
+
+        // The body handler decodes chars as the body arrives but tokenizes it in onComplete,
+        // before the response is received here. It measures that time, which moves from network
+        // to parse.
+        void received(HttpResponse<JsonBody> httpResponse) {
+            mlReceivedNanos = System.nanoTime();
+            miHttpStatus = httpResponse.statusCode();
+            JsonBody body = httpResponse.body();
+            if (body != null) {
+                mlJsonParseNanos = body.getParseNanos();
+                mlReceivedBytes = body.getReceivedBytes();
+            }
+        }
+
+        // The event is null when no recording takes it.
+        void commit(ApiCallEvent event, BaseApiRequest request, Throwable failure,
+                    int iAttempt) {
+            if (event == null) {
+                return;
+            }
+            long lEndNanos = System.nanoTime();
+            event.end();
+            if (!event.shouldCommit()) {
+                return;
+            }
+            // The path template, so that calls for different IDs aggregate.
+            String strEndpoint = request.getEndpoint();
+            int iSpace = strEndpoint.indexOf(' ');
+            event.method = strEndpoint.substring(0, iSpace);
+            event.path = strEndpoint.substring(iSpace + 1);
+            event.statusCode = outcomeOf(failure);
+            event.retryCount = iAttempt - 1;
+            event.httpStatus = miHttpStatus;
+            event.responseBytes = mlReceivedBytes;
+            if (mHttpRequest != null) {
+                event.requestBytes = Math.max(0, mHttpRequest.bodyPublisher()
+                    .map(HttpRequest.BodyPublisher::contentLength)
+                    .orElse(0L));
+            }
+            if (mlReceivedNanos >= 0) {
+                event.parseTime = lEndNanos - mlReceivedNanos + mlJsonParseNanos;
+            }
+            event.commit();
+        }
+    }
+
+    private static class Timings {
+        final Histogram mBuild = new Histogram();
+        final Histogram mNetwork = new Histogram();
+        final Histogram mParse = new Histogram();
+        final Histogram mTotal = new Histogram();
+
+        void record(Attempt attempt, long lEndNanos) {
+            mTotal.record(lEndNanos - attempt.mlStartNanos);
+            if (attempt.mlBuiltNanos < 0) {
+                mBuild.record(lEndNanos - attempt.mlStartNanos);
+                return;
+            }
+            mBuild.record(attempt.mlBuiltNanos - attempt.mlStartNanos);
+            if (attempt.mlReceivedNanos < 0) {
+                mNetwork.record(lEndNanos - attempt.mlBuiltNanos);
+                return;
+            }
+            mNetwork.record(attempt.mlReceivedNanos - attempt.mlBuiltNanos - attempt.mlJsonParseNanos);
+            mParse.record(lEndNanos - attempt.mlReceivedNanos + attempt.mlJsonParseNanos);
+        }
+
+        Snapshot snapshot(String strEndpoint, String strOutcome) {
+            return new Snapshot(
+                strEndpoint,
+                strOutcome,
+                mBuild.snapshot(),
+                mNetwork.snapshot(),
+                mParse.snapshot(),
+                mTotal.snapshot()
+            );
+        }
+    }
+
+    // Values below 32ns get a bucket each; above that, each power of two is split into 32
+    // buckets. Values over 2^36ns (about 69s) are counted in the last bucket.
+    private static class Histogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_EXPONENT = 35;
+        private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+        private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+        private final LongAdder mlSum = new LongAdder();
+        private final AtomicLong mlMax = new AtomicLong();
+
+        void record(long lNanos) {
+            long lValue = Math.min(Math.max(lNanos, 0), MAX_VALUE);
+            mCounts.incrementAndGet(indexOf(lValue));
+            mlSum.add(lValue);
+            long lMax = mlMax.get();
+            while (lValue > lMax && !mlMax.compareAndSet(lMax, lValue)) {
+                lMax = mlMax.get();
+            }
+        }
+
+        static int indexOf(long lValue) {
+            if (lValue < SUB_BUCKETS) {
+                return (int) lValue;
+            }
+            int iShift = 63 - Long.numberOfLeadingZeros(lValue) - SUB_BUCKET_BITS;
+            return (iShift << SUB_BUCKET_BITS) + (int) (lValue >>> iShift);
+        }
+
+        // The highest value that falls in the bucket.
+        static long highestValueAt(int iIndex) {
+            if (iIndex < 2 * SUB_BUCKETS) {
+                return iIndex;
+            }
+            int iShift = (iIndex >> SUB_BUCKET_BITS) - 1;
+            long lLowest = (long) (iIndex - (iShift << SUB_BUCKET_BITS)) << iShift;
+            return lLowest + (1L << iShift) - 1;
+        }
+
+        Latency snapshot() {
+            long[] counts = new long[BUCKETS];
+            long lCount = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = mCounts.get(i);
+                lCount += counts[i];
+            }
+            return new Latency(counts, lCount, mlSum.sum(), mlMax.get());
+        }
+    }
+
+    /**
+     * Latency is a snapshot of one histogram. All values are in nanoseconds.
+     */
+    public static class Latency {
+        private final long[] mCounts;
+        private final long mlCount;
+        private final long mlSum;
+        private final long mlMax;
+
+        Latency(long[] counts, long lCount, long lSum, long lMax) {
+            mCounts = counts;
+            mlCount = lCount;
+            mlSum = lSum;
+            mlMax = lMax;
+        }
+
+        public long getCount() { return mlCount; }
+        public long getMax() { return mlMax; }
+        public long getP50() { return getPercentile(50); }
+        public long getP90() { return getPercentile(90); }
+        public long getP99() { return getPercentile(99); }
+
+        public double getMean() {
+            return mlCount == 0 ? 0 : (double) mlSum / mlCount;
+        }
+
+        /**
+         * Returns the value that the given percentage of recorded values are at or below.
+         *
+         * @param dPercentile the percentile, from 0 to 100
+         * @return the value, or 0 if nothing was recorded
+         */
+        public long getPercentile(double dPercentile) {
+            if (mlCount == 0) {
+                return 0;
+            }
+            long lRank = Math.max(1, (long) Math.ceil(dPercentile / 100 * mlCount));
+            long lSeen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                lSeen += mCounts[i];
+                if (lSeen >= lRank) {
+                    return Math.min(Histogram.highestValueAt(i), mlMax);
+                }
+            }
+            return mlMax;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "p50=%.3fms, p90=%.3fms, p99=%.3fms, max=%.3fms",
+                getP50() / 1e6, getP90() / 1e6, getP99() / 1e6, getMax() / 1e6
+            );
+        }
+    }
+
+    /**
+     * Snapshot holds the latencies of one endpoint and outcome.
+     */
+    public static class Snapshot {
+        private final String mstrEndpoint;
+        private final String mstrOutcome;
+        private final Latency mBuild;
+        private final Latency mNetwork;
+        private final Latency mParse;
+        private final Latency mTotal;
+
+        Snapshot(String strEndpoint, String strOutcome, Latency build, Latency network,
+                 Latency parse, Latency total) {
+            mstrEndpoint = strEndpoint;
+            mstrOutcome = strOutcome;
+            mBuild = build;
+            mNetwork = network;
+            mParse = parse;
+            mTotal = total;
+        }
+
+        public String getEndpoint() { return mstrEndpoint; }
+        public String getOutcome() { return mstrOutcome; }
+        public long getCount() { return mTotal.getCount(); }
+        public Latency getBuild() { return mBuild; }
+        public Latency getNetwork() { return mNetwork; }
+        public Latency getParse() { return mParse; }
+        public Latency getTotal() { return mTotal; }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "%s %s: count=%d, total={%s}, build={%s}, network={%s}, parse={%s}",
+                mstrEndpoint, mstrOutcome, getCount(), mTotal, mBuild, mNetwork, mParse
+            );
+        }
+    }
+}
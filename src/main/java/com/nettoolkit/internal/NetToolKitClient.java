@@ -2,48 +2,114 @@ package com.nettoolkit.internal;
 
 import java.io.IOException;
 import java.net.URI;
-import java.security.SecureRandom;
+import java.nio.charset.StandardCharsets;
 import java.time.OffsetDateTime;
-import javax.net.ssl.SSLContext;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpTimeoutException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import com.nettoolkit.api.StatusCode;
 import com.nettoolkit.exception.ApiConnectionException;
 import com.nettoolkit.exception.ApiException;
+import com.nettoolkit.exception.CircuitBreakerOpenException;
+import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.exception.RateLimitExceededException;
 import com.nettoolkit.internal.request.BaseApiRequest;
 import com.nettoolkit.internal.http.HttpMethod;
 import com.nettoolkit.internal.http.HttpContentType;
+import com.nettoolkit.internal.http.CompressionStats;
+import com.nettoolkit.internal.http.HttpTransport;
+import com.nettoolkit.internal.http.Interceptor;
+import com.nettoolkit.internal.http.JsonBody;
+import com.nettoolkit.internal.http.JsonBodyHandler;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONArray;
 import com.nettoolkit.json.JSONException;
 
-public abstract class NetToolKitClient {
+/**
+ * Base class for the service clients. Each client is attached to an {@link HttpTransport}, which
+ * owns the connections to the web API; clients created without one share a process-wide transport.
+ * Call {@link #close} when the client is no longer needed so the transport can be shut down once
+ * its last client is gone.
+ */
+public abstract class NetToolKitClient implements AutoCloseable {
+    private static final Interceptor[] NO_INTERCEPTORS = new Interceptor[0];
+
     protected String mstrApiKey;
     protected boolean mbUseHttps = true;
     protected int miTimeout = 3000;
+    protected boolean mbRetainRawResponseBody = false;
+    protected boolean mbCompressionEnabled = false;
+    protected int miCompressionThreshold = 1024;
+    protected int miResponseDedupMaxLength = 32;
+    protected int miResponseDedupCapacity = 1024;
+    protected boolean mbLazyResponseParsing = false;
+    protected CompressionStats mCompressionStats = new CompressionStats();
+    protected RetryPolicy mRetryPolicy = RetryPolicy.NONE;
+    protected RateLimiter mRateLimiter;
+    protected RateLimiter.Mode mRateLimitMode = RateLimiter.Mode.BLOCKING;
+    protected CircuitBreaker mCircuitBreaker;
+    protected ClientMetrics mMetrics = new ClientMetrics();
+    private volatile Interceptor[] mInterceptors = NO_INTERCEPTORS;
+    protected HttpTransport mTransport;
     protected HttpClient mHttpClient;
+    private final AtomicBoolean mbClosed = new AtomicBoolean();
 
     public NetToolKitClient(String strApiKey) {
         this(strApiKey, true);
     }
 
     public NetToolKitClient(String strApiKey, boolean bUseHttps) {
+        this(strApiKey, bUseHttps, HttpTransport.acquireShared(), false);
+    }
+
+    /**
+     * Creates a client attached to the given transport. The client retains the transport until
+     * the client is closed.
+     *
+     * @param strApiKey the API key
+     * @param bUseHttps whether to use HTTPS
+     * @param transport the transport to attach to
+     */
+    public NetToolKitClient(String strApiKey, boolean bUseHttps, HttpTransport transport) {
+        this(strApiKey, bUseHttps, transport, true);
+    }
+
+    private NetToolKitClient(String strApiKey, boolean bUseHttps, HttpTransport transport,
+                             boolean bRetain) {
         mstrApiKey = strApiKey;
         mbUseHttps = bUseHttps;
-        try {
-            SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
-            sslContext.init(null, null, new SecureRandom());
-            mHttpClient = HttpClient.newBuilder()
-                .sslContext(sslContext)
-                .build();
-        } catch (Exception e) {
-            throw new IllegalStateException("HTTP client failed to initialize", e);
+        mTransport = bRetain ? transport.retain() : transport;
+        mHttpClient = transport.getHttpClient();
+    }
+
+    /**
+     * Detaches the client from its transport. Requests sent after closing fail with
+     * {@link ApiConnectionException}. Closing an already closed client has no effect.
+     */
+    @Override
+    public void close() {
+        if (mbClosed.compareAndSet(false, true)) {
+            mTransport.close();
         }
     }
 
+    public boolean isClosed() { return mbClosed.get(); }
+    public HttpTransport getTransport() { return mTransport; }
+
     // Getters/setters
     public String getApiKey() { return mstrApiKey; }
     public void setApiKey(String strApiKey) { mstrApiKey = strApiKey; }
@@ -51,6 +117,154 @@ public abstract class NetToolKitClient {
     public void setUseHttps(boolean bUseHttps) { mbUseHttps = bUseHttps; }
     public int getTimeout() { return miTimeout; }
     public void setTimeout(int iTimeout) { miTimeout = iTimeout; }
+    public boolean getRetainRawResponseBody() { return mbRetainRawResponseBody; }
+    /**
+     * Sets whether responses keep their raw text, available through
+     * {@link ApiResponse#getRawResponseBody} and {@link ApiV2Response#getRawResponseBody}.
+     * Responses are parsed without building the raw text by default.
+     *
+     * @param bRetainRawResponseBody whether to retain raw response bodies
+     */
+    public void setRetainRawResponseBody(boolean bRetainRawResponseBody) {
+        mbRetainRawResponseBody = bRetainRawResponseBody;
+    }
+    public RetryPolicy getRetryPolicy() { return mRetryPolicy; }
+    /**
+     * Sets the policy for retrying and hedging failed requests. Default is
+     * {@link RetryPolicy#NONE}.
+     *
+     * @param retryPolicy the retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy == null ? RetryPolicy.NONE : retryPolicy;
+    }
+    public RateLimiter getRateLimiter() { return mRateLimiter; }
+    public RateLimiter.Mode getRateLimitMode() { return mRateLimitMode; }
+    /**
+     * Sets the rate limiter, acquiring tokens in BLOCKING mode.
+     *
+     * @param rateLimiter the rate limiter, or null to disable rate limiting
+     * @see #setRateLimiter(RateLimiter, RateLimiter.Mode)
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        setRateLimiter(rateLimiter, RateLimiter.Mode.BLOCKING);
+    }
+    /**
+     * Sets the rate limiter every request, including retries, takes a token from before it is
+     * sent. In BLOCKING mode, requests wait for a token; in NON_BLOCKING mode, they fail at once
+     * with {@link RateLimitExceededException} if none is available. Clients aren't rate limited
+     * by default.
+     *
+     * @param rateLimiter the rate limiter, or null to disable rate limiting
+     * @param mode how tokens are acquired
+     */
+    public void setRateLimiter(RateLimiter rateLimiter, RateLimiter.Mode mode) {
+        mRateLimiter = rateLimiter;
+        mRateLimitMode = mode == null ? RateLimiter.Mode.BLOCKING : mode;
+    }
+    public CircuitBreaker getCircuitBreaker() { return mCircuitBreaker; }
+    /**
+     * Sets the circuit breaker. While an endpoint's circuit is open, its requests fail at once
+     * with {@link CircuitBreakerOpenException}. Clients sharing a circuit breaker share its
+     * circuits. Disabled by default.
+     *
+     * @param circuitBreaker the circuit breaker, or null to disable it
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        mCircuitBreaker = circuitBreaker;
+    }
+    public ClientMetrics getMetrics() { return mMetrics; }
+    /**
+     * Sets where request latencies are recorded. Clients sharing a ClientMetrics record into the
+     * same histograms. Recording is on by default, into a ClientMetrics of the client's own; set
+     * null to skip the per-attempt bookkeeping, which then happens only while a flight recording
+     * takes {@link ApiCallEvent}s.
+     *
+     * @param metrics the metrics, or null to stop recording
+     */
+    public void setMetrics(ClientMetrics metrics) {
+        mMetrics = metrics;
+    }
+    /**
+     * Adds an interceptor after the ones already registered.
+     *
+     * @param interceptor the interceptor
+     */
+    public synchronized void addInterceptor(Interceptor interceptor) {
+        Interceptor[] interceptors = Arrays.copyOf(mInterceptors, mInterceptors.length + 1);
+        interceptors[interceptors.length - 1] = interceptor;
+        mInterceptors = interceptors;
+    }
+    /**
+     * Removes an interceptor.
+     *
+     * @param interceptor the interceptor
+     * @return whether the interceptor was registered
+     */
+    public synchronized boolean removeInterceptor(Interceptor interceptor) {
+        List<Interceptor> listInterceptors = new ArrayList<>(Arrays.asList(mInterceptors));
+        if (!listInterceptors.remove(interceptor)) {
+            return false;
+        }
+        mInterceptors = listInterceptors.toArray(NO_INTERCEPTORS);
+        return true;
+    }
+    public List<Interceptor> getInterceptors() {
+        return Arrays.asList(mInterceptors.clone());
+    }
+    public boolean getCompressionEnabled() { return mbCompressionEnabled; }
+    /**
+     * Enables compression. JSON request bodies of at least {@link #getCompressionThreshold}
+     * bytes are sent gzipped, and gzip and deflate responses are requested and decoded.
+     * Disabled by default.
+     *
+     * @param bCompressionEnabled whether to compress requests and accept compressed responses
+     */
+    public void setCompressionEnabled(boolean bCompressionEnabled) {
+        mbCompressionEnabled = bCompressionEnabled;
+    }
+    public int getCompressionThreshold() { return miCompressionThreshold; }
+    /**
+     * Sets the minimum size in bytes of a request body to compress. Default is 1024.
+     *
+     * @param iCompressionThreshold the minimum body size to compress
+     */
+    public void setCompressionThreshold(int iCompressionThreshold) {
+        miCompressionThreshold = iCompressionThreshold;
+    }
+    public int getResponseDedupMaxLength() { return miResponseDedupMaxLength; }
+    public int getResponseDedupCapacity() { return miResponseDedupCapacity; }
+    /**
+     * Sets how equal string values in a response share one String instance. Keys are always
+     * shared; values up to iMaxLength chars are looked up in a cache of iCapacity recent values,
+     * which saves heap on large responses that repeat countries, user agents and the like.
+     * Defaults are 32 chars and 1024 values.
+     *
+     * @param iMaxLength the longest value to share, or 0 to share none
+     * @param iCapacity the number of values remembered at once
+     */
+    public void setResponseValueDedup(int iMaxLength, int iCapacity) {
+        miResponseDedupMaxLength = iMaxLength;
+        miResponseDedupCapacity = iCapacity;
+    }
+    public boolean getLazyResponseParsing() { return mbLazyResponseParsing; }
+    /**
+     * Enables lazy response parsing. Responses are then only indexed when they arrive, and the
+     * values a request reads, such as a count or the first result, are parsed on their own, so
+     * reading a small field of a large response costs little. Errors in parts of a response that
+     * are never read go unnoticed. Disabled by default.
+     *
+     * @param bLazyResponseParsing whether to parse responses lazily
+     */
+    public void setLazyResponseParsing(boolean bLazyResponseParsing) {
+        mbLazyResponseParsing = bLazyResponseParsing;
+    }
+    /**
+     * Returns the bytes saved by compression so far, per endpoint.
+     *
+     * @return the compression stats
+     */
+    public CompressionStats getCompressionStats() { return mCompressionStats; }
 
     public String getBaseUrl() {
         return getProtocol() + getHostname();
@@ -67,38 +281,566 @@ public abstract class NetToolKitClient {
         return "api.nettoolkit.com";
     }
 
+    /**
+     * Opens and primes a connection to the web API, so that the first real request doesn't pay
+     * for DNS lookup, TCP connect and TLS handshake. Call once at startup.
+     *
+     * @return the number of connections primed, 0 if the web API could not be reached
+     */
+    public int warmUp() {
+        return warmUp(1);
+    }
+
+    /**
+     * Opens and primes up to <code>iConnections</code> connections to the web API, and waits for
+     * them to complete. A first HEAD request opens one connection; if the server answered it over
+     * HTTP/1.1, <code>iConnections</code> concurrent HEAD requests follow, one of them reusing that
+     * connection. If it answered over HTTP/2, all requests share the one connection, so no more
+     * are sent. Failures are not reported; a failed warm-up only means the connection is opened
+     * lazily later.
+     *
+     * @param iConnections the number of connections to open
+     * @return the number of connections primed
+     */
+    public int warmUp(int iConnections) {
+        if (mTransport.getMaxConcurrentRequests() > 0) {
+            iConnections = Math.min(iConnections, mTransport.getMaxConcurrentRequests());
+        }
+        HttpRequest httpRequest = HttpRequest.newBuilder()
+            .uri(URI.create(buildUrl("/")))
+            .method(HttpMethod.HEAD.name(), HttpRequest.BodyPublishers.noBody())
+            .timeout(Duration.ofMillis(Long.valueOf(miTimeout)))
+            .build();
+        if (iConnections <= 0) {
+            return 0;
+        }
+        // Sent alone, since concurrent requests on a cold client each open a connection of their
+        // own even when the server speaks HTTP/2. The transport's version is only a preference,
+        // so the response tells which one was negotiated.
+        HttpResponse<Void> httpResponse = warmUpAsync(httpRequest).join();
+        if (httpResponse == null) {
+            return 0;
+        }
+        if (iConnections == 1 || httpResponse.version() == HttpClient.Version.HTTP_2) {
+            return 1;
+        }
+        List<CompletableFuture<Integer>> listFutures = new ArrayList<>(iConnections);
+        for (int i = 0; i < iConnections; i++) {
+            listFutures.add(warmUpAsync(httpRequest)
+                .thenApply(response -> response == null ? 0 : 1));
+        }
+        int iPrimed = 0;
+        for (CompletableFuture<Integer> future : listFutures) {
+            iPrimed += future.join();
+        }
+        // The first connection stays open even if the later requests failed.
+        return Math.max(iPrimed, 1);
+    }
+
+    // Completes with null if the request fails.
+    private CompletableFuture<HttpResponse<Void>> warmUpAsync(HttpRequest httpRequest) {
+        if (mbClosed.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // Any response, even an error status, means the connection is established.
+        return mTransport.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+            .handle((httpResponse, throwable) -> throwable == null ? httpResponse : null);
+    }
+
     public ApiResponse send(BaseApiRequest request)
             throws ParsingException, ApiConnectionException, ApiException {
-        HttpRequest httpRequest = request.toHttpRequest();
+        return execute(request, ApiResponse::new);
+    }
 
-        HttpResponse<String> httpResponse;
-        OffsetDateTime requestStartTime = OffsetDateTime.now();
+    public ApiV2Response sendV2(BaseApiRequest request)
+            throws ParsingException, ApiConnectionException, ApiException {
+        return execute(request, ApiV2Response::new);
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     * The returned future completes exceptionally with the same exceptions that {@link #send}
+     * throws: {@link ParsingException}, {@link ApiConnectionException} or {@link ApiException}.
+     *
+     * @param request the request to send
+     * @return a future for the parsed v1 API response
+     */
+    public CompletableFuture<ApiResponse> sendAsync(BaseApiRequest request) {
+        return executeAsync(request, ApiResponse::new);
+    }
+
+    /**
+     * Sends the request without blocking the calling thread.
+     * The returned future completes exceptionally with the same exceptions that {@link #sendV2}
+     * throws: {@link ParsingException}, {@link ApiConnectionException} or {@link ApiException}.
+     *
+     * @param request the request to send
+     * @return a future for the parsed v2 API response
+     */
+    public CompletableFuture<ApiV2Response> sendV2Async(BaseApiRequest request) {
+        return executeAsync(request, ApiV2Response::new);
+    }
+
+    /**
+     * Reads a parsed response body into an API response.
+     */
+    @FunctionalInterface
+    protected interface ResponseReader<T> {
+        T read(JsonBody body) throws ParsingException, ApiException;
+    }
+
+    protected <T> T execute(BaseApiRequest request, ResponseReader<T> reader)
+            throws ParsingException, ApiConnectionException, ApiException {
+        RetryPolicy policy = mRetryPolicy;
+        if (policy == RetryPolicy.NONE) {
+            return read(request, reader, 1);
+        }
+        if (policy.shouldHedge(request)) {
+            // Hedging needs two requests in flight at once, so go through the async path.
+            return join(executeAsync(request, reader));
+        }
+        policy.getBudget().deposit();
+        for (int iAttempt = 1; ; iAttempt++) {
+            try {
+                return read(request, reader, iAttempt);
+            } catch (ApiException | ApiConnectionException e) {
+                if (isClosed() || !policy.shouldRetry(request, e, iAttempt)) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(policy.getBackoffMs(iAttempt));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new ApiConnectionException(ie);
+                }
+            }
+        }
+    }
+
+    protected <T> CompletableFuture<T> executeAsync(BaseApiRequest request,
+                                                    ResponseReader<T> reader) {
+        RetryPolicy policy = mRetryPolicy;
+        if (policy == RetryPolicy.NONE) {
+            return readAsync(request, reader, 1);
+        }
+        policy.getBudget().deposit();
+        return attemptAsync(request, reader, policy, 1);
+    }
+
+    private <T> CompletableFuture<T> attemptAsync(BaseApiRequest request, ResponseReader<T> reader,
+                                                  RetryPolicy policy, int iAttempt) {
+        CompletableFuture<T> future = policy.shouldHedge(request)
+            ? hedgeAsync(request, reader, policy, iAttempt)
+            : readAsync(request, reader, iAttempt);
+        if (iAttempt >= policy.getMaxAttempts()) {
+            return future;
+        }
+        return future.handle((result, throwable) -> {
+            if (throwable == null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof NetToolKitException
+                    && !isClosed()
+                    && policy.shouldRetry(request, (NetToolKitException) cause, iAttempt)) {
+                Executor delayed = CompletableFuture.delayedExecutor(
+                    policy.getBackoffMs(iAttempt),
+                    TimeUnit.MILLISECONDS
+                );
+                return CompletableFuture.supplyAsync(() -> iAttempt + 1, delayed)
+                    .thenCompose(iNextAttempt ->
+                        attemptAsync(request, reader, policy, iNextAttempt));
+            }
+            return CompletableFuture.<T>failedFuture(cause);
+        }).thenCompose(f -> f);
+    }
+
+    // Sends the request, then sends it again if there's no response after the hedge delay.
+    // The first successful response wins; the request fails only if every copy fails.
+    private <T> CompletableFuture<T> hedgeAsync(BaseApiRequest request, ResponseReader<T> reader,
+                                                RetryPolicy policy, int iAttempt) {
+        CompletableFuture<T> futureResult = new CompletableFuture<>();
+        AtomicInteger iOutstanding = new AtomicInteger(1);
+        BiConsumer<T, Throwable> onComplete = (result, throwable) -> {
+            if (throwable == null) {
+                futureResult.complete(result);
+            } else if (iOutstanding.decrementAndGet() == 0) {
+                futureResult.completeExceptionally(unwrap(throwable));
+            }
+        };
+        readAsync(request, reader, iAttempt).whenComplete(onComplete);
+        Executor delayed = CompletableFuture.delayedExecutor(
+            policy.getHedgeDelay().toMillis(),
+            TimeUnit.MILLISECONDS
+        );
+        delayed.execute(() -> {
+            if (futureResult.isDone() || isClosed() || !policy.getBudget().tryWithdraw()) {
+                return;
+            }
+            iOutstanding.incrementAndGet();
+            readAsync(request, reader, iAttempt).whenComplete(onComplete);
+        });
+        return futureResult;
+    }
+
+    // Sends one attempt through the circuit breaker and rate limiter, if any.
+    private <T> T read(BaseApiRequest request, ResponseReader<T> reader, int iAttempt)
+            throws ParsingException, ApiConnectionException, ApiException {
+        CircuitBreaker breaker = mCircuitBreaker;
+        RateLimiter limiter = mRateLimiter;
+        if (breaker == null && limiter == null) {
+            return readDirect(request, reader, iAttempt);
+        }
+        String strEndpoint = request.getEndpoint();
+        long lPermit = breaker == null ? 0 : breaker.tryAcquirePermission(strEndpoint);
+        if (lPermit == CircuitBreaker.NOT_PERMITTED) {
+            throw new CircuitBreakerOpenException(strEndpoint);
+        }
+        String strKey = null;
+        if (limiter != null) {
+            strKey = limiter.keyFor(mstrApiKey, request);
+            try {
+                acquire(limiter, strKey, request);
+            } catch (ApiException | ApiConnectionException e) {
+                if (breaker != null) {
+                    breaker.onIgnored(strEndpoint, lPermit);
+                }
+                throw e;
+            }
+        }
+        long lStartNanos = System.nanoTime();
         try {
-            httpResponse = mHttpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
-        } catch (HttpTimeoutException e) {
-            throw new ApiConnectionException(e, requestStartTime, request);
-        } catch (IOException | InterruptedException e) {
-            throw new ApiConnectionException(e);
+            T result = readDirect(request, reader, iAttempt);
+            recordOutcome(limiter, strKey, breaker, strEndpoint, lPermit, lStartNanos, null);
+            return result;
+        } catch (NetToolKitException | RuntimeException e) {
+            recordOutcome(limiter, strKey, breaker, strEndpoint, lPermit, lStartNanos, e);
+            throw e;
+        }
+    }
+
+    private void acquire(RateLimiter limiter, String strKey, BaseApiRequest request)
+            throws ApiConnectionException, ApiException {
+        if (mRateLimitMode == RateLimiter.Mode.NON_BLOCKING) {
+            if (!limiter.tryAcquire(strKey)) {
+                throw newRateLimitExceededException(request);
+            }
+            return;
+        }
+        try {
+            if (!limiter.acquire(strKey)) {
+                throw newRateLimitExceededException(request);
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ApiConnectionException(ie);
         }
+    }
 
-        return new ApiResponse(httpResponse);
+    private <T> CompletableFuture<T> readAsync(BaseApiRequest request, ResponseReader<T> reader,
+                                               int iAttempt) {
+        CircuitBreaker breaker = mCircuitBreaker;
+        RateLimiter limiter = mRateLimiter;
+        if (breaker == null && limiter == null) {
+            return readAsyncDirect(request, reader, iAttempt);
+        }
+        String strEndpoint = request.getEndpoint();
+        long lPermit = breaker == null ? 0 : breaker.tryAcquirePermission(strEndpoint);
+        if (lPermit == CircuitBreaker.NOT_PERMITTED) {
+            return CompletableFuture.failedFuture(new CircuitBreakerOpenException(strEndpoint));
+        }
+        String strKey = null;
+        long lWaitNanos = 0;
+        if (limiter != null) {
+            strKey = limiter.keyFor(mstrApiKey, request);
+            lWaitNanos = limiter.reserve(strKey, mRateLimitMode);
+            if (lWaitNanos < 0) {
+                if (breaker != null) {
+                    breaker.onIgnored(strEndpoint, lPermit);
+                }
+                return CompletableFuture.failedFuture(newRateLimitExceededException(request));
+            }
+        }
+        String strLimiterKey = strKey;
+        if (lWaitNanos == 0) {
+            return readAsyncRecorded(request, reader, iAttempt, limiter, strLimiterKey, breaker,
+                strEndpoint, lPermit);
+        }
+        // Wait for the reserved token without holding a thread.
+        Executor delayed = CompletableFuture.delayedExecutor(lWaitNanos, TimeUnit.NANOSECONDS);
+        return CompletableFuture.runAsync(() -> { }, delayed)
+            .thenCompose(v ->
+                readAsyncRecorded(request, reader, iAttempt, limiter, strLimiterKey, breaker,
+                    strEndpoint, lPermit));
     }
 
-    public ApiV2Response sendV2(BaseApiRequest request)
+    private <T> CompletableFuture<T> readAsyncRecorded(BaseApiRequest request,
+                                                       ResponseReader<T> reader, int iAttempt,
+                                                       RateLimiter limiter, String strKey,
+                                                       CircuitBreaker breaker, String strEndpoint,
+                                                       long lPermit) {
+        long lStartNanos = System.nanoTime();
+        return readAsyncDirect(request, reader, iAttempt).whenComplete((result, throwable) ->
+            recordOutcome(limiter, strKey, breaker, strEndpoint, lPermit, lStartNanos,
+                throwable == null ? null : unwrap(throwable)));
+    }
+
+    // Feeds the outcome of an attempt back into the rate limiter and circuit breaker. API errors
+    // other than server errors mean the endpoint is answering, so they count as successes.
+    private static void recordOutcome(RateLimiter limiter, String strKey, CircuitBreaker breaker,
+                                      String strEndpoint, long lPermit, long lStartNanos,
+                                      Throwable failure) {
+        long lDurationNanos = System.nanoTime() - lStartNanos;
+        boolean bFailed = failure != null;
+        if (failure instanceof ApiException) {
+            StatusCode statusCode = ((ApiException) failure).getStatusCode();
+            if (limiter != null) {
+                limiter.onResponse(strKey, statusCode);
+            }
+            int iCode = statusCode == null ? 0 : statusCode.toInt();
+            bFailed = iCode >= 2000 && iCode < 3000;
+        } else if (failure == null && limiter != null) {
+            limiter.onResponse(strKey, StatusCode.OK);
+        }
+        if (breaker == null) {
+            return;
+        }
+        if (bFailed) {
+            breaker.onFailure(strEndpoint, lPermit, lDurationNanos);
+        } else {
+            breaker.onSuccess(strEndpoint, lPermit, lDurationNanos);
+        }
+    }
+
+    private static RateLimitExceededException newRateLimitExceededException(BaseApiRequest request) {
+        return new RateLimitExceededException(
+            "Client-side rate limit exceeded for " + request.getEndpoint()
+        );
+    }
+
+    private <T> T readDirect(BaseApiRequest request, ResponseReader<T> reader, int iAttempt)
             throws ParsingException, ApiConnectionException, ApiException {
-        HttpRequest httpRequest = request.toHttpRequest();
+        ClientMetrics metrics = mMetrics;
+        ApiCallEvent event = ApiCallEvent.isTypeEnabled() ? new ApiCallEvent() : null;
+        if (metrics == null && event == null) {
+            return reader.read(sendHttp(request).body());
+        }
+        if (event != null) {
+            event.begin();
+        }
+        ClientMetrics.Attempt attempt = new ClientMetrics.Attempt();
+        Throwable failure = null;
+        try {
+            HttpRequest httpRequest = request.toHttpRequest();
+            attempt.built(httpRequest);
+            HttpResponse<JsonBody> httpResponse = sendHttp(request, httpRequest);
+            attempt.received(httpResponse);
+            return reader.read(httpResponse.body());
+        } catch (NetToolKitException | RuntimeException e) {
+            failure = e;
+            throw e;
+        } finally {
+            if (metrics != null) {
+                metrics.record(request.getEndpoint(), attempt, failure);
+            }
+            attempt.commit(event, request, failure, iAttempt);
+        }
+    }
+
+    private <T> CompletableFuture<T> readAsyncDirect(BaseApiRequest request,
+                                                     ResponseReader<T> reader, int iAttempt) {
+        ClientMetrics metrics = mMetrics;
+        ApiCallEvent event = ApiCallEvent.isTypeEnabled() ? new ApiCallEvent() : null;
+        if (metrics == null && event == null) {
+            return sendHttpAsync(request)
+                .thenApply(httpResponse -> readBody(reader, httpResponse));
+        }
+        if (event != null) {
+            event.begin();
+        }
+        ClientMetrics.Attempt attempt = new ClientMetrics.Attempt();
+        BiConsumer<T, Throwable> onComplete = (result, throwable) -> {
+            Throwable failure = throwable == null ? null : unwrap(throwable);
+            if (metrics != null) {
+                metrics.record(request.getEndpoint(), attempt, failure);
+            }
+            attempt.commit(event, request, failure, iAttempt);
+        };
+        HttpRequest httpRequest;
+        try {
+            httpRequest = request.toHttpRequest();
+        } catch (ParsingException pe) {
+            onComplete.accept(null, pe);
+            return CompletableFuture.failedFuture(pe);
+        }
+        attempt.built(httpRequest);
+        return sendHttpAsync(request, httpRequest)
+            .thenApply(httpResponse -> {
+                attempt.received(httpResponse);
+                return readBody(reader, httpResponse);
+            })
+            .whenComplete(onComplete);
+    }
+
+    private static <T> T readBody(ResponseReader<T> reader, HttpResponse<JsonBody> httpResponse) {
+        try {
+            return reader.read(httpResponse.body());
+        } catch (ParsingException | ApiException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future)
+            throws ParsingException, ApiConnectionException, ApiException {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof ParsingException) {
+                throw (ParsingException) cause;
+            } else if (cause instanceof ApiConnectionException) {
+                throw (ApiConnectionException) cause;
+            } else if (cause instanceof ApiException) {
+                throw (ApiException) cause;
+            }
+            throw new ApiConnectionException(cause);
+        }
+    }
 
-        HttpResponse<String> httpResponse;
+    private static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    protected HttpResponse<JsonBody> sendHttp(BaseApiRequest request)
+            throws ParsingException, ApiConnectionException {
+        return sendHttp(request, request.toHttpRequest());
+    }
+
+    private HttpResponse<JsonBody> sendHttp(BaseApiRequest request, HttpRequest httpRequest)
+            throws ApiConnectionException {
         OffsetDateTime requestStartTime = OffsetDateTime.now();
         try {
-            httpResponse = mHttpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            checkOpen();
+            Interceptor[] interceptors = mInterceptors;
+            if (interceptors.length == 0) {
+                return mTransport.send(httpRequest, newBodyHandler(request));
+            }
+            return new InterceptorChain(interceptors, 0, request, httpRequest).proceed(httpRequest);
         } catch (HttpTimeoutException e) {
             throw new ApiConnectionException(e, requestStartTime, request);
         } catch (IOException | InterruptedException e) {
             throw new ApiConnectionException(e);
         }
+    }
 
-        return new ApiV2Response(httpResponse);
+    protected CompletableFuture<HttpResponse<JsonBody>> sendHttpAsync(BaseApiRequest request) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = request.toHttpRequest();
+        } catch (ParsingException pe) {
+            return CompletableFuture.failedFuture(pe);
+        }
+        return sendHttpAsync(request, httpRequest);
+    }
+
+    private CompletableFuture<HttpResponse<JsonBody>> sendHttpAsync(BaseApiRequest request,
+                                                                   HttpRequest httpRequest) {
+        try {
+            checkOpen();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new ApiConnectionException(e));
+        }
+
+        OffsetDateTime requestStartTime = OffsetDateTime.now();
+        Interceptor[] interceptors = mInterceptors;
+        CompletableFuture<HttpResponse<JsonBody>> future = interceptors.length == 0
+            ? mTransport.sendAsync(httpRequest, newBodyHandler(request))
+            : new InterceptorChain(interceptors, 0, request, httpRequest).proceedAsync(httpRequest);
+        return future
+            .handle((httpResponse, throwable) -> {
+                if (throwable != null) {
+                    throw new CompletionException(
+                        toApiConnectionException(throwable, requestStartTime, request)
+                    );
+                }
+                return httpResponse;
+            });
+    }
+
+    protected HttpResponse.BodyHandler<JsonBody> newBodyHandler(BaseApiRequest request) {
+        return new JsonBodyHandler(mbRetainRawResponseBody, request.getEndpoint(), mCompressionStats)
+            .dedupValues(miResponseDedupMaxLength, miResponseDedupCapacity)
+            .lazy(mbLazyResponseParsing || request.isLazyResponse());
+    }
+
+    // The interceptors from miIndex on, followed by the transport.
+    private final class InterceptorChain implements Interceptor.Chain {
+        private final Interceptor[] mInterceptors;
+        private final int miIndex;
+        private final BaseApiRequest mRequest;
+        private final HttpRequest mHttpRequest;
+
+        InterceptorChain(Interceptor[] interceptors, int iIndex, BaseApiRequest request,
+                         HttpRequest httpRequest) {
+            mInterceptors = interceptors;
+            miIndex = iIndex;
+            mRequest = request;
+            mHttpRequest = httpRequest;
+        }
+
+        @Override
+        public BaseApiRequest getRequest() { return mRequest; }
+
+        @Override
+        public HttpRequest getHttpRequest() { return mHttpRequest; }
+
+        @Override
+        public HttpResponse<JsonBody> proceed(HttpRequest httpRequest)
+                throws IOException, InterruptedException {
+            if (miIndex == mInterceptors.length) {
+                return mTransport.send(httpRequest, newBodyHandler(mRequest));
+            }
+            return mInterceptors[miIndex].intercept(next(httpRequest));
+        }
+
+        @Override
+        public CompletableFuture<HttpResponse<JsonBody>> proceedAsync(HttpRequest httpRequest) {
+            if (miIndex == mInterceptors.length) {
+                return mTransport.sendAsync(httpRequest, newBodyHandler(mRequest));
+            }
+            try {
+                return mInterceptors[miIndex].interceptAsync(next(httpRequest));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private InterceptorChain next(HttpRequest httpRequest) {
+            return new InterceptorChain(mInterceptors, miIndex + 1, mRequest, httpRequest);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (mbClosed.get()) {
+            throw new IOException("Client is closed");
+        }
+    }
+
+    private static ApiConnectionException toApiConnectionException(
+        Throwable throwable,
+        OffsetDateTime requestStartTime,
+        BaseApiRequest request
+    ) {
+        // Async failures arrive wrapped in one or more CompletionExceptions.
+        Throwable cause = unwrap(throwable);
+        if (cause instanceof HttpTimeoutException) {
+            return new ApiConnectionException((HttpTimeoutException) cause, requestStartTime, request);
+        }
+        return new ApiConnectionException(cause);
     }
 
     // ========
@@ -182,11 +924,36 @@ public abstract class NetToolKitClient {
         builder.timeout(Duration.ofMillis(Long.valueOf(miTimeout)));
         // Build and send request
         HttpRequest httpRequest = builder.build();
-        HttpResponse<String> httpResponse;
+        HttpResponse<String> httpResponse = null;
+        ApiConnectionException failure = null;
+        ApiCallEvent event = new ApiCallEvent();
+        event.begin();
         try {
-            httpResponse = mHttpClient.send(httpRequest, HttpResponse.BodyHandlers.ofString());
+            checkOpen();
+            httpResponse = mTransport.send(httpRequest, HttpResponse.BodyHandlers.ofString());
         } catch (IOException | InterruptedException e) {
-            throw new ApiConnectionException(e);
+            failure = new ApiConnectionException(e);
+            throw failure;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                // The body isn't parsed here, so only connection failures get a status code.
+                event.method = method.name();
+                event.path = strPath;
+                event.requestBytes = strBody == null
+                    ? 0
+                    : strBody.getBytes(StandardCharsets.UTF_8).length;
+                if (httpResponse != null) {
+                    event.httpStatus = httpResponse.statusCode();
+                    event.responseBytes =
+                        httpResponse.body().getBytes(StandardCharsets.UTF_8).length;
+                } else {
+                    event.statusCode = failure == null
+                        ? ClientMetrics.OTHER
+                        : ClientMetrics.outcomeOf(failure);
+                }
+                event.commit();
+            }
         }
         return httpResponse.body();
     }
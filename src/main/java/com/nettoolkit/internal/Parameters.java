@@ -58,6 +58,10 @@ public class Parameters {
         mmapParameters.put(strKey, time.toInstant().toEpochMilli());
     }
 
+    public Object get(String strKey) {
+        return mmapParameters.get(strKey);
+    }
+
     public String toWwwFormUrlencoded() throws ParsingException {
         StringBuilder sb = new StringBuilder();
         boolean bIsFirstParameter = true;
@@ -0,0 +1,323 @@
+package com.nettoolkit.internal;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import com.nettoolkit.api.StatusCode;
+import com.nettoolkit.internal.request.BaseApiRequest;
+
+/**
+ * RateLimiter is a client-side token bucket that keeps requests under the web API quota instead
+ * of finding out through OVER_QUOTA and TOO_MANY_REQUESTS errors. Buckets are keyed by API key,
+ * and optionally by endpoint as well.
+ * <p>The rate adapts with AIMD: whenever the web API answers with TOO_MANY_REQUESTS or
+ * OVER_QUOTA the rate is multiplied by the decrease factor, and after a run of successes it grows
+ * by the increase step, within the configured bounds.
+ * <p>Clients acquire tokens in one of two {@link Mode}s. A BLOCKING client waits up to
+ * {@link Builder#maxWait} for a token. A NON_BLOCKING client fails at once with a
+ * {@link com.nettoolkit.exception.RateLimitExceededException}, and may only take tokens while
+ * more than the {@link Builder#reserve reserve} is left. Sharing one limiter between a blocking
+ * GatekeeperClient and a non-blocking DashboardsClient therefore lets background Dashboards
+ * traffic use spare capacity without ever starving visit authorizations.
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * RateLimiter rateLimiter = RateLimiter.newBuilder()
+ *     .rate(50, 5, 200)
+ *     .burst(20)
+ *     .build();
+ * gatekeeperClient.setRateLimiter(rateLimiter, RateLimiter.Mode.BLOCKING);
+ * dashboardsClient.setRateLimiter(rateLimiter, RateLimiter.Mode.NON_BLOCKING);
+ * </pre></blockquote>
+ */
+public class RateLimiter {
+    public enum Mode {
+        BLOCKING, NON_BLOCKING;
+    }
+
+    private final ConcurrentHashMap<String, Bucket> mmapBuckets = new ConcurrentHashMap<>();
+    private final boolean mbPerEndpoint;
+    private final double mdInitialRate;
+    private final double mdMinRate;
+    private final double mdMaxRate;
+    private final double mdBurst;
+    private final double mdReserve;
+    private final double mdDecreaseFactor;
+    private final double mdIncreaseStep;
+    private final int miIncreaseAfter;
+    private final long mlMaxWaitNanos;
+    private final long mlDecreaseCooldownNanos;
+
+    private RateLimiter(Builder builder) {
+        mbPerEndpoint = builder.mbPerEndpoint;
+        mdInitialRate = builder.mdInitialRate;
+        mdMinRate = builder.mdMinRate;
+        mdMaxRate = builder.mdMaxRate;
+        mdBurst = Math.max(builder.mdBurst, 1);
+        mdReserve = builder.mdReserve * mdBurst;
+        mdDecreaseFactor = builder.mdDecreaseFactor;
+        mdIncreaseStep = builder.mdIncreaseStep;
+        miIncreaseAfter = builder.miIncreaseAfter;
+        mlMaxWaitNanos = builder.mMaxWait.toNanos();
+        mlDecreaseCooldownNanos = builder.mDecreaseCooldown.toNanos();
+    }
+
+    public static Builder newBuilder() { return new Builder(); }
+
+    /**
+     * Returns the bucket key for a request: the API key, plus the endpoint if the limiter is per
+     * endpoint.
+     *
+     * @param strApiKey the API key
+     * @param request the request
+     * @return the bucket key
+     */
+    public String keyFor(String strApiKey, BaseApiRequest request) {
+        if (mbPerEndpoint) {
+            return strApiKey + " " + request.getEndpoint();
+        }
+        return strApiKey;
+    }
+
+    /**
+     * Takes a token without waiting. Fails if taking it would dig into the reserve kept for
+     * blocking callers.
+     *
+     * @param strKey the bucket key
+     * @return whether a token was taken
+     */
+    public boolean tryAcquire(String strKey) {
+        return bucket(strKey).reserve(System.nanoTime(), 0, mdReserve) == 0;
+    }
+
+    /**
+     * Takes a token, waiting up to the maximum wait for one to become available.
+     *
+     * @param strKey the bucket key
+     * @return whether a token was taken
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire(String strKey) throws InterruptedException {
+        long lWaitNanos = reserve(strKey, Mode.BLOCKING);
+        if (lWaitNanos < 0) {
+            return false;
+        }
+        if (lWaitNanos > 0) {
+            Thread.sleep(lWaitNanos / 1_000_000, (int) (lWaitNanos % 1_000_000));
+        }
+        return true;
+    }
+
+    /**
+     * Reserves a token and returns how long the caller must wait before using it, without
+     * waiting. Used by async sends, which delay the request instead of blocking a thread.
+     *
+     * @param strKey the bucket key
+     * @param mode the acquire mode
+     * @return the wait in nanoseconds, or -1 if no token could be reserved
+     */
+    public long reserve(String strKey, Mode mode) {
+        if (mode == Mode.NON_BLOCKING) {
+            return tryAcquire(strKey) ? 0 : -1;
+        }
+        return bucket(strKey).reserve(System.nanoTime(), mlMaxWaitNanos, 0);
+    }
+
+    /**
+     * Feeds the outcome of a request back into the adaptive rate.
+     *
+     * @param strKey the bucket key
+     * @param statusCode the API status code, or null if the request failed without one
+     */
+    public void onResponse(String strKey, StatusCode statusCode) {
+        if (statusCode == StatusCode.TOO_MANY_REQUESTS || statusCode == StatusCode.OVER_QUOTA) {
+            bucket(strKey).decrease(System.nanoTime());
+        } else if (statusCode == StatusCode.OK || statusCode == StatusCode.UNDERSTOOD) {
+            bucket(strKey).increase();
+        }
+    }
+
+    /**
+     * Returns the current rate of a bucket in requests per second.
+     *
+     * @param strKey the bucket key
+     * @return the rate
+     */
+    public double getRate(String strKey) {
+        return bucket(strKey).getRate();
+    }
+
+    private Bucket bucket(String strKey) {
+        Bucket bucket = mmapBuckets.get(strKey);
+        if (bucket == null) {
+            bucket = mmapBuckets.computeIfAbsent(strKey, k -> new Bucket(System.nanoTime()));
+        }
+        return bucket;
+    }
+
+    private class Bucket {
+        private double mdRate = mdInitialRate;
+        private double mdTokens = mdBurst;
+        private long mlLastRefillNanos;
+        private long mlLastDecreaseNanos;
+        private int miSuccesses;
+
+        Bucket(long lNow) {
+            mlLastRefillNanos = lNow;
+            mlLastDecreaseNanos = lNow - mlDecreaseCooldownNanos;
+        }
+
+        synchronized double getRate() { return mdRate; }
+
+        // Blocking callers may take the bucket below zero; the debt is their wait.
+        synchronized long reserve(long lNow, long lMaxWaitNanos, double dFloor) {
+            refill(lNow);
+            if (mdTokens >= 1 + dFloor) {
+                mdTokens -= 1;
+                return 0;
+            }
+            if (lMaxWaitNanos <= 0) {
+                return -1;
+            }
+            long lWaitNanos = (long) Math.ceil((1 - mdTokens) / mdRate * 1e9);
+            if (lWaitNanos > lMaxWaitNanos) {
+                return -1;
+            }
+            mdTokens -= 1;
+            return lWaitNanos;
+        }
+
+        synchronized void decrease(long lNow) {
+            // Requests in flight when the limit is hit all come back throttled; count them once.
+            if (lNow - mlLastDecreaseNanos < mlDecreaseCooldownNanos) {
+                return;
+            }
+            refill(lNow);
+            mlLastDecreaseNanos = lNow;
+            mdRate = Math.max(mdMinRate, mdRate * mdDecreaseFactor);
+            mdTokens = Math.min(mdTokens, 0);
+            miSuccesses = 0;
+        }
+
+        synchronized void increase() {
+            if (++miSuccesses >= miIncreaseAfter) {
+                miSuccesses = 0;
+                mdRate = Math.min(mdMaxRate, mdRate + mdIncreaseStep);
+            }
+        }
+
+        private void refill(long lNow) {
+            long lElapsedNanos = lNow - mlLastRefillNanos;
+            if (lElapsedNanos > 0) {
+                mdTokens = Math.min(mdBurst, mdTokens + lElapsedNanos * mdRate / 1e9);
+                mlLastRefillNanos = lNow;
+            }
+        }
+    }
+
+    public static class Builder {
+        private boolean mbPerEndpoint = false;
+        private double mdInitialRate = 50;
+        private double mdMinRate = 1;
+        private double mdMaxRate = 500;
+        private double mdBurst = 50;
+        private double mdReserve = 0.2;
+        private double mdDecreaseFactor = 0.5;
+        private double mdIncreaseStep = 1;
+        private int miIncreaseAfter = 20;
+        private Duration mMaxWait = Duration.ofSeconds(1);
+        private Duration mDecreaseCooldown = Duration.ofSeconds(1);
+
+        /**
+         * Sets the initial rate and the bounds the adaptive rate stays within, in requests per
+         * second. Defaults are 50, 1 and 500.
+         *
+         * @param dInitialRate
+         * @param dMinRate
+         * @param dMaxRate
+         * @return this
+         */
+        public Builder rate(double dInitialRate, double dMinRate, double dMaxRate) {
+            mdInitialRate = dInitialRate;
+            mdMinRate = dMinRate;
+            mdMaxRate = dMaxRate;
+            return this;
+        }
+
+        /**
+         * Sets the bucket capacity, the number of requests that can be sent at once after a
+         * quiet period. Default is 50.
+         *
+         * @param iBurst
+         * @return this
+         */
+        public Builder burst(int iBurst) {
+            mdBurst = iBurst;
+            return this;
+        }
+
+        /**
+         * Sets the share of the bucket that non-blocking callers can't use. Default is 0.2.
+         *
+         * @param dReserve
+         * @return this
+         */
+        public Builder reserve(double dReserve) {
+            mdReserve = dReserve;
+            return this;
+        }
+
+        /**
+         * Sets whether each endpoint gets its own bucket instead of sharing the API key's.
+         * Default is false.
+         *
+         * @param bPerEndpoint
+         * @return this
+         */
+        public Builder perEndpoint(boolean bPerEndpoint) {
+            mbPerEndpoint = bPerEndpoint;
+            return this;
+        }
+
+        /**
+         * Sets the AIMD parameters: the factor the rate is multiplied by when throttled, and the
+         * step it grows by after <code>iIncreaseAfter</code> consecutive successes. Defaults are
+         * 0.5, 1 and 20.
+         *
+         * @param dDecreaseFactor
+         * @param dIncreaseStep
+         * @param iIncreaseAfter
+         * @return this
+         */
+        public Builder aimd(double dDecreaseFactor, double dIncreaseStep, int iIncreaseAfter) {
+            mdDecreaseFactor = dDecreaseFactor;
+            mdIncreaseStep = dIncreaseStep;
+            miIncreaseAfter = Math.max(iIncreaseAfter, 1);
+            return this;
+        }
+
+        /**
+         * Sets the minimum time between two rate decreases. Default is 1s.
+         *
+         * @param decreaseCooldown
+         * @return this
+         */
+        public Builder decreaseCooldown(Duration decreaseCooldown) {
+            mDecreaseCooldown = decreaseCooldown;
+            return this;
+        }
+
+        /**
+         * Sets how long blocking callers wait for a token before failing. Default is 1s.
+         *
+         * @param maxWait
+         * @return this
+         */
+        public Builder maxWait(Duration maxWait) {
+            mMaxWait = maxWait;
+            return this;
+        }
+
+        public RateLimiter build() {
+            return new RateLimiter(this);
+        }
+    }
+}
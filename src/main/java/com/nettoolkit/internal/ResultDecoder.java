@@ -0,0 +1,35 @@
+package com.nettoolkit.internal;
+
+import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONObject;
+import com.nettoolkit.json.JSONParser;
+
+/**
+ * Decodes one result of a response into a model object, see
+ * {@link ApiResponse#decodeResults}. A result is decoded straight from the parser's tokens when
+ * the response was parsed lazily, and from its parsed JSON object otherwise.
+ *
+ * @param <T> the model type
+ */
+public interface ResultDecoder<T> {
+    /**
+     * Decodes a result from a parser that has just returned its START_OBJECT. The decoder reads
+     * through the matching END_OBJECT.
+     *
+     * @param parser the parser
+     * @return the model object
+     * @throws JSONException if the result isn't valid JSON
+     * @throws ParsingException if the result isn't a valid model object
+     */
+    T decode(JSONParser parser) throws JSONException, ParsingException;
+
+    /**
+     * Decodes a result from its parsed JSON object.
+     *
+     * @param json the JSON object
+     * @return the model object
+     * @throws ParsingException if the result isn't a valid model object
+     */
+    T fromJson(JSONObject json) throws ParsingException;
+}
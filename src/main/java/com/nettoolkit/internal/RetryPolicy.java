@@ -0,0 +1,325 @@
+package com.nettoolkit.internal;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import com.nettoolkit.api.StatusCode;
+import com.nettoolkit.exception.ApiConnectionException;
+import com.nettoolkit.exception.ApiException;
+import com.nettoolkit.exception.CircuitBreakerOpenException;
+import com.nettoolkit.exception.NetToolKitException;
+import com.nettoolkit.exception.RateLimitExceededException;
+import com.nettoolkit.internal.request.BaseApiRequest;
+
+/**
+ * RetryPolicy decides whether a failed request is sent again, and when. Set it on a client with
+ * {@link NetToolKitClient#setRetryPolicy}; clients don't retry by default.
+ * <ul>
+ * <li>{@link ApiException}s are retried if their status code is one of
+ * {@link Builder#retryOn the retryable status codes}. TOO_MANY_REQUESTS, SERVICE_UNAVAILABLE and
+ * GEOCODE_SERVER_BUSY mean the request wasn't processed, so they're retried for any HTTP method.
+ * Other codes, such as SERVICE_TIMEOUT, are retried only for idempotent requests, like connection
+ * failures.</li>
+ * <li>{@link ApiConnectionException}s, including timeouts, are retried only for idempotent
+ * requests (GET, PUT, DELETE), since a POST may have reached the web API before the connection
+ * failed. See {@link Builder#retryNonIdempotentConnectionFailures}. Requests rejected by an open
+ * circuit breaker or by the client's rate limiter are not retried.</li>
+ * <li>Retries wait for an exponential backoff with full jitter: a random delay between 0 and
+ * <code>initialBackoff * 2^(attempt - 1)</code>, capped at <code>maxBackoff</code>.</li>
+ * <li>Every retry and hedged request is paid for out of a {@link RetryBudget}, so that retries
+ * can't add more than a fixed share of load on top of the original requests. The budget belongs
+ * to the policy, so clients sharing a policy share its budget.</li>
+ * <li>If {@link Builder#hedgeAfter} is set, a GET that hasn't completed within the delay is sent
+ * a second time and the first response wins.</li>
+ * </ul>
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * gatekeeperClient.setRetryPolicy(RetryPolicy.newBuilder()
+ *     .maxAttempts(3)
+ *     .backoff(Duration.ofMillis(100), Duration.ofSeconds(2))
+ *     .retryBudget(0.1, 10)
+ *     .hedgeAfter(Duration.ofMillis(250))
+ *     .build());
+ * </pre></blockquote>
+ */
+public class RetryPolicy {
+    /**
+     * Never retries or hedges.
+     */
+    public static final RetryPolicy NONE = newBuilder().maxAttempts(1).build();
+
+    // Status codes that mean the web API didn't process the request, so any request may be sent
+    // again.
+    private static final Set<StatusCode> NOT_PROCESSED_STATUS_CODES = EnumSet.of(
+        StatusCode.TOO_MANY_REQUESTS,
+        StatusCode.SERVICE_UNAVAILABLE,
+        StatusCode.GEOCODE_SERVER_BUSY
+    );
+
+    private final int miMaxAttempts;
+    private final Set<StatusCode> msetRetryableStatusCodes;
+    private final boolean mbRetryNonIdempotentConnectionFailures;
+    private final long mlInitialBackoffMs;
+    private final long mlMaxBackoffMs;
+    private final Duration mHedgeDelay;
+    private final RetryBudget mBudget;
+
+    private RetryPolicy(Builder builder) {
+        miMaxAttempts = builder.miMaxAttempts;
+        msetRetryableStatusCodes = builder.msetRetryableStatusCodes.isEmpty()
+            ? EnumSet.noneOf(StatusCode.class)
+            : EnumSet.copyOf(builder.msetRetryableStatusCodes);
+        mbRetryNonIdempotentConnectionFailures = builder.mbRetryNonIdempotentConnectionFailures;
+        mlInitialBackoffMs = builder.mInitialBackoff.toMillis();
+        mlMaxBackoffMs = builder.mMaxBackoff.toMillis();
+        mHedgeDelay = builder.mHedgeDelay;
+        mBudget = new RetryBudget(builder.mdBudgetRatio, builder.miBudgetMinRetries);
+    }
+
+    public static Builder newBuilder() { return new Builder(); }
+
+    public int getMaxAttempts() { return miMaxAttempts; }
+
+    public Set<StatusCode> getRetryableStatusCodes() { return EnumSet.copyOf(msetRetryableStatusCodes); }
+
+    public Duration getHedgeDelay() { return mHedgeDelay; }
+
+    public RetryBudget getBudget() { return mBudget; }
+
+    /**
+     * Returns whether the failure is worth retrying, ignoring attempts and budget.
+     *
+     * @param request the failed request
+     * @param exception the failure
+     * @return whether the failure is retryable
+     */
+    public boolean isRetryable(BaseApiRequest request, NetToolKitException exception) {
+        if (exception instanceof RateLimitExceededException) {
+            // Rejected by the client's own rate limiter, which already waited as configured.
+            return false;
+        }
+        if (exception instanceof ApiException) {
+            StatusCode statusCode = ((ApiException) exception).getStatusCode();
+            if (!msetRetryableStatusCodes.contains(statusCode)) {
+                return false;
+            }
+            // Otherwise the web API may have done the work before failing, e.g. SERVICE_TIMEOUT.
+            return NOT_PROCESSED_STATUS_CODES.contains(statusCode)
+                || isRetryableWhenProcessed(request);
+        }
+        if (exception instanceof CircuitBreakerOpenException) {
+            // Retrying would only fail fast again until the circuit closes.
+            return false;
+        }
+        if (exception instanceof ApiConnectionException) {
+            return isRetryableWhenProcessed(request);
+        }
+        return false;
+    }
+
+    // Whether the request may be sent again though the first attempt may have been processed.
+    private boolean isRetryableWhenProcessed(BaseApiRequest request) {
+        return request.isIdempotent() || mbRetryNonIdempotentConnectionFailures;
+    }
+
+    /**
+     * Decides whether to retry after the given attempt failed. A positive decision withdraws a
+     * retry from the budget.
+     *
+     * @param request the failed request
+     * @param exception the failure
+     * @param iAttempt the attempt that failed, starting at 1
+     * @return whether to retry
+     */
+    public boolean shouldRetry(BaseApiRequest request, NetToolKitException exception, int iAttempt) {
+        return iAttempt < miMaxAttempts
+            && isRetryable(request, exception)
+            && mBudget.tryWithdraw();
+    }
+
+    /**
+     * Returns whether the request should be hedged: hedging must be enabled and the request must
+     * be hedgeable, i.e. a GET.
+     *
+     * @param request the request
+     * @return whether to hedge the request
+     */
+    public boolean shouldHedge(BaseApiRequest request) {
+        return mHedgeDelay != null && request.isHedgeable();
+    }
+
+    /**
+     * Returns the delay before the retry that follows the given attempt.
+     *
+     * @param iAttempt the attempt that failed, starting at 1
+     * @return the backoff delay in milliseconds
+     */
+    public long getBackoffMs(int iAttempt) {
+        long lCeiling = mlInitialBackoffMs << Math.min(iAttempt - 1, 30);
+        if (lCeiling <= 0 || lCeiling > mlMaxBackoffMs) {
+            lCeiling = mlMaxBackoffMs;
+        }
+        return lCeiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(lCeiling + 1);
+    }
+
+    /**
+     * RetryBudget limits retries to a share of the original requests. Each original request
+     * deposits <code>ratio</code> of a retry and each retry withdraws a whole one. The balance
+     * starts at, and is capped at, <code>minRetries</code>, so a quiet client can still retry
+     * occasionally, while a retry storm drains the budget after a bounded burst.
+     */
+    public static class RetryBudget {
+        private static final long SCALE = 1000;
+
+        private final double mdRatio;
+        private final long mlDepositPerRequest;
+        private final long mlCapacity;
+        private final AtomicLong mlBalance;
+
+        RetryBudget(double dRatio, int iMinRetries) {
+            mdRatio = dRatio;
+            mlDepositPerRequest = Math.round(dRatio * SCALE);
+            mlCapacity = Math.max(iMinRetries, 1) * SCALE;
+            mlBalance = new AtomicLong(iMinRetries * SCALE);
+        }
+
+        public double getRatio() { return mdRatio; }
+
+        /**
+         * Returns the number of retries that could be made right now.
+         *
+         * @return the available retries
+         */
+        public long getAvailableRetries() { return mlBalance.get() / SCALE; }
+
+        /**
+         * Records an original request, adding its share to the budget.
+         */
+        public void deposit() {
+            if (mlDepositPerRequest <= 0) {
+                return;
+            }
+            mlBalance.getAndUpdate(lBalance -> Math.min(lBalance + mlDepositPerRequest, mlCapacity));
+        }
+
+        /**
+         * Takes one retry out of the budget.
+         *
+         * @return false if the budget is exhausted
+         */
+        public boolean tryWithdraw() {
+            long lBalance;
+            do {
+                lBalance = mlBalance.get();
+                if (lBalance < SCALE) {
+                    return false;
+                }
+            } while (!mlBalance.compareAndSet(lBalance, lBalance - SCALE));
+            return true;
+        }
+    }
+
+    public static class Builder {
+        private int miMaxAttempts = 3;
+        private Set<StatusCode> msetRetryableStatusCodes = EnumSet.of(
+            StatusCode.TOO_MANY_REQUESTS,
+            StatusCode.SERVICE_UNAVAILABLE,
+            StatusCode.GEOCODE_SERVER_BUSY,
+            StatusCode.SERVICE_TIMEOUT
+        );
+        private boolean mbRetryNonIdempotentConnectionFailures = false;
+        private Duration mInitialBackoff = Duration.ofMillis(100);
+        private Duration mMaxBackoff = Duration.ofSeconds(5);
+        private Duration mHedgeDelay;
+        private double mdBudgetRatio = 0.1;
+        private int miBudgetMinRetries = 10;
+
+        /**
+         * Sets the maximum number of attempts, including the first. Default is 3.
+         *
+         * @param iMaxAttempts
+         * @return this
+         */
+        public Builder maxAttempts(int iMaxAttempts) {
+            miMaxAttempts = Math.max(iMaxAttempts, 1);
+            return this;
+        }
+
+        /**
+         * Sets the API status codes to retry. Default is TOO_MANY_REQUESTS, SERVICE_UNAVAILABLE,
+         * GEOCODE_SERVER_BUSY and SERVICE_TIMEOUT.
+         *
+         * @param statusCodes
+         * @return this
+         */
+        public Builder retryOn(StatusCode... statusCodes) {
+            msetRetryableStatusCodes = EnumSet.noneOf(StatusCode.class);
+            msetRetryableStatusCodes.addAll(Arrays.asList(statusCodes));
+            return this;
+        }
+
+        /**
+         * Sets whether connection failures, timeouts and retryable status codes other than
+         * TOO_MANY_REQUESTS, SERVICE_UNAVAILABLE and GEOCODE_SERVER_BUSY are retried for POST
+         * requests too. Such a request may already have been processed by the web API. Default
+         * is false.
+         *
+         * @param bRetryNonIdempotentConnectionFailures
+         * @return this
+         */
+        public Builder retryNonIdempotentConnectionFailures(
+            boolean bRetryNonIdempotentConnectionFailures
+        ) {
+            mbRetryNonIdempotentConnectionFailures = bRetryNonIdempotentConnectionFailures;
+            return this;
+        }
+
+        /**
+         * Sets the backoff before the first retry and the cap on backoff for later retries.
+         * Defaults are 100ms and 5s.
+         *
+         * @param initialBackoff
+         * @param maxBackoff
+         * @return this
+         */
+        public Builder backoff(Duration initialBackoff, Duration maxBackoff) {
+            mInitialBackoff = initialBackoff;
+            mMaxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Sets the retry budget: retries may add at most <code>dRatio</code> load on top of the
+         * original requests, plus a reserve of <code>iMinRetries</code>. Defaults are 0.1 and 10.
+         *
+         * @param dRatio
+         * @param iMinRetries
+         * @return this
+         */
+        public Builder retryBudget(double dRatio, int iMinRetries) {
+            mdBudgetRatio = dRatio;
+            miBudgetMinRetries = iMinRetries;
+            return this;
+        }
+
+        /**
+         * Enables hedging of GET requests: if no response has arrived after the delay, the request
+         * is sent again and whichever response arrives first is used. Hedged requests are paid
+         * for from the retry budget. Disabled by default.
+         *
+         * @param hedgeDelay
+         * @return this
+         */
+        public Builder hedgeAfter(Duration hedgeDelay) {
+            mHedgeDelay = hedgeDelay;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.nettoolkit.internal.http;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CompressionStats counts the bytes saved by request and response compression, per endpoint.
+ * Endpoints are keyed by {@link com.nettoolkit.internal.request.BaseApiRequest#getEndpoint},
+ * e.g. <code>POST /v2/dashboards/create-logs</code>.
+ */
+public class CompressionStats {
+    private final ConcurrentHashMap<String, Counters> mmapCounters = new ConcurrentHashMap<>();
+
+    public void recordRequest(String strEndpoint, long lUncompressedBytes, long lCompressedBytes) {
+        Counters counters = mmapCounters.computeIfAbsent(strEndpoint, k -> new Counters());
+        counters.mRequests.increment();
+        counters.mRequestUncompressedBytes.add(lUncompressedBytes);
+        counters.mRequestCompressedBytes.add(lCompressedBytes);
+    }
+
+    public void recordResponse(String strEndpoint, long lCompressedBytes, long lDecodedBytes) {
+        Counters counters = mmapCounters.computeIfAbsent(strEndpoint, k -> new Counters());
+        counters.mResponses.increment();
+        counters.mResponseCompressedBytes.add(lCompressedBytes);
+        counters.mResponseDecodedBytes.add(lDecodedBytes);
+    }
+
+    /**
+     * Returns a snapshot of the stats of every endpoint that sent or received a compressed body,
+     * sorted by endpoint.
+     *
+     * @return the stats by endpoint
+     */
+    public Map<String, EndpointStats> getEndpointStats() {
+        Map<String, EndpointStats> mapStats = new TreeMap<>();
+        for (Map.Entry<String, Counters> entry : mmapCounters.entrySet()) {
+            Counters counters = entry.getValue();
+            mapStats.put(entry.getKey(), new EndpointStats(
+                counters.mRequests.sum(),
+                counters.mRequestUncompressedBytes.sum(),
+                counters.mRequestCompressedBytes.sum(),
+                counters.mResponses.sum(),
+                counters.mResponseCompressedBytes.sum(),
+                counters.mResponseDecodedBytes.sum()
+            ));
+        }
+        return Collections.unmodifiableMap(mapStats);
+    }
+
+    public void reset() {
+        mmapCounters.clear();
+    }
+
+    private static class Counters {
+        final LongAdder mRequests = new LongAdder();
+        final LongAdder mRequestUncompressedBytes = new LongAdder();
+        final LongAdder mRequestCompressedBytes = new LongAdder();
+        final LongAdder mResponses = new LongAdder();
+        final LongAdder mResponseCompressedBytes = new LongAdder();
+        final LongAdder mResponseDecodedBytes = new LongAdder();
+    }
+
+    public static class EndpointStats {
+        private final long mlRequests;
+        private final long mlRequestUncompressedBytes;
+        private final long mlRequestCompressedBytes;
+        private final long mlResponses;
+        private final long mlResponseCompressedBytes;
+        private final long mlResponseDecodedBytes;
+
+        EndpointStats(long lRequests, long lRequestUncompressedBytes, long lRequestCompressedBytes,
+                      long lResponses, long lResponseCompressedBytes, long lResponseDecodedBytes) {
+            mlRequests = lRequests;
+            mlRequestUncompressedBytes = lRequestUncompressedBytes;
+            mlRequestCompressedBytes = lRequestCompressedBytes;
+            mlResponses = lResponses;
+            mlResponseCompressedBytes = lResponseCompressedBytes;
+            mlResponseDecodedBytes = lResponseDecodedBytes;
+        }
+
+        public long getCompressedRequests() { return mlRequests; }
+        public long getRequestUncompressedBytes() { return mlRequestUncompressedBytes; }
+        public long getRequestCompressedBytes() { return mlRequestCompressedBytes; }
+        public long getCompressedResponses() { return mlResponses; }
+        public long getResponseCompressedBytes() { return mlResponseCompressedBytes; }
+        public long getResponseDecodedBytes() { return mlResponseDecodedBytes; }
+
+        /**
+         * Returns uncompressed size / compressed size of request bodies, or 0 if none were
+         * compressed.
+         *
+         * @return the request compression ratio
+         */
+        public double getRequestRatio() {
+            return ratio(mlRequestUncompressedBytes, mlRequestCompressedBytes);
+        }
+
+        /**
+         * Returns decoded size / compressed size of response bodies, or 0 if none were
+         * compressed.
+         *
+         * @return the response compression ratio
+         */
+        public double getResponseRatio() {
+            return ratio(mlResponseDecodedBytes, mlResponseCompressedBytes);
+        }
+
+        /**
+         * Returns the total number of bytes that compression kept off the wire.
+         *
+         * @return the bytes saved
+         */
+        public long getBytesSaved() {
+            return mlRequestUncompressedBytes - mlRequestCompressedBytes
+                + mlResponseDecodedBytes - mlResponseCompressedBytes;
+        }
+
+        private static double ratio(long lUncompressed, long lCompressed) {
+            return lCompressed == 0 ? 0 : (double) lUncompressed / lCompressed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "EndpointStats{requests=%d, requestRatio=%.2f, responses=%d, responseRatio=%.2f, bytesSaved=%d}",
+                mlRequests, getRequestRatio(), mlResponses, getResponseRatio(), getBytesSaved()
+            );
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.nettoolkit.internal.http;
 
 public enum HttpMethod {
-    POST, GET, PUT, DELETE;
+    POST, GET, PUT, DELETE, HEAD;
 }
 
@@ -0,0 +1,376 @@
+package com.nettoolkit.internal.http;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLContext;
+
+/**
+ * HttpTransport owns the HTTP client, TLS context and connection pool used to reach the web API.
+ * One transport can be shared by any number of NetToolKit clients, so a GatekeeperClient, a
+ * DashboardsClient and a GeoClient reuse the same connections to <code>api.nettoolkit.com</code>.
+ * <p>Transports are reference counted. Every client attached to a transport holds a reference
+ * that is released by {@link com.nettoolkit.internal.NetToolKitClient#close}, and a transport
+ * created by {@link Builder#build} holds one more reference for its creator, released by
+ * {@link #close}. The transport shuts down once every reference is released.
+ * <p>Clients created without an explicit transport attach to a process-wide shared transport.
+ * <p>The number of requests in flight is bounded by {@link Builder#maxConcurrentRequests}, which
+ * also bounds the number of sockets opened to the web API. Blocking sends wait for a free slot for
+ * at most the request timeout; async sends are queued until a slot frees up.
+ * <p>In HTTP/2 mode ({@link Builder#http2}) requests are multiplexed as streams over a single
+ * connection per host, and the request bound becomes the maximum number of concurrent streams.
+ * Connections are opened lazily; call {@link com.nettoolkit.internal.NetToolKitClient#warmUp}
+ * at startup to pay for DNS, TCP and TLS before the first real request.
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * HttpTransport transport = HttpTransport.newBuilder()
+ *     .maxConcurrentRequests(32)
+ *     .build();
+ * GatekeeperClient gatekeeperClient = new GatekeeperClient(NTK_API_KEY, true, transport);
+ * DashboardsClient dashboardsClient = new DashboardsClient(NTK_API_KEY, true, transport);
+ * // ...
+ * gatekeeperClient.close();
+ * dashboardsClient.close();
+ * transport.close();
+ * </pre></blockquote>
+ */
+public class HttpTransport implements AutoCloseable {
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 128;
+
+    private static final Object SHARED_LOCK = new Object();
+    private static HttpTransport sSharedTransport;
+
+    private final HttpClient mHttpClient;
+    private final Semaphore mPermits; // null if unbounded
+    private final int miMaxConcurrentRequests;
+    private final Queue<Runnable> mqueuePending = new ConcurrentLinkedQueue<>();
+    private final boolean mbShared;
+    private int miReferenceCount;
+    private volatile boolean mbClosed;
+
+    private HttpTransport(HttpClient httpClient, int iMaxConcurrentRequests, boolean bShared) {
+        mHttpClient = httpClient;
+        miMaxConcurrentRequests = iMaxConcurrentRequests;
+        mPermits = iMaxConcurrentRequests > 0 ? new Semaphore(iMaxConcurrentRequests) : null;
+        mbShared = bShared;
+        // The shared transport has no creator; it lives exactly as long as its clients.
+        miReferenceCount = bShared ? 0 : 1;
+    }
+
+    /**
+     * Creates a new transport builder.
+     *
+     * @return the builder
+     */
+    public static Builder newBuilder() { return new Builder(); }
+
+    /**
+     * Attaches to the process-wide shared transport, creating it if necessary.
+     * The caller must {@link #close} the returned transport once it's done with it.
+     *
+     * @return the shared transport, retained for the caller
+     */
+    public static HttpTransport acquireShared() {
+        synchronized (SHARED_LOCK) {
+            if (sSharedTransport == null || !sSharedTransport.tryRetain()) {
+                sSharedTransport = new Builder().build(true);
+                sSharedTransport.tryRetain();
+            }
+            return sSharedTransport;
+        }
+    }
+
+    /**
+     * Adds a reference to this transport. Each call must be matched by a call to {@link #close}.
+     *
+     * @return this
+     * @throws IllegalStateException if the transport is already closed
+     */
+    public HttpTransport retain() {
+        if (!tryRetain()) {
+            throw new IllegalStateException("HTTP transport is closed");
+        }
+        return this;
+    }
+
+    private synchronized boolean tryRetain() {
+        if (mbClosed) {
+            return false;
+        }
+        miReferenceCount++;
+        return true;
+    }
+
+    /**
+     * Releases a reference to this transport. Once the last reference is released, queued
+     * requests fail and the underlying HTTP client is shut down.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (mbClosed || --miReferenceCount > 0) {
+                return;
+            }
+            mbClosed = true;
+        }
+        if (mbShared) {
+            synchronized (SHARED_LOCK) {
+                if (sSharedTransport == this) {
+                    sSharedTransport = null;
+                }
+            }
+        }
+        // Wake up queued async requests so they fail instead of waiting forever.
+        Runnable task;
+        while ((task = mqueuePending.poll()) != null) {
+            task.run();
+        }
+        // HttpClient only became closeable in Java 21.
+        if (mHttpClient instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) mHttpClient).close();
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+    public boolean isClosed() { return mbClosed; }
+
+    public HttpClient getHttpClient() { return mHttpClient; }
+
+    public HttpClient.Version getVersion() { return mHttpClient.version(); }
+
+    public int getMaxConcurrentRequests() { return miMaxConcurrentRequests; }
+
+    /**
+     * Sends a request, blocking until the response arrives. Waits at most the request timeout for
+     * a free request slot.
+     *
+     * @param httpRequest the request to send
+     * @param bodyHandler the response body handler
+     * @return the HTTP response
+     * @throws IOException if the transport is closed or the request fails
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public <T> HttpResponse<T> send(
+        HttpRequest httpRequest,
+        HttpResponse.BodyHandler<T> bodyHandler
+    ) throws IOException, InterruptedException {
+        if (mbClosed) {
+            throw new IOException("HTTP transport is closed");
+        }
+        if (mPermits == null) {
+            return mHttpClient.send(httpRequest, bodyHandler);
+        }
+        long lWaitMs = httpRequest.timeout().map(Duration::toMillis).orElse(Long.MAX_VALUE);
+        if (!mPermits.tryAcquire(lWaitMs, TimeUnit.MILLISECONDS)) {
+            throw new HttpTimeoutException(
+                "Timed out waiting for one of " + miMaxConcurrentRequests + " request slots"
+            );
+        }
+        try {
+            return mHttpClient.send(httpRequest, bodyHandler);
+        } finally {
+            releasePermit();
+        }
+    }
+
+    /**
+     * Sends a request without blocking the calling thread. If every request slot is taken, the
+     * request is queued until one frees up.
+     *
+     * @param httpRequest the request to send
+     * @param bodyHandler the response body handler
+     * @return a future for the HTTP response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(
+        HttpRequest httpRequest,
+        HttpResponse.BodyHandler<T> bodyHandler
+    ) {
+        if (mbClosed) {
+            return CompletableFuture.failedFuture(new IOException("HTTP transport is closed"));
+        }
+        if (mPermits == null) {
+            return mHttpClient.sendAsync(httpRequest, bodyHandler);
+        }
+        CompletableFuture<HttpResponse<T>> futureResponse = new CompletableFuture<>();
+        Runnable task = () -> {
+            if (mbClosed) {
+                releasePermit();
+                futureResponse.completeExceptionally(new IOException("HTTP transport is closed"));
+                return;
+            }
+            if (futureResponse.isDone()) {
+                // Cancelled by the caller while queued.
+                releasePermit();
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> futureSend;
+            try {
+                futureSend = mHttpClient.sendAsync(httpRequest, bodyHandler);
+            } catch (RuntimeException e) {
+                releasePermit();
+                futureResponse.completeExceptionally(e);
+                return;
+            }
+            futureSend.whenComplete((httpResponse, throwable) -> {
+                releasePermit();
+                if (throwable != null) {
+                    futureResponse.completeExceptionally(throwable);
+                } else {
+                    futureResponse.complete(httpResponse);
+                }
+            });
+        };
+        if (mPermits.tryAcquire()) {
+            task.run();
+        } else {
+            mqueuePending.add(task);
+            // A slot may have been released between tryAcquire and add.
+            drainPending();
+        }
+        return futureResponse;
+    }
+
+    private void releasePermit() {
+        mPermits.release();
+        drainPending();
+    }
+
+    private void drainPending() {
+        while (!mqueuePending.isEmpty() && mPermits.tryAcquire()) {
+            Runnable task = mqueuePending.poll();
+            if (task == null) {
+                // Another thread took the task. Give the slot back; the loop re-checks the queue
+                // in case a task was queued after the poll.
+                mPermits.release();
+                continue;
+            }
+            task.run();
+        }
+    }
+
+    public static class Builder {
+        private SSLContext mSslContext;
+        private Duration mConnectTimeout;
+        private Executor mExecutor;
+        private HttpClient.Version mVersion;
+        private int miMaxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+
+        /**
+         * Sets the preferred HTTP version. By default, HTTP/2 is negotiated where the server
+         * supports it and HTTP/1.1 is used otherwise.
+         *
+         * @param version
+         * @return this
+         */
+        public Builder version(HttpClient.Version version) {
+            mVersion = version;
+            return this;
+        }
+
+        /**
+         * Switches to HTTP/2, multiplexing up to the given number of concurrent streams over one
+         * connection. Equivalent to
+         * <code>version(HTTP_2).maxConcurrentRequests(iMaxConcurrentStreams)</code>.
+         *
+         * @param iMaxConcurrentStreams
+         * @return this
+         */
+        public Builder http2(int iMaxConcurrentStreams) {
+            mVersion = HttpClient.Version.HTTP_2;
+            miMaxConcurrentRequests = iMaxConcurrentStreams;
+            return this;
+        }
+
+        /**
+         * Sets the TLS context. Default is a TLSv1.2 context.
+         *
+         * @param sslContext
+         * @return this
+         */
+        public Builder sslContext(SSLContext sslContext) {
+            mSslContext = sslContext;
+            return this;
+        }
+
+        /**
+         * Sets the TCP connect timeout. By default, only the per-request timeout applies.
+         *
+         * @param connectTimeout
+         * @return this
+         */
+        public Builder connectTimeout(Duration connectTimeout) {
+            mConnectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Sets the executor used for async tasks and response callbacks. Default is the
+         * HttpClient default executor.
+         *
+         * @param executor
+         * @return this
+         */
+        public Builder executor(Executor executor) {
+            mExecutor = executor;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of requests in flight at once, which also bounds the number of
+         * connections to the web API. Set to 0 for no limit. Default is
+         * {@value HttpTransport#DEFAULT_MAX_CONCURRENT_REQUESTS}.
+         *
+         * @param iMaxConcurrentRequests
+         * @return this
+         */
+        public Builder maxConcurrentRequests(int iMaxConcurrentRequests) {
+            miMaxConcurrentRequests = iMaxConcurrentRequests;
+            return this;
+        }
+
+        /**
+         * Builds the transport. The caller holds the first reference and must {@link #close} it.
+         *
+         * @return a new transport
+         */
+        public HttpTransport build() {
+            return build(false);
+        }
+
+        private HttpTransport build(boolean bShared) {
+            HttpClient.Builder builder = HttpClient.newBuilder();
+            if (mVersion != null) {
+                builder.version(mVersion);
+            }
+            try {
+                SSLContext sslContext = mSslContext;
+                if (sslContext == null) {
+                    sslContext = SSLContext.getInstance("TLSv1.2");
+                    sslContext.init(null, null, new SecureRandom());
+                }
+                builder.sslContext(sslContext);
+            } catch (Exception e) {
+                throw new IllegalStateException("HTTP client failed to initialize", e);
+            }
+            if (mConnectTimeout != null) {
+                builder.connectTimeout(mConnectTimeout);
+            }
+            if (mExecutor != null) {
+                builder.executor(mExecutor);
+            }
+            return new HttpTransport(builder.build(), miMaxConcurrentRequests, bShared);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.nettoolkit.internal.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * InflatingDecoder incrementally decodes a gzip or deflate response body as its buffers arrive,
+ * passing each run of decoded bytes on to a {@link Sink}. The gzip header and trailer are parsed
+ * byte by byte, so they may be split across buffers at any point.
+ */
+class InflatingDecoder {
+    interface Sink {
+        void accept(ByteBuffer buffer) throws IOException;
+    }
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int STATE_HEADER = 0;
+    private static final int STATE_EXTRA_LENGTH = 1;
+    private static final int STATE_EXTRA = 2;
+    private static final int STATE_NAME = 3;
+    private static final int STATE_COMMENT = 4;
+    private static final int STATE_HEADER_CRC = 5;
+    private static final int STATE_BODY = 6;
+    private static final int STATE_TRAILER = 7;
+    private static final int STATE_DONE = 8;
+
+    private final boolean mbGzip;
+    private final Inflater mInflater;
+    private final CRC32 mCrc = new CRC32();
+    private final byte[] mbytesOut = new byte[8192];
+    private final byte[] mbytesHeader = new byte[10];
+    private int miState;
+    private int miCount;
+    private int miFlags;
+    private int miSkip;
+    private long mlCompressedBytes;
+    private long mlDecodedBytes;
+
+    /**
+     * Creates a decoder for the given <code>Content-Encoding</code>, or returns null if the
+     * encoding isn't gzip or deflate.
+     *
+     * @param strContentEncoding the response content encoding
+     * @return the decoder, or null
+     */
+    static InflatingDecoder forContentEncoding(String strContentEncoding) {
+        if (strContentEncoding == null) {
+            return null;
+        }
+        String strEncoding = strContentEncoding.trim();
+        if (strEncoding.equalsIgnoreCase("gzip") || strEncoding.equalsIgnoreCase("x-gzip")) {
+            return new InflatingDecoder(true);
+        }
+        if (strEncoding.equalsIgnoreCase("deflate")) {
+            return new InflatingDecoder(false);
+        }
+        return null;
+    }
+
+    private InflatingDecoder(boolean bGzip) {
+        mbGzip = bGzip;
+        // Gzip wraps a raw deflate stream; Content-Encoding deflate is zlib-wrapped.
+        mInflater = new Inflater(bGzip);
+        miState = bGzip ? STATE_HEADER : STATE_BODY;
+    }
+
+    long getCompressedBytes() { return mlCompressedBytes; }
+
+    long getDecodedBytes() { return mlDecodedBytes; }
+
+    void decode(ByteBuffer buffer, Sink sink) throws IOException {
+        mlCompressedBytes += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            switch (miState) {
+                case STATE_BODY:
+                    inflate(buffer, sink);
+                    break;
+                case STATE_DONE:
+                    // Ignore anything after the end of the stream.
+                    buffer.position(buffer.limit());
+                    break;
+                default:
+                    parse(buffer.get() & 0xFF);
+            }
+        }
+    }
+
+    void finish() throws IOException {
+        mInflater.end();
+        if (miState != STATE_DONE) {
+            throw new ZipException("Unexpected end of compressed response");
+        }
+    }
+
+    void end() {
+        mInflater.end();
+    }
+
+    private void inflate(ByteBuffer buffer, Sink sink) throws IOException {
+        mInflater.setInput(buffer);
+        try {
+            int iCount;
+            while ((iCount = mInflater.inflate(mbytesOut)) > 0) {
+                if (mbGzip) {
+                    mCrc.update(mbytesOut, 0, iCount);
+                }
+                mlDecodedBytes += iCount;
+                sink.accept(ByteBuffer.wrap(mbytesOut, 0, iCount));
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+        if (mInflater.needsDictionary()) {
+            throw new ZipException("Compressed response requires a preset dictionary");
+        }
+        if (mInflater.finished()) {
+            miState = mbGzip ? STATE_TRAILER : STATE_DONE;
+            miCount = 0;
+        }
+    }
+
+    private void parse(int b) throws IOException {
+        switch (miState) {
+            case STATE_HEADER:
+                mbytesHeader[miCount++] = (byte) b;
+                if (miCount == mbytesHeader.length) {
+                    if ((mbytesHeader[0] & 0xFF) != 0x1F || (mbytesHeader[1] & 0xFF) != 0x8B) {
+                        throw new ZipException("Not in gzip format");
+                    }
+                    if (mbytesHeader[2] != 8) {
+                        throw new ZipException("Unsupported compression method");
+                    }
+                    miFlags = mbytesHeader[3];
+                    miCount = 0;
+                    miSkip = 0;
+                    nextHeaderState(STATE_HEADER);
+                }
+                break;
+            case STATE_EXTRA_LENGTH:
+                miSkip |= b << (8 * miCount++);
+                if (miCount == 2) {
+                    miCount = 0;
+                    if (miSkip == 0) {
+                        nextHeaderState(STATE_EXTRA);
+                    } else {
+                        miState = STATE_EXTRA;
+                    }
+                }
+                break;
+            case STATE_EXTRA:
+                if (++miCount == miSkip) {
+                    nextHeaderState(STATE_EXTRA);
+                }
+                break;
+            case STATE_NAME:
+            case STATE_COMMENT:
+                if (b == 0) {
+                    nextHeaderState(miState);
+                }
+                break;
+            case STATE_HEADER_CRC:
+                if (++miCount == 2) {
+                    nextHeaderState(STATE_HEADER_CRC);
+                }
+                break;
+            case STATE_TRAILER:
+                mbytesHeader[miCount++] = (byte) b;
+                if (miCount == 8) {
+                    if (readIntLE(0) != mCrc.getValue()) {
+                        throw new ZipException("Corrupt gzip trailer (CRC mismatch)");
+                    }
+                    if (readIntLE(4) != (mlDecodedBytes & 0xFFFFFFFFL)) {
+                        throw new ZipException("Corrupt gzip trailer (size mismatch)");
+                    }
+                    miState = STATE_DONE;
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unexpected state " + miState);
+        }
+    }
+
+    // Moves past the optional header fields in order: extra, name, comment, header CRC.
+    private void nextHeaderState(int iCompletedState) {
+        miCount = 0;
+        if (iCompletedState < STATE_EXTRA_LENGTH && (miFlags & FEXTRA) != 0) {
+            miState = STATE_EXTRA_LENGTH;
+        } else if (iCompletedState < STATE_NAME && (miFlags & FNAME) != 0) {
+            miState = STATE_NAME;
+        } else if (iCompletedState < STATE_COMMENT && (miFlags & FCOMMENT) != 0) {
+            miState = STATE_COMMENT;
+        } else if (iCompletedState < STATE_HEADER_CRC && (miFlags & FHCRC) != 0) {
+            miState = STATE_HEADER_CRC;
+        } else {
+            miState = STATE_BODY;
+        }
+    }
+
+    private long readIntLE(int iOffset) {
+        return (mbytesHeader[iOffset] & 0xFFL)
+            | (mbytesHeader[iOffset + 1] & 0xFFL) << 8
+            | (mbytesHeader[iOffset + 2] & 0xFFL) << 16
+            | (mbytesHeader[iOffset + 3] & 0xFFL) << 24;
+    }
+}
@@ -0,0 +1,112 @@
+package com.nettoolkit.internal.http;
+
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import com.nettoolkit.internal.request.BaseApiRequest;
+
+/**
+ * Interceptor sits between building an API request's {@link HttpRequest} and sending it on the
+ * transport. Interceptors registered on a client with
+ * {@link com.nettoolkit.internal.NetToolKitClient#addInterceptor} run in order, each calling
+ * {@link Chain#proceed} to pass the request on to the next one. An interceptor may observe or
+ * time the exchange, proceed with a modified request, or short-circuit by returning a response
+ * without proceeding.
+ * <p>Asynchronous sends call {@link #interceptAsync}, which every interceptor implements.
+ * Synchronous sends call {@link #intercept}, which by default runs {@link #interceptAsync} and
+ * waits for it, so an interceptor applies to both kinds of send. Override {@link #intercept} too
+ * to handle synchronous sends without going through the asynchronous transport. Interceptors run
+ * once per attempt, so retries and hedged requests go through the chain again.
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * gatekeeperClient.addInterceptor(chain -&gt; {
+ *     long lStart = System.nanoTime();
+ *     return chain.proceedAsync(chain.getHttpRequest())
+ *         .whenComplete((response, failure) -&gt;
+ *             log(chain.getRequest().getEndpoint(), System.nanoTime() - lStart));
+ * });
+ * </pre></blockquote>
+ */
+@FunctionalInterface
+public interface Interceptor {
+    /**
+     * Intercepts a synchronous send. By default, runs {@link #interceptAsync} and waits for its
+     * response.
+     *
+     * @param chain the rest of the chain
+     * @return the response
+     * @throws IOException if sending fails
+     * @throws InterruptedException if interrupted while sending
+     */
+    default HttpResponse<JsonBody> intercept(Chain chain)
+            throws IOException, InterruptedException {
+        CompletableFuture<HttpResponse<JsonBody>> future = interceptAsync(chain);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Intercepts an asynchronous send. Must not block.
+     *
+     * @param chain the rest of the chain
+     * @return a future for the response
+     */
+    CompletableFuture<HttpResponse<JsonBody>> interceptAsync(Chain chain);
+
+    /**
+     * Chain is an interceptor's view of the exchange and the interceptors after it.
+     */
+    interface Chain {
+        /**
+         * Gets the API request being sent.
+         *
+         * @return the API request
+         */
+        BaseApiRequest getRequest();
+
+        /**
+         * Gets the HTTP request as passed on by the previous interceptor.
+         *
+         * @return the HTTP request
+         */
+        HttpRequest getHttpRequest();
+
+        /**
+         * Passes the HTTP request to the next interceptor, or sends it if this is the last one.
+         *
+         * @param httpRequest the HTTP request to send
+         * @return the response
+         * @throws IOException if sending fails
+         * @throws InterruptedException if interrupted while sending
+         */
+        HttpResponse<JsonBody> proceed(HttpRequest httpRequest)
+            throws IOException, InterruptedException;
+
+        /**
+         * Passes the HTTP request to the next interceptor, or sends it if this is the last one,
+         * without blocking.
+         *
+         * @param httpRequest the HTTP request to send
+         * @return a future for the response
+         */
+        CompletableFuture<HttpResponse<JsonBody>> proceedAsync(HttpRequest httpRequest);
+    }
+}
@@ -0,0 +1,126 @@
+package com.nettoolkit.internal.http;
+
+import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONIndex;
+import com.nettoolkit.json.JSONObject;
+
+/**
+ * JsonBody is a response body parsed by {@link JsonBodyHandler}. It holds either the parsed
+ * JSON object or the reason parsing failed. The raw text is kept only when requested, or when
+ * parsing failed so it can be reported.
+ * <p>
+ * A body parsed lazily holds a {@link JSONIndex} instead, and the JSON object is parsed the
+ * first time {@link #getJson} is called.
+ */
+public class JsonBody {
+    private JSONObject mjson;
+    private final JSONIndex mIndex;
+    private final ParsingException mParsingException;
+    private final String mstrRaw;
+    private long mlParseNanos;
+    private long mlReceivedBytes;
+
+    JsonBody(JSONObject json, String strRaw) {
+        mjson = json;
+        mIndex = null;
+        mParsingException = null;
+        mstrRaw = strRaw;
+    }
+
+    JsonBody(JSONIndex index, String strRaw) {
+        mjson = null;
+        mIndex = index;
+        mParsingException = null;
+        mstrRaw = strRaw;
+    }
+
+    JsonBody(ParsingException parsingException, String strRaw) {
+        mjson = null;
+        mIndex = null;
+        mParsingException = parsingException;
+        mstrRaw = strRaw;
+    }
+
+    /**
+     * Creates a body from an already parsed JSON object, e.g. for an {@link Interceptor} that
+     * answers from a cache.
+     *
+     * @param json the JSON object
+     * @return the body
+     */
+    public static JsonBody of(JSONObject json) {
+        return new JsonBody(json, null);
+    }
+
+    /**
+     * Creates a lazily parsed body from an index of its text.
+     *
+     * @param index the index, whose root must be an object
+     * @return the body
+     */
+    public static JsonBody of(JSONIndex index) {
+        return new JsonBody(index, null);
+    }
+
+    /**
+     * Returns the parsed body.
+     *
+     * @return the parsed body
+     * @throws ParsingException if the body was empty or not a JSON object
+     */
+    public JSONObject getJson() throws ParsingException {
+        if (mParsingException != null) {
+            throw mParsingException;
+        }
+        if (mjson == null) {
+            try {
+                mjson = mIndex.toJSONObject();
+            } catch (JSONException jsone) {
+                throw new ParsingException(jsone, mstrRaw != null ? mstrRaw : mIndex.toString());
+            }
+        }
+        return mjson;
+    }
+
+    /**
+     * Returns the index of a body parsed lazily, from which single values can be read without
+     * parsing the rest of the body.
+     *
+     * @return the index, or null if the body was parsed whole
+     */
+    public JSONIndex getIndex() { return mIndex; }
+
+    /**
+     * Returns the raw body text if it was retained, otherwise null.
+     *
+     * @return the raw body, or null
+     */
+    public String getRaw() { return mstrRaw; }
+
+    /**
+     * Returns how long tokenizing the body took, or 0 if it wasn't parsed by
+     * {@link JsonBodyHandler}.
+     *
+     * @return the parse time in nanoseconds
+     */
+    public long getParseNanos() { return mlParseNanos; }
+
+    /**
+     * Returns the number of body bytes received on the wire, before decompression, or 0 if the
+     * body wasn't received by {@link JsonBodyHandler}.
+     *
+     * @return the received bytes
+     */
+    public long getReceivedBytes() { return mlReceivedBytes; }
+
+    JsonBody parseNanos(long lParseNanos) {
+        mlParseNanos = lParseNanos;
+        return this;
+    }
+
+    JsonBody receivedBytes(long lReceivedBytes) {
+        mlReceivedBytes = lReceivedBytes;
+        return this;
+    }
+}
@@ -0,0 +1,291 @@
+package com.nettoolkit.internal.http;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import com.nettoolkit.exception.ParsingException;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONIndex;
+import com.nettoolkit.json.JSONObject;
+import com.nettoolkit.json.JSONParser;
+
+/**
+ * JsonBodyHandler parses API responses into a {@link JsonBody} without building a String.
+ * Each ByteBuffer is decoded into a single char array as soon as it arrives and is then released,
+ * so the raw bytes are never accumulated. Once the last buffer arrives, the JSON is tokenized
+ * straight from the char array. The raw text is only materialized if <code>bRetainRawBody</code>
+ * is set, or if the body fails to parse.
+ * <p>gzip and deflate bodies are inflated buffer by buffer before decoding, and their sizes are
+ * recorded in the given {@link CompressionStats}.
+ */
+public class JsonBodyHandler implements HttpResponse.BodyHandler<JsonBody> {
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_PRESIZE_CAPACITY = 1 << 24;
+
+    private final boolean mbRetainRawBody;
+    private final String mstrEndpoint;
+    private final CompressionStats mCompressionStats;
+    private int miDedupMaxLength;
+    private int miDedupCapacity;
+    private boolean mbLazy;
+
+    public JsonBodyHandler(boolean bRetainRawBody) {
+        this(bRetainRawBody, null, null);
+    }
+
+    public JsonBodyHandler(boolean bRetainRawBody, String strEndpoint,
+                           CompressionStats compressionStats) {
+        mbRetainRawBody = bRetainRawBody;
+        mstrEndpoint = strEndpoint;
+        mCompressionStats = compressionStats;
+    }
+
+    /**
+     * Shares String instances between equal short string values in each response, see
+     * {@link JSONParser#dedupValues}. Off by default.
+     *
+     * @param iMaxLength the longest value to share, or 0 to share none
+     * @param iCapacity the number of values remembered at once
+     * @return this
+     */
+    public JsonBodyHandler dedupValues(int iMaxLength, int iCapacity) {
+        miDedupMaxLength = iMaxLength;
+        miDedupCapacity = iCapacity;
+        return this;
+    }
+
+    /**
+     * Parses bodies lazily: only their structure is indexed up front, see {@link JSONIndex}, and
+     * values are parsed when they are read. Off by default.
+     *
+     * @param bLazy whether to parse lazily
+     * @return this
+     */
+    public JsonBodyHandler lazy(boolean bLazy) {
+        mbLazy = bLazy;
+        return this;
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<JsonBody> apply(HttpResponse.ResponseInfo responseInfo) {
+        InflatingDecoder inflater = InflatingDecoder.forContentEncoding(
+            responseInfo.headers().firstValue("Content-Encoding").orElse(null)
+        );
+        // UTF-8 never decodes to more chars than bytes, so Content-Length is an upper bound.
+        // Compressed bodies typically inflate by 4x or more.
+        long lContentLength = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (inflater != null) {
+            lContentLength *= 4;
+        }
+        int iCapacity = lContentLength >= 0 && lContentLength <= MAX_PRESIZE_CAPACITY
+            ? (int) lContentLength
+            : DEFAULT_CAPACITY;
+        Charset charset = charsetFrom(responseInfo.headers().firstValue("Content-Type").orElse(null));
+        JsonBodySubscriber subscriber = new JsonBodySubscriber(charset, iCapacity, mbRetainRawBody);
+        subscriber.parsing(miDedupMaxLength, miDedupCapacity, mbLazy);
+        if (inflater != null) {
+            subscriber.inflate(inflater, mstrEndpoint, mCompressionStats);
+        }
+        return subscriber;
+    }
+
+    static Charset charsetFrom(String strContentType) {
+        if (strContentType != null) {
+            for (String strParam : strContentType.split(";")) {
+                String strTrimmed = strParam.trim();
+                if (strTrimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        return Charset.forName(strTrimmed.substring(8).replace("\"", ""));
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    static class JsonBodySubscriber implements HttpResponse.BodySubscriber<JsonBody> {
+        private final CompletableFuture<JsonBody> mFuture = new CompletableFuture<>();
+        private final CharsetDecoder mDecoder;
+        private final boolean mbRetainRawBody;
+        // Holds the trailing bytes of a multi-byte sequence split across two buffers.
+        private final ByteBuffer mCarry = ByteBuffer.allocate(8);
+        private CharBuffer mChars;
+        private Flow.Subscription mSubscription;
+        private InflatingDecoder mInflater;
+        private String mstrEndpoint;
+        private CompressionStats mCompressionStats;
+        private long mlReceivedBytes;
+        private int miDedupMaxLength;
+        private int miDedupCapacity;
+        private boolean mbLazy;
+
+        JsonBodySubscriber(Charset charset, int iCapacity, boolean bRetainRawBody) {
+            mDecoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            mChars = CharBuffer.allocate(Math.max(iCapacity, 16));
+            mbRetainRawBody = bRetainRawBody;
+        }
+
+        void inflate(InflatingDecoder inflater, String strEndpoint, CompressionStats stats) {
+            mInflater = inflater;
+            mstrEndpoint = strEndpoint;
+            mCompressionStats = stats;
+        }
+
+        void parsing(int iDedupMaxLength, int iDedupCapacity, boolean bLazy) {
+            miDedupMaxLength = iDedupMaxLength;
+            miDedupCapacity = iDedupCapacity;
+            mbLazy = bLazy;
+        }
+
+        @Override
+        public CompletionStage<JsonBody> getBody() { return mFuture; }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (mSubscription != null) {
+                subscription.cancel();
+                return;
+            }
+            mSubscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> listBuffers) {
+            try {
+                for (ByteBuffer buffer : listBuffers) {
+                    mlReceivedBytes += buffer.remaining();
+                    if (mInflater != null) {
+                        mInflater.decode(buffer, this::decode);
+                    } else {
+                        decode(buffer);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (mInflater != null) {
+                    mInflater.end();
+                }
+                mSubscription.cancel();
+                mFuture.completeExceptionally(e);
+                return;
+            }
+            mSubscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (mInflater != null) {
+                mInflater.end();
+            }
+            mChars = null;
+            mFuture.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                if (mInflater != null) {
+                    mInflater.finish();
+                    if (mCompressionStats != null) {
+                        mCompressionStats.recordResponse(
+                            mstrEndpoint,
+                            mInflater.getCompressedBytes(),
+                            mInflater.getDecodedBytes()
+                        );
+                    }
+                }
+                mCarry.flip();
+                decode(mCarry, true);
+                while (mDecoder.flush(mChars).isOverflow()) {
+                    grow();
+                }
+            } catch (IOException | RuntimeException e) {
+                mFuture.completeExceptionally(e);
+                return;
+            }
+            CharBuffer chars = mChars;
+            mChars = null;
+            mFuture.complete(
+                parse(chars.array(), chars.position(), mbRetainRawBody, miDedupMaxLength,
+                    miDedupCapacity, mbLazy)
+                    .receivedBytes(mlReceivedBytes)
+            );
+        }
+
+        private void decode(ByteBuffer buffer) throws CharacterCodingException {
+            // Complete a sequence left over from the previous buffer one byte at a time.
+            while (mCarry.position() > 0 && buffer.hasRemaining()) {
+                mCarry.put(buffer.get());
+                mCarry.flip();
+                decode(mCarry, false);
+                mCarry.compact();
+            }
+            decode(buffer, false);
+            if (buffer.hasRemaining()) {
+                mCarry.put(buffer);
+            }
+        }
+
+        private void decode(ByteBuffer buffer, boolean bEndOfInput) throws CharacterCodingException {
+            CoderResult result;
+            while ((result = mDecoder.decode(buffer, mChars, bEndOfInput)).isOverflow()) {
+                grow();
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+        }
+
+        private void grow() {
+            CharBuffer chars = CharBuffer.allocate(mChars.capacity() * 2);
+            mChars.flip();
+            chars.put(mChars);
+            mChars = chars;
+        }
+    }
+
+    static JsonBody parse(char[] chars, int iLength, boolean bRetainRawBody,
+                          int iDedupMaxLength, int iDedupCapacity, boolean bLazy) {
+        if (iLength < 1) {
+            return new JsonBody(new ParsingException("Got empty response", ""), "");
+        }
+        String strRaw = bRetainRawBody ? new String(chars, 0, iLength) : null;
+        long lStartNanos = System.nanoTime();
+        try {
+            if (bLazy) {
+                JSONIndex index = new JSONIndex(chars, 0, iLength)
+                    .dedupValues(iDedupMaxLength, iDedupCapacity);
+                // Anything but an object is left to the parser below to report.
+                if (index.isObject(index.root())) {
+                    return new JsonBody(index, strRaw)
+                        .parseNanos(System.nanoTime() - lStartNanos);
+                }
+            }
+            JSONParser parser = new JSONParser(chars, 0, iLength)
+                .dedupValues(iDedupMaxLength, iDedupCapacity);
+            return new JsonBody(new JSONObject(parser), strRaw)
+                .parseNanos(System.nanoTime() - lStartNanos);
+        } catch (JSONException jsone) {
+            if (strRaw == null) {
+                strRaw = new String(chars, 0, iLength);
+            }
+            return new JsonBody(new ParsingException(jsone, strRaw), strRaw)
+                .parseNanos(System.nanoTime() - lStartNanos);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.nettoolkit.internal.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONObject;
+
+/**
+ * JsonBodyPublisher publishes a JSON request body that is written as UTF-8 straight into byte
+ * chunks, without building a String or an intermediate char buffer. Chunks start small so small
+ * requests stay small, and grow up to {@link #MAX_CHUNK_SIZE} for large batches. The chunks are
+ * written once and can be published any number of times, so the request can be resent.
+ */
+public class JsonBodyPublisher implements HttpRequest.BodyPublisher {
+    static final int MIN_CHUNK_SIZE = 512;
+    static final int MAX_CHUNK_SIZE = 16 * 1024;
+
+    private final List<ByteBuffer> mlistChunks;
+    private final long mlContentLength;
+
+    private JsonBodyPublisher(List<ByteBuffer> listChunks, long lContentLength) {
+        mlistChunks = listChunks;
+        mlContentLength = lContentLength;
+    }
+
+    /**
+     * Serializes the JSON object into a new publisher.
+     *
+     * @param json the request body
+     * @return the publisher
+     * @throws JSONException if the object contains an invalid value
+     */
+    public static JsonBodyPublisher of(JSONObject json) throws JSONException {
+        Utf8ChunkWriter writer = new Utf8ChunkWriter();
+        json.write(writer);
+        return writer.toPublisher();
+    }
+
+    /**
+     * Returns a publisher for the gzip-compressed body. Send it with a
+     * <code>Content-Encoding: gzip</code> header.
+     *
+     * @return the compressed publisher
+     */
+    public JsonBodyPublisher gzip() {
+        ChunkOutputStream out = new ChunkOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, MAX_CHUNK_SIZE)) {
+            for (ByteBuffer chunk : mlistChunks) {
+                gzip.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+            }
+        } catch (IOException e) {
+            // ChunkOutputStream doesn't throw.
+            throw new IllegalStateException(e);
+        }
+        return out.toPublisher();
+    }
+
+    @Override
+    public long contentLength() { return mlContentLength; }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        subscriber.onSubscribe(new ChunkSubscription(subscriber));
+    }
+
+    private class ChunkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> mSubscriber;
+        private final AtomicLong mlDemand = new AtomicLong();
+        private final AtomicInteger miWip = new AtomicInteger();
+        private final AtomicBoolean mbCancelled = new AtomicBoolean();
+        private int miNext;
+
+        ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            mSubscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                mSubscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            mlDemand.getAndAccumulate(n, (lCurrent, lAdded) -> {
+                long lSum = lCurrent + lAdded;
+                return lSum < 0 ? Long.MAX_VALUE : lSum;
+            });
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            mbCancelled.set(true);
+        }
+
+        // Only one thread delivers at a time; re-entrant request() calls just add demand.
+        private void drain() {
+            if (miWip.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!mbCancelled.get() && mlDemand.get() > 0 && miNext < mlistChunks.size()) {
+                    mlDemand.decrementAndGet();
+                    // Each subscriber gets its own view, so resending doesn't see consumed buffers.
+                    mSubscriber.onNext(mlistChunks.get(miNext++).asReadOnlyBuffer());
+                }
+                if (!mbCancelled.get() && miNext == mlistChunks.size()) {
+                    mbCancelled.set(true);
+                    mSubscriber.onComplete();
+                }
+            } while (miWip.decrementAndGet() != 0);
+        }
+    }
+
+    /**
+     * Collects bytes into a list of chunks that grow from {@link #MIN_CHUNK_SIZE} to
+     * {@link #MAX_CHUNK_SIZE}.
+     */
+    static class ChunkOutputStream extends OutputStream {
+        final List<ByteBuffer> mlistChunks = new ArrayList<>();
+        byte[] mbytesChunk = new byte[MIN_CHUNK_SIZE];
+        int miPosition;
+        long mlLength;
+
+        @Override
+        public void write(int b) {
+            if (miPosition == mbytesChunk.length) {
+                nextChunk();
+            }
+            mbytesChunk[miPosition++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int iOffset, int iLength) {
+            while (iLength > 0) {
+                if (miPosition == mbytesChunk.length) {
+                    nextChunk();
+                }
+                int iCount = Math.min(iLength, mbytesChunk.length - miPosition);
+                System.arraycopy(bytes, iOffset, mbytesChunk, miPosition, iCount);
+                miPosition += iCount;
+                iOffset += iCount;
+                iLength -= iCount;
+            }
+        }
+
+        void nextChunk() {
+            addChunk();
+            mbytesChunk = new byte[Math.min(mbytesChunk.length * 2, MAX_CHUNK_SIZE)];
+        }
+
+        private void addChunk() {
+            if (miPosition > 0) {
+                mlistChunks.add(ByteBuffer.wrap(mbytesChunk, 0, miPosition));
+                mlLength += miPosition;
+            }
+            miPosition = 0;
+        }
+
+        JsonBodyPublisher toPublisher() {
+            addChunk();
+            mbytesChunk = null;
+            return new JsonBodyPublisher(mlistChunks, mlLength);
+        }
+    }
+
+    /**
+     * Encodes chars as UTF-8 directly into the chunks of a {@link ChunkOutputStream}.
+     */
+    static class Utf8ChunkWriter extends Writer {
+        private final ChunkOutputStream mOut = new ChunkOutputStream();
+        private char mcHighSurrogate;
+
+        @Override
+        public void write(int c) {
+            put((char) c);
+        }
+
+        @Override
+        public void write(char[] chars, int iOffset, int iLength) {
+            for (int i = iOffset; i < iOffset + iLength; i++) {
+                put(chars[i]);
+            }
+        }
+
+        @Override
+        public void write(String str, int iOffset, int iLength) {
+            ChunkOutputStream out = mOut;
+            int iEnd = iOffset + iLength;
+            int i = iOffset;
+            while (i < iEnd) {
+                // ASCII fast path, bounded by the space left in the current chunk.
+                byte[] bytes = out.mbytesChunk;
+                int iPosition = out.miPosition;
+                int iAsciiEnd = Math.min(iEnd, i + bytes.length - iPosition);
+                while (i < iAsciiEnd && mcHighSurrogate == 0) {
+                    char c = str.charAt(i);
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    bytes[iPosition++] = (byte) c;
+                    i++;
+                }
+                out.miPosition = iPosition;
+                if (iPosition == bytes.length) {
+                    out.nextChunk();
+                } else if (i < iEnd) {
+                    put(str.charAt(i++));
+                }
+            }
+        }
+
+        private void put(char c) {
+            ChunkOutputStream out = mOut;
+            if (out.mbytesChunk.length - out.miPosition < 4) {
+                out.nextChunk();
+            }
+            byte[] bytes = out.mbytesChunk;
+            if (mcHighSurrogate != 0) {
+                char cHigh = mcHighSurrogate;
+                mcHighSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    int iCodePoint = Character.toCodePoint(cHigh, c);
+                    bytes[out.miPosition++] = (byte) (0xF0 | (iCodePoint >> 18));
+                    bytes[out.miPosition++] = (byte) (0x80 | ((iCodePoint >> 12) & 0x3F));
+                    bytes[out.miPosition++] = (byte) (0x80 | ((iCodePoint >> 6) & 0x3F));
+                    bytes[out.miPosition++] = (byte) (0x80 | (iCodePoint & 0x3F));
+                    return;
+                }
+                // Unpaired surrogate, same replacement as String.getBytes.
+                bytes[out.miPosition++] = '?';
+                put(c);
+                return;
+            }
+            if (c < 0x80) {
+                bytes[out.miPosition++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[out.miPosition++] = (byte) (0xC0 | (c >> 6));
+                bytes[out.miPosition++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c)) {
+                mcHighSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                bytes[out.miPosition++] = '?';
+            } else {
+                bytes[out.miPosition++] = (byte) (0xE0 | (c >> 12));
+                bytes[out.miPosition++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[out.miPosition++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        JsonBodyPublisher toPublisher() {
+            if (mcHighSurrogate != 0) {
+                mcHighSurrogate = 0;
+                put('?');
+            }
+            return mOut.toPublisher();
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
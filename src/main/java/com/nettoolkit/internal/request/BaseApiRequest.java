@@ -3,11 +3,15 @@ package com.nettoolkit.internal.request;
 import java.net.URI;
 import java.net.http.HttpRequest;
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import com.nettoolkit.exception.NetToolKitException;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.Parameters;
 import com.nettoolkit.internal.NetToolKitClient;
 import com.nettoolkit.internal.http.HttpMethod;
 import com.nettoolkit.internal.http.HttpContentType;
+import com.nettoolkit.internal.http.JsonBodyPublisher;
 
 public abstract class BaseApiRequest {
     private Parameters mParams;
@@ -23,7 +27,59 @@ public abstract class BaseApiRequest {
     // E.g. "/v1/gatekeeper/visits/authorization"
     protected abstract String getPath();
     protected abstract String serializeParameters() throws ParsingException;
-    
+
+    /**
+     * Returns the path with any IDs replaced by placeholders, e.g.
+     * <code>/v1/gatekeeper/visitor-groups/{visitorGroupId}/visitors</code>. Requests whose
+     * path contains IDs must override this so that per-endpoint stats and limits stay bounded.
+     *
+     * @return the path template
+     */
+    protected String getPathTemplate() { return getPath(); }
+
+    /**
+     * Returns the key identifying this request's endpoint, e.g.
+     * <code>POST /v1/gatekeeper/visits/authorization</code>.
+     *
+     * @return the HTTP method and path template
+     */
+    public String getEndpoint() {
+        return getHttpMethod().name() + " " + getPathTemplate();
+    }
+
+    /**
+     * Returns whether sending this request twice has the same effect as sending it once, which
+     * makes it safe to retry after a connection failure. True for GET, PUT and DELETE.
+     *
+     * @return whether the request is idempotent
+     */
+    public boolean isIdempotent() {
+        return getHttpMethod() == HttpMethod.GET
+            || getHttpMethod() == HttpMethod.PUT
+            || getHttpMethod() == HttpMethod.DELETE;
+    }
+
+    /**
+     * Returns whether this request only reads data, which makes it safe to hedge by sending a
+     * second copy while the first is still in flight. True for GET.
+     *
+     * @return whether the request can be hedged
+     */
+    public boolean isHedgeable() {
+        return getHttpMethod() == HttpMethod.GET;
+    }
+
+    /**
+     * Returns whether the response is parsed lazily even if the client parses responses whole.
+     * Requests that decode their results straight from the response text return true, so that
+     * no JSON objects are built for them. False by default.
+     *
+     * @return whether to parse the response lazily
+     */
+    public boolean isLazyResponse() {
+        return false;
+    }
+
     public Parameters getParameters() { return mParams; }
 
     public NetToolKitClient getClient() { return mClient; }
@@ -31,19 +87,30 @@ public abstract class BaseApiRequest {
     public HttpRequest toHttpRequest() throws ParsingException {
         HttpRequest.Builder builder = newHttpRequestBuilder();
 
-        String strSerializedParams = serializeParameters();
-
         // Create URL, appending query string if necessary.
         String strUrl = getClient().getBaseUrl() + getPath();
         if (getHttpMethod() == HttpMethod.GET || getHttpMethod() == HttpMethod.DELETE) {
-            strUrl += "?" + strSerializedParams;
+            strUrl += "?" + serializeParameters();
         }
         builder.uri(URI.create(strUrl));
 
         // Create the body if necessary.
         HttpRequest.BodyPublisher body;
         if (getHttpMethod() == HttpMethod.POST || getHttpMethod() == HttpMethod.PUT) {
-            body = HttpRequest.BodyPublishers.ofString(strSerializedParams);
+            body = newBodyPublisher();
+            // Compress large JSON bodies if enabled.
+            if (getClient().getCompressionEnabled()
+                    && body instanceof JsonBodyPublisher
+                    && body.contentLength() >= getClient().getCompressionThreshold()) {
+                JsonBodyPublisher gzipBody = ((JsonBodyPublisher) body).gzip();
+                getClient().getCompressionStats().recordRequest(
+                    getEndpoint(),
+                    body.contentLength(),
+                    gzipBody.contentLength()
+                );
+                body = gzipBody;
+                builder.setHeader("Content-Encoding", "gzip");
+            }
         } else {
             body = HttpRequest.BodyPublishers.noBody();
         }
@@ -56,6 +123,9 @@ public abstract class BaseApiRequest {
 
         // Add Accept header so server knows we expect a JSON response.
         builder.setHeader("Accept", HttpContentType.JSON.getValue());
+        if (getClient().getCompressionEnabled()) {
+            builder.setHeader("Accept-Encoding", "gzip, deflate");
+        }
 
         // Add request timeout.
         builder.timeout(Duration.ofMillis(Long.valueOf(getClient().getTimeout())));
@@ -67,6 +137,46 @@ public abstract class BaseApiRequest {
         return HttpRequest.newBuilder();
     }
 
+    /**
+     * Creates the publisher for the body of a POST or PUT request. Defaults to the serialized
+     * parameters; subclasses may publish the body without serializing it into a String first.
+     *
+     * @return the request body publisher
+     * @throws ParsingException if the parameters can't be serialized
+     */
+    protected HttpRequest.BodyPublisher newBodyPublisher() throws ParsingException {
+        return HttpRequest.BodyPublishers.ofString(serializeParameters());
+    }
+
+    /**
+     * Applies the parser to the result of an async API call. Any exception thrown by the parser
+     * completes the returned future exceptionally.
+     *
+     * @param future the pending API response
+     * @param parser converts the API response into the request's result
+     * @return a future for the parsed result
+     */
+    protected static <T, R> CompletableFuture<R> thenParse(
+        CompletableFuture<T> future,
+        ResponseParser<T, R> parser
+    ) {
+        return future.thenApply(response -> {
+            try {
+                return parser.parse(response);
+            } catch (NetToolKitException ntke) {
+                throw new CompletionException(ntke);
+            }
+        });
+    }
+
+    /**
+     * Converts an API response into the result of a request.
+     */
+    @FunctionalInterface
+    protected interface ResponseParser<T, R> {
+        R parse(T response) throws NetToolKitException;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{endpoint=" + getHttpMethod().name() + " " + getPath()
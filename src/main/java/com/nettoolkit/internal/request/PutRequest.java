@@ -6,6 +6,9 @@ import com.nettoolkit.internal.NetToolKitClient;
 import com.nettoolkit.internal.request.BaseApiRequest;
 import com.nettoolkit.internal.http.HttpMethod;
 import com.nettoolkit.internal.http.HttpContentType;
+import com.nettoolkit.internal.http.JsonBodyPublisher;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONObject;
 
 public abstract class PutRequest extends BaseApiRequest {
     public PutRequest(NetToolKitClient client) {
@@ -30,6 +33,20 @@ public abstract class PutRequest extends BaseApiRequest {
         }
     }
 
+    @Override
+    protected HttpRequest.BodyPublisher newBodyPublisher() throws ParsingException {
+        if (getContentType() != HttpContentType.JSON) {
+            return super.newBodyPublisher();
+        }
+        // Write the JSON as UTF-8 straight into the body, skipping the String.
+        JSONObject jsonParams = getParameters().toJson();
+        try {
+            return JsonBodyPublisher.of(jsonParams);
+        } catch (JSONException jsone) {
+            throw new ParsingException(jsone, jsonParams);
+        }
+    }
+
     @Override
     protected HttpRequest.Builder newHttpRequestBuilder() {
         return super.newHttpRequestBuilder()
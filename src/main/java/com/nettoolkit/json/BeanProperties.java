@@ -0,0 +1,156 @@
+package com.nettoolkit.json;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BeanProperties holds what {@link JSONObject#JSONObject(Object)} needs to
+ * know about a class: the JSON key of each of its getters, and a method
+ * handle that calls it. It is worked out once per class and kept in a
+ * ClassValue, so making JSONObjects from many beans of the same class
+ * reflects over the class only the first time.
+ * <p>
+ * A BeanProperties is not changed once made, and can be used from any
+ * thread.
+ */
+final class BeanProperties {
+
+    private static final ClassValue<BeanProperties> CACHE = new ClassValue<BeanProperties>() {
+        protected BeanProperties computeValue(Class<?> klass) {
+            return new BeanProperties(klass);
+        }
+    };
+
+    private static final MethodType GETTER_TYPE =
+        MethodType.methodType(Object.class, Object.class);
+
+    private final String[] keys;
+    // Each of type (Object)Object.
+    private final MethodHandle[] getters;
+    // Whether wrap turns values of the class into strings.
+    private final boolean system;
+
+
+    private BeanProperties(Class<?> klass) {
+        ClassLoader loader = klass.getClassLoader();
+        Package objectPackage = klass.getPackage();
+        String packageName = objectPackage != null ? objectPackage.getName() : "";
+        this.system = packageName.startsWith("java.") ||
+            packageName.startsWith("javax.") || loader == null;
+
+// If klass is a System class then set includeSuperClass to false.
+
+        boolean includeSuperClass = loader != null;
+
+        Method[] methods = includeSuperClass ?
+            klass.getMethods() : klass.getDeclaredMethods();
+        List<String> keys = new ArrayList<String>(methods.length);
+        List<MethodHandle> getters = new ArrayList<MethodHandle>(methods.length);
+        // The access of this package, as Method.invoke had from JSONObject.
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (int i = 0; i < methods.length; i += 1) {
+            Method method = methods[i];
+            String key = key(method);
+            if (key == null) {
+                continue;
+            }
+            MethodHandle getter;
+            try {
+                getter = lookup.unreflect(method);
+            } catch (IllegalAccessException ignore) {
+                // Method.invoke would have failed the same way on every call.
+                continue;
+            }
+            if (Modifier.isStatic(method.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            keys.add(key);
+            getters.add(getter.asType(GETTER_TYPE));
+        }
+        this.keys = keys.toArray(new String[keys.size()]);
+        this.getters = getters.toArray(new MethodHandle[getters.size()]);
+    }
+
+
+    /**
+     * Get the properties of a class.
+     * @param klass A class.
+     * @return Its properties, made on the first call for the class.
+     */
+    static BeanProperties of(Class<?> klass) {
+        return CACHE.get(klass);
+    }
+
+
+    /**
+     * Determine if the class is a Java platform class, whose values
+     * {@link JSONObject#wrap} turns into strings.
+     * @return true if the class comes from java., javax., or the bootstrap
+     *  class loader.
+     */
+    boolean isSystem() {
+        return this.system;
+    }
+
+
+    /**
+     * Put the value of each getter of a bean that returns non-null into a
+     * map, wrapped as by {@link JSONObject#wrap}. A getter that throws is
+     * skipped.
+     * @param bean A bean of the class.
+     * @param map The map to put into.
+     */
+    void populate(Object bean, Map<String, Object> map) {
+        for (int i = 0; i < this.getters.length; i += 1) {
+            Object result;
+            try {
+                result = this.getters[i].invokeExact(bean);
+            } catch (Throwable ignore) {
+                // Method.invoke wrapped anything a getter threw, and it was
+                // ignored.
+                continue;
+            }
+            if (result != null) {
+                map.put(this.keys[i], JSONObject.wrap(result));
+            }
+        }
+    }
+
+
+    // The key is formed by removing the "get" or "is" prefix. If the second
+    // remaining character is not upper case, then the first character is
+    // converted to lower case. Returns null if the method is not a getter.
+    private static String key(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) ||
+                method.getParameterTypes().length != 0) {
+            return null;
+        }
+        String name = method.getName();
+        String key;
+        if (name.startsWith("get")) {
+            if (name.equals("getClass") || name.equals("getDeclaringClass")) {
+                return null;
+            }
+            key = name.substring(3);
+        } else if (name.startsWith("is")) {
+            key = name.substring(2);
+        } else {
+            return null;
+        }
+        if (key.length() == 0 || !Character.isUpperCase(key.charAt(0))) {
+            return null;
+        }
+        if (key.length() == 1) {
+            key = key.toLowerCase();
+        } else if (!Character.isUpperCase(key.charAt(1))) {
+            key = key.substring(0, 1).toLowerCase() + key.substring(1);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,253 @@
+package com.nettoolkit.json;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A CompactMap is the map a JSONObject keeps its properties in. Most objects
+ * have a handful of keys, so up to {@link #MAX_FLAT} of them are kept in one
+ * array of alternating keys and values and found by comparing each key in
+ * turn, which is as fast as hashing for so few and takes a fraction of the
+ * memory of a LinkedHashMap. An object that grows past that moves its
+ * properties into a LinkedHashMap, and keeps using it from then on.
+ * <p>
+ * Either way the keys are kept in the order they were first put, and the map
+ * behaves as a LinkedHashMap does: its views write through and its iterators
+ * fail fast. Keys must not be null.
+ */
+final class CompactMap extends AbstractMap<String, Object> {
+
+    /**
+     * The most keys kept in the flat array.
+     */
+    static final int MAX_FLAT = 16;
+
+    private static final Object[] EMPTY = {};
+
+    // Keys at even indexes, each followed by its value.
+    private Object[] table = EMPTY;
+    private int size;
+    // The map used instead of the table once there are too many keys.
+    private LinkedHashMap<String, Object> hashed;
+    private int modCount;
+    private Set<Map.Entry<String, Object>> entrySet;
+
+
+    public int size() {
+        return this.hashed != null ? this.hashed.size() : this.size;
+    }
+
+
+    public boolean containsKey(Object key) {
+        return this.hashed != null
+            ? this.hashed.containsKey(key)
+            : this.indexOf(key) >= 0;
+    }
+
+
+    public Object get(Object key) {
+        if (this.hashed != null) {
+            return this.hashed.get(key);
+        }
+        int i = this.indexOf(key);
+        return i >= 0 ? this.table[i + 1] : null;
+    }
+
+
+    public Object put(String key, Object value) {
+        if (this.hashed != null) {
+            return this.hashed.put(key, value);
+        }
+        int i = this.indexOf(key);
+        if (i >= 0) {
+            Object old = this.table[i + 1];
+            this.table[i + 1] = value;
+            return old;
+        }
+        this.add(key, value);
+        return null;
+    }
+
+
+    public Object putIfAbsent(String key, Object value) {
+        if (this.hashed != null) {
+            return this.hashed.putIfAbsent(key, value);
+        }
+        int i = this.indexOf(key);
+        if (i >= 0) {
+            Object old = this.table[i + 1];
+            if (old == null) {
+                this.table[i + 1] = value;
+            }
+            return old;
+        }
+        this.add(key, value);
+        return null;
+    }
+
+
+    public Object remove(Object key) {
+        if (this.hashed != null) {
+            return this.hashed.remove(key);
+        }
+        int i = this.indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        Object old = this.table[i + 1];
+        this.removeAt(i);
+        return old;
+    }
+
+
+    public void clear() {
+        if (this.hashed != null) {
+            this.hashed.clear();
+            return;
+        }
+        Arrays.fill(this.table, 0, 2 * this.size, null);
+        this.size = 0;
+        this.modCount += 1;
+    }
+
+
+    public Set<Map.Entry<String, Object>> entrySet() {
+        if (this.entrySet == null) {
+            this.entrySet = new EntrySet();
+        }
+        return this.entrySet;
+    }
+
+
+    private int indexOf(Object key) {
+        Object[] table = this.table;
+        int end = 2 * this.size;
+        for (int i = 0; i < end; i += 2) {
+            Object k = table[i];
+            if (k == key || k.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    private void add(String key, Object value) {
+        int end = 2 * this.size;
+        if (end == this.table.length) {
+            if (this.size == MAX_FLAT) {
+                this.hashed = new LinkedHashMap<String, Object>(4 * MAX_FLAT);
+                for (int i = 0; i < end; i += 2) {
+                    this.hashed.put((String)this.table[i], this.table[i + 1]);
+                }
+                this.hashed.put(key, value);
+                this.table = EMPTY;
+                this.size = 0;
+                return;
+            }
+            this.table = Arrays.copyOf(this.table, end == 0 ? 8 : 2 * end);
+        }
+        this.table[end] = key;
+        this.table[end + 1] = value;
+        this.size += 1;
+        this.modCount += 1;
+    }
+
+
+    private void removeAt(int i) {
+        int end = 2 * this.size;
+        System.arraycopy(this.table, i + 2, this.table, i, end - i - 2);
+        this.table[end - 2] = null;
+        this.table[end - 1] = null;
+        this.size -= 1;
+        this.modCount += 1;
+    }
+
+
+    private final class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+        public int size() {
+            return CompactMap.this.size();
+        }
+
+
+        public void clear() {
+            CompactMap.this.clear();
+        }
+
+
+        public Iterator<Map.Entry<String, Object>> iterator() {
+            if (CompactMap.this.hashed != null) {
+                return CompactMap.this.hashed.entrySet().iterator();
+            }
+            return new FlatIterator();
+        }
+    }
+
+
+    private final class FlatIterator implements Iterator<Map.Entry<String, Object>> {
+
+        private int next;
+        private int last = -1;
+        private int expectedModCount = CompactMap.this.modCount;
+
+
+        public boolean hasNext() {
+            return this.next < 2 * CompactMap.this.size;
+        }
+
+
+        public Map.Entry<String, Object> next() {
+            this.check();
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.last = this.next;
+            this.next += 2;
+            Object[] table = CompactMap.this.table;
+            return new Entry((String)table[this.last], table[this.last + 1]);
+        }
+
+
+        public void remove() {
+            if (this.last < 0) {
+                throw new IllegalStateException();
+            }
+            this.check();
+            CompactMap.this.removeAt(this.last);
+            this.next = this.last;
+            this.last = -1;
+            this.expectedModCount = CompactMap.this.modCount;
+        }
+
+
+        private void check() {
+            if (CompactMap.this.modCount != this.expectedModCount ||
+                    CompactMap.this.hashed != null) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+
+    // An entry whose setValue writes through to the map.
+    private final class Entry extends AbstractMap.SimpleEntry<String, Object> {
+
+        Entry(String key, Object value) {
+            super(key, value);
+        }
+
+
+        public Object setValue(Object value) {
+            CompactMap.this.put(this.getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
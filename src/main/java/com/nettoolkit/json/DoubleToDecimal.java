@@ -0,0 +1,296 @@
+package com.nettoolkit.json;
+
+import java.math.BigInteger;
+
+/**
+ * DoubleToDecimal writes a double as the shortest decimal that reads back as
+ * the same double, using Raffaello Giulietti's Schubfach algorithm ("The
+ * Schubfach way to render doubles", 2020). The digits are those of
+ * <code>Double.toString</code> on JDK 19 and later; earlier JDKs sometimes
+ * print one or two more digits than needed.
+ * <p>
+ * The text has the form {@link JSONObject#numberToString} has always given
+ * doubles: plain notation without trailing zeros from 10<sup>-3</sup> up to
+ * 10<sup>7</sup>, as in <code>12.5</code> and <code>100</code>, and
+ * computerized scientific notation outside that range, as in
+ * <code>1.0E-5</code> and <code>6.02214076E23</code>.
+ * <p>
+ * The digits are written straight into a char array, so no String is made.
+ */
+final class DoubleToDecimal {
+
+    /**
+     * The most chars {@link #write} writes, as in
+     * <code>-2.2250738585072014E-308</code>.
+     */
+    static final int MAX_CHARS = 24;
+
+    // The names follow the paper and the JDK implementation.
+    private static final int P = 53;
+    private static final int Q_MIN = -1074;
+    private static final long C_MIN = 1L << P - 1;
+    private static final int BQ_MASK = 0x7FF;
+    private static final long T_MASK = C_MIN - 1;
+    private static final long MASK_63 = (1L << 63) - 1;
+    // Subnormal significands below this are scaled up by 10 so that two
+    // digits are produced, as Double.toString does.
+    private static final int C_TINY = 3;
+    private static final int K_MIN = -324;
+    private static final int K_MAX = 292;
+    // The number of digits toDecimal produces.
+    private static final int H = 17;
+
+    private static final long[] POW10 = new long[H + 1];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i <= H; i += 1) {
+            POW10[i] = 10 * POW10[i - 1];
+        }
+    }
+
+    // g = floor(10^-k 2^-r) + 1 for each k, with r picked so that
+    // 2^125 <= g < 2^126, stored as g1 = g >> 63 and g0 = g & MASK_63.
+    private static final long[] G = new long[2 * (K_MAX - K_MIN + 1)];
+    static {
+        for (int k = K_MIN; k <= K_MAX; k += 1) {
+            int r = flog2pow10(-k) - 125;
+            BigInteger num = BigInteger.TEN.pow(Math.max(-k, 0)).shiftLeft(Math.max(-r, 0));
+            BigInteger den = BigInteger.TEN.pow(Math.max(k, 0)).shiftLeft(Math.max(r, 0));
+            BigInteger g = num.divide(den).add(BigInteger.ONE);
+            G[2 * (k - K_MIN)] = g.shiftRight(63).longValue();
+            G[2 * (k - K_MIN) + 1] = g.longValue() & MASK_63;
+        }
+    }
+
+
+    private DoubleToDecimal() {
+    }
+
+
+    /**
+     * Produce the text of a finite double.
+     * @param d A finite double.
+     * @return The text.
+     */
+    static String toString(double d) {
+        char[] buf = new char[MAX_CHARS];
+        return new String(buf, 0, write(d, buf, 0));
+    }
+
+
+    /**
+     * Write the text of a finite double into a char array.
+     * @param d A finite double.
+     * @param buf The array, with at least {@link #MAX_CHARS} chars free
+     *  from <code>off</code>.
+     * @param off Where to start writing.
+     * @return The index after the last char written.
+     */
+    static int write(double d, char[] buf, int off) {
+        long bits = Double.doubleToRawLongBits(d);
+        long t = bits & T_MASK;
+        int bq = (int) (bits >>> P - 1) & BQ_MASK;
+        if (bits < 0) {
+            buf[off] = '-';
+            off += 1;
+        }
+        if (bq != 0) {
+            // Normal: d = c 2^q with q = -mq.
+            int mq = -Q_MIN + 1 - bq;
+            long c = C_MIN | t;
+            if (0 < mq && mq < P) {
+                // Integers below 2^53 are their own shortest decimal.
+                long f = c >> mq;
+                if (f << mq == c) {
+                    return toChars(f, 0, buf, off);
+                }
+            }
+            return toDecimal(-mq, c, 0, buf, off);
+        }
+        if (t != 0) {
+            return t < C_TINY
+                ? toDecimal(Q_MIN, 10 * t, -1, buf, off)
+                : toDecimal(Q_MIN, t, 0, buf, off);
+        }
+        buf[off] = '0';
+        return off + 1;
+    }
+
+
+    // Figure 7 of the paper, with the computations of its figure 9.
+    private static int toDecimal(int q, long c, int dk, char[] buf, int off) {
+        int out = (int) c & 0x1;
+        long cb = c << 2;
+        long cbr = cb + 2;
+        long cbl;
+        int k;
+        if (c != C_MIN || q == Q_MIN) {
+            // Regular spacing.
+            cbl = cb - 2;
+            k = flog10pow2(q);
+        } else {
+            // Irregular spacing: the next double down is closer.
+            cbl = cb - 1;
+            k = flog10threeQuartersPow2(q);
+        }
+        int h = q + flog2pow10(-k) + 2;
+
+        long g1 = G[2 * (k - K_MIN)];
+        long g0 = G[2 * (k - K_MIN) + 1];
+
+        long vb = rop(g1, g0, cb << h);
+        long vbl = rop(g1, g0, cbl << h);
+        long vbr = rop(g1, g0, cbr << h);
+
+        long s = vb >> 2;
+        if (s >= 100) {
+            // Try one digit less: sp10 = 10 floor(s / 10), tp10 = sp10 + 10.
+            long sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+            long tp10 = sp10 + 10;
+            boolean upin = vbl + out <= sp10 << 2;
+            boolean wpin = (tp10 << 2) + out <= vbr;
+            if (upin != wpin) {
+                return toChars(upin ? sp10 : tp10, k, buf, off);
+            }
+        }
+
+        long t = s + 1;
+        boolean uin = vbl + out <= s << 2;
+        boolean win = (t << 2) + out <= vbr;
+        if (uin != win) {
+            return toChars(uin ? s : t, k + dk, buf, off);
+        }
+        // Both are in the rounding interval: take the closer, or the even one.
+        long cmp = vb - (s + t << 1);
+        return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, off);
+    }
+
+
+    // Rounds cp g 2^-127 to odd, where g = g1 2^63 + g0.
+    private static long rop(long g1, long g0, long cp) {
+        long x1 = Math.multiplyHigh(g0, cp);
+        long y0 = g1 * cp;
+        long y1 = Math.multiplyHigh(g1, cp);
+        long z = (y0 >>> 1) + x1;
+        long vbp = y1 + (z >>> 63);
+        return vbp | (z & MASK_63) + MASK_63 >>> 63;
+    }
+
+
+    // floor(log10(2^e)), for |e| <= 5456721.
+    private static int flog10pow2(int e) {
+        return (int) (e * 661_971_961_083L >> 41);
+    }
+
+
+    // floor(log10(3/4 2^e)), for |e| <= 5456721.
+    private static int flog10threeQuartersPow2(int e) {
+        return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+    }
+
+
+    // floor(log2(10^e)), for |e| <= 1233410.
+    private static int flog2pow10(int e) {
+        return (int) (e * 913_124_641_741L >> 38);
+    }
+
+
+    // Writes f 10^e, 0 < f < 10^17, in the form described in the class
+    // comment. As in the JDK, the digits are taken from f as one digit and
+    // two groups of eight using multiplications and int arithmetic, since
+    // dividing a long by a constant is slow.
+    private static int toChars(long f, int e, char[] buf, int off) {
+        int len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+        if (f >= POW10[len]) {
+            len += 1;
+        }
+        // The exponent of the first digit.
+        int exp = e + len - 1;
+        f *= POW10[H - len];
+
+        // floor(f / 10^8) = floor(floor(193_428_131_138_340_668 f / 2^64) / 2^20)
+        // floor(hm / 10^8) = floor(1_441_151_881 hm / 2^57)
+        long hm = Math.multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+        int l = (int) (f - 100_000_000L * hm);
+        int h = (int) (hm * 1_441_151_881L >>> 57);
+        int m = (int) (hm - 100_000_000 * h);
+
+        // The 17 digits go after room for "0.00", then trailing zeros are
+        // dropped and the digits moved into place.
+        int start = off + 4;
+        buf[start] = (char) ('0' + h);
+        write8Digits(m, buf, start + 1);
+        int end = start + 9;
+        if (l != 0) {
+            // Short values, such as most gauge values, stop at m.
+            write8Digits(l, buf, end);
+            end = start + H;
+        }
+        while (buf[end - 1] == '0') {
+            end -= 1;
+        }
+        int n = end - start;
+
+        if (exp >= 7 || exp < -3) {
+            // d.ddddEn, with at least one digit after the point.
+            buf[off] = buf[start];
+            buf[off + 1] = '.';
+            if (n == 1) {
+                buf[off + 2] = '0';
+                off += 3;
+            } else {
+                System.arraycopy(buf, start + 1, buf, off + 2, n - 1);
+                off += n + 1;
+            }
+            buf[off] = 'E';
+            off += 1;
+            if (exp < 0) {
+                buf[off] = '-';
+                off += 1;
+                exp = -exp;
+            }
+            if (exp >= 100) {
+                buf[off] = (char) ('0' + exp / 100);
+                off += 1;
+            }
+            if (exp >= 10) {
+                buf[off] = (char) ('0' + exp / 10 % 10);
+                off += 1;
+            }
+            buf[off] = (char) ('0' + exp % 10);
+            return off + 1;
+        }
+        if (exp < 0) {
+            // 0.000ddd
+            buf[off] = '0';
+            buf[off + 1] = '.';
+            for (int i = off + 2; i < off + 1 - exp; i += 1) {
+                buf[i] = '0';
+            }
+            System.arraycopy(buf, start, buf, off + 1 - exp, n);
+            return off + 1 - exp + n;
+        }
+        if (n <= exp + 1) {
+            // ddd000
+            System.arraycopy(buf, start, buf, off, n);
+            for (int i = off + n; i <= off + exp; i += 1) {
+                buf[i] = '0';
+            }
+            return off + exp + 1;
+        }
+        // ddd.ddd
+        System.arraycopy(buf, start, buf, off, exp + 1);
+        buf[off + exp + 1] = '.';
+        System.arraycopy(buf, start + exp + 1, buf, off + exp + 2, n - exp - 1);
+        return off + n + 1;
+    }
+
+
+    // Writes the eight decimal digits of 0 <= i < 10^8, with leading zeros.
+    private static void write8Digits(int i, char[] buf, int off) {
+        for (int j = off + 7; j >= off; j -= 1) {
+            buf[j] = (char) ('0' + i % 10);
+            i /= 10;
+        }
+    }
+}
@@ -26,7 +26,6 @@ OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
 SOFTWARE.
 */
 
-import java.io.IOException;
 import java.io.Writer;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
@@ -136,6 +135,20 @@ public class JSONArray {
     }
 
 
+    /**
+     * Construct a JSONArray from the next value of a JSONParser.
+     * @param parser A JSONParser positioned before an array.
+     * @throws JSONException If there is a syntax error.
+     */
+    public JSONArray(JSONParser parser) throws JSONException {
+        this();
+        if (parser.peekClean() != '[' || parser.next() != JSONParser.Token.START_ARRAY) {
+            throw parser.syntaxError("A JSONArray text must start with '['");
+        }
+        parser.readArray(this);
+    }
+
+
     /**
      * Construct a JSONArray from a source JSON text.
      * @param source     A string that begins with
@@ -144,7 +157,7 @@ public class JSONArray {
      *  @throws JSONException If there is a syntax error.
      */
     public JSONArray(String source) throws JSONException {
-        this(new JSONTokener(source));
+        this(new JSONParser(source));
     }
 
 
@@ -889,30 +902,7 @@ public class JSONArray {
      * @throws JSONException
      */
     public Writer write(Writer writer) throws JSONException {
-        try {
-            boolean b = false;
-            int     len = length();
-
-            writer.write('[');
-
-            for (int i = 0; i < len; i += 1) {
-                if (b) {
-                    writer.write(',');
-                }
-                Object v = this.myArrayList.get(i);
-                if (v instanceof JSONObject) {
-                    ((JSONObject)v).write(writer);
-                } else if (v instanceof JSONArray) {
-                    ((JSONArray)v).write(writer);
-                } else {
-                    writer.write(JSONObject.valueToString(v));
-                }
-                b = true;
-            }
-            writer.write(']');
-            return writer;
-        } catch (IOException e) {
-           throw new JSONException(e);
-        }
+        new JSONWriter(writer).value(this);
+        return writer;
     }
 }
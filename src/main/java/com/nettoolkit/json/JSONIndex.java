@@ -0,0 +1,350 @@
+package com.nettoolkit.json;
+
+import java.util.Arrays;
+
+/**
+ * A JSONIndex finds values in a JSON text without parsing all of it. It is
+ * made in one pass over the text that records where each object and array
+ * begins and ends, skipping over strings. Values are then found by key or
+ * element number and parsed on their own with {@link #value}, stepping over
+ * the objects and arrays in between in one jump each. Reading one field of
+ * a large text costs about as much as that field.
+ * <p>
+ * Positions are indexes into the source array: the quote, bracket or first
+ * character of a value. -1 stands for a value that isn't there, and every
+ * method accepts it, so lookups can be chained:
+ * <pre>
+ * JSONIndex index = new JSONIndex(strJson);
+ * Object count = index.value(index.find(index.element(
+ *     index.find(index.root(), "results"), 0), "count"));
+ * </pre>
+ * The one pass checks only that strings are terminated and that braces and
+ * brackets match. Other syntax errors are found by the parsers that read
+ * values, so an error in a part of the text that is never read goes
+ * unnoticed. The same forgiving texts are accepted as by
+ * {@link JSONParser}.
+ * <p>
+ * A JSONIndex is not changed once made, and can be read from any thread.
+ * The source array must not be changed while it is in use.
+ */
+public class JSONIndex {
+
+    private final char[] buf;
+    private final int offset;
+    private final int end;
+    // Where the root value begins, or end if the text is empty.
+    private final int root;
+    // The positions of the opening and closing brace or bracket of each
+    // object and array, in the order they open.
+    private int[] opens;
+    private int[] closes;
+    private int count;
+    private int maxValueLength;
+    private int valueCapacity;
+
+
+    /**
+     * Index a string.
+     *
+     * @param s     A source string.
+     * @throws JSONException If a string is unterminated or a brace or
+     *  bracket is unmatched.
+     */
+    public JSONIndex(String s) throws JSONException {
+        this(s.toCharArray(), 0, s.length());
+    }
+
+
+    /**
+     * Index a range of a char array, without copying it.
+     *
+     * @param chars     The source characters.
+     * @param offset    The index of the first character.
+     * @param length    The number of characters.
+     * @throws JSONException If a string is unterminated or a brace or
+     *  bracket is unmatched.
+     */
+    public JSONIndex(char[] chars, int offset, int length) throws JSONException {
+        if (offset < 0 || length < 0 || offset > chars.length - length) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", length " + length + ", array " + chars.length);
+        }
+        this.buf = chars;
+        this.offset = offset;
+        this.end = offset + length;
+        int i = offset;
+        while (i < this.end && chars[i] <= ' ' && chars[i] != 0) {
+            i += 1;
+        }
+        this.root = i < this.end && chars[i] != 0 ? i : this.end;
+        this.opens = new int[16];
+        this.closes = new int[16];
+        this.scan();
+    }
+
+
+    /**
+     * Share String instances between equal short string values read by
+     * {@link #value}, as {@link JSONParser#dedupValues} does. Each call to
+     * <code>value</code> has its own cache.
+     *
+     * @param maxLength The longest value to share, or 0 to share none, which
+     *  is the default.
+     * @param capacity  The number of values remembered at once.
+     * @return this
+     */
+    public JSONIndex dedupValues(int maxLength, int capacity) {
+        this.maxValueLength = maxLength;
+        this.valueCapacity = capacity;
+        return this;
+    }
+
+
+    /**
+     * Get the position of the root value.
+     *
+     * @return The position, or -1 if the text is empty.
+     */
+    public int root() {
+        return this.root < this.end ? this.root : -1;
+    }
+
+
+    /**
+     * Determine if the value at a position is an object.
+     *
+     * @param pos   A position, or -1.
+     * @return true if there is an object at pos.
+     */
+    public boolean isObject(int pos) {
+        return pos >= 0 && this.buf[pos] == '{';
+    }
+
+
+    /**
+     * Determine if the value at a position is an array.
+     *
+     * @param pos   A position, or -1.
+     * @return true if there is an array at pos.
+     */
+    public boolean isArray(int pos) {
+        return pos >= 0 && this.buf[pos] == '[';
+    }
+
+
+    /**
+     * Find the value of a key in an object. If the key occurs more than once,
+     * the first is found.
+     *
+     * @param pos   The position of the object, or -1.
+     * @param key   A key string.
+     * @return The position of the value, or -1 if the key is not there or
+     *  there is no object at pos.
+     * @throws JSONException If there is a syntax error before the key.
+     */
+    public int find(int pos, String key) throws JSONException {
+        if (!this.isObject(pos)) {
+            return -1;
+        }
+        JSONParser parser = this.parser(pos);
+        parser.next();
+        for (JSONParser.Token t = parser.next(); t != JSONParser.Token.END_OBJECT;
+                t = parser.next()) {
+            boolean found = key.equals(parser.getString());
+            t = parser.next();
+            if (found) {
+                return parser.valueStart();
+            }
+            this.skip(parser, t);
+        }
+        return -1;
+    }
+
+
+    /**
+     * Find an element of an array.
+     *
+     * @param pos   The position of the array, or -1.
+     * @param index The index of the element.
+     * @return The position of the element, or -1 if the array is shorter or
+     *  there is no array at pos.
+     * @throws JSONException If there is a syntax error before the element.
+     */
+    public int element(int pos, int index) throws JSONException {
+        if (!this.isArray(pos) || index < 0) {
+            return -1;
+        }
+        JSONParser parser = this.parser(pos);
+        parser.next();
+        int i = 0;
+        for (JSONParser.Token t = parser.next(); t != JSONParser.Token.END_ARRAY;
+                t = parser.next()) {
+            if (i == index) {
+                return parser.valueStart();
+            }
+            this.skip(parser, t);
+            i += 1;
+        }
+        return -1;
+    }
+
+
+    /**
+     * Parse the value at a position.
+     *
+     * @param pos   A position, or -1.
+     * @return A JSONObject, JSONArray, String, Boolean, Integer, Long, Double
+     *  or JSONObject.NULL, or null if pos is -1.
+     * @throws JSONException If there is a syntax error in the value.
+     */
+    public Object value(int pos) throws JSONException {
+        if (pos < 0) {
+            return null;
+        }
+        if (this.buf[pos] == ',') {
+            // An elided element.
+            return JSONObject.NULL;
+        }
+        return this.parser(pos).nextValue();
+    }
+
+
+    /**
+     * Parse the whole text as a JSONObject.
+     *
+     * @return The JSONObject.
+     * @throws JSONException If the text is not an object or has a syntax
+     *  error.
+     */
+    public JSONObject toJSONObject() throws JSONException {
+        return new JSONObject(this.parser(this.root));
+    }
+
+
+    /**
+     * Get the source text.
+     *
+     * @return The text that was indexed.
+     */
+    public String toString() {
+        return new String(this.buf, this.offset, this.end - this.offset);
+    }
+
+
+    /**
+     * Make a parser that reads the value at a position, so that it can be
+     * decoded token by token. Its first token is the start of the value.
+     *
+     * @param pos   A position.
+     * @return The parser.
+     */
+    public JSONParser parser(int pos) {
+        return new JSONParser(this.buf, pos, this.end - pos)
+            .dedupValues(this.maxValueLength, this.valueCapacity);
+    }
+
+
+    // Steps over the object or array whose start token was just returned.
+    private void skip(JSONParser parser, JSONParser.Token t) {
+        if (t == JSONParser.Token.START_OBJECT || t == JSONParser.Token.START_ARRAY) {
+            int open = parser.valueStart();
+            parser.skipTo(this.closes[Arrays.binarySearch(this.opens, 0, this.count, open)]);
+        }
+    }
+
+
+    // Records the objects and arrays of the root value. A quote begins a
+    // string only where a value or key begins, since unquoted text may
+    // contain an apostrophe.
+    private void scan() throws JSONException {
+        int[] stack = new int[16];
+        int depth = 0;
+        boolean begin = true;
+        for (int i = this.root; i < this.end; i += 1) {
+            char c = this.buf[i];
+            if (c <= ' ') {
+                if (c == 0) {
+                    break;
+                }
+                continue;
+            }
+            switch (c) {
+            case '"':
+            case '\'':
+                if (begin || c == '"') {
+                    i = this.skipString(i, c);
+                }
+                begin = false;
+                break;
+            case '{':
+            case '[':
+                if (this.count == this.opens.length) {
+                    this.opens = Arrays.copyOf(this.opens, this.count * 2);
+                    this.closes = Arrays.copyOf(this.closes, this.count * 2);
+                }
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                this.opens[this.count] = i;
+                stack[depth] = this.count;
+                this.count += 1;
+                depth += 1;
+                begin = true;
+                break;
+            case '}':
+            case ']':
+                if (depth == 0 ||
+                        this.buf[this.opens[stack[depth - 1]]] != (c == '}' ? '{' : '[')) {
+                    throw this.syntaxError("Unexpected '" + c + "'", i);
+                }
+                depth -= 1;
+                this.closes[stack[depth]] = i;
+                begin = false;
+                break;
+            case ',':
+            case ':':
+            case ';':
+            case '=':
+                begin = true;
+                break;
+            case '>':
+                // As in =>.
+                break;
+            default:
+                begin = false;
+                break;
+            }
+            if (depth == 0 && !begin) {
+                // The root value is complete.
+                return;
+            }
+        }
+        if (depth > 0) {
+            throw this.syntaxError(this.buf[this.opens[stack[depth - 1]]] == '{'
+                ? "A JSONObject text must end with '}'"
+                : "A JSONArray text must end with ']'", this.end);
+        }
+    }
+
+
+    // Returns the index of the closing quote of the string at i.
+    private int skipString(int i, char quote) throws JSONException {
+        for (i += 1; i < this.end; i += 1) {
+            char c = this.buf[i];
+            if (c == quote) {
+                return i;
+            }
+            if (c == '\\') {
+                i += 1;
+            } else if (c == '\n' || c == '\r' || c == 0) {
+                break;
+            }
+        }
+        throw this.syntaxError("Unterminated string", i);
+    }
+
+
+    private JSONException syntaxError(String message, int i) {
+        return new JSONException(message + " at " + (i - this.offset));
+    }
+}
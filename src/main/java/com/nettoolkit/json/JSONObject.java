@@ -27,13 +27,11 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
@@ -130,7 +128,8 @@ public class JSONObject {
 
 
     /**
-     * The map where the JSONObject's properties are kept.
+     * The map where the JSONObject's properties are kept, in the order they
+     * were put.
      */
     private Map<String, Object> map;
 
@@ -148,7 +147,7 @@ public class JSONObject {
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.map = new LinkedHashMap<String, Object>();
+        this.map = new CompactMap();
     }
 
 
@@ -227,6 +226,21 @@ public class JSONObject {
     }
 
 
+    /**
+     * Construct a JSONObject from the next value of a JSONParser.
+     * @param parser A JSONParser positioned before an object.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    public JSONObject(JSONParser parser) throws JSONException {
+        this();
+        if (parser.peekClean() != '{' || parser.next() != JSONParser.Token.START_OBJECT) {
+            throw parser.syntaxError("A JSONObject text must begin with '{'");
+        }
+        parser.readObject(this);
+    }
+
+
     /**
      * Construct a JSONObject from a Map.
      *
@@ -234,7 +248,7 @@ public class JSONObject {
      *  the JSONObject.
      */
     public JSONObject(Map map) {
-        this.map = new LinkedHashMap<String, Object>();
+        this.map = new CompactMap();
         if (map != null) {
             Iterator i = map.entrySet().iterator();
             while (i.hasNext()) {
@@ -264,6 +278,9 @@ public class JSONObject {
      * if the result of calling <code>object.getName()</code> is <code>"Larry Fine"</code>,
      * then the JSONObject will contain <code>"name": "Larry Fine"</code>.
      *
+     * The getters of a class are found the first time one of its objects is
+     * used and remembered, so later objects of the class cost only the calls.
+     *
      * @param bean An object that has getter methods that should be used
      * to make a JSONObject.
      */
@@ -307,7 +324,7 @@ public class JSONObject {
      *  string or a duplicated key.
      */
     public JSONObject(String source) throws JSONException {
-        this(new JSONTokener(source));
+        this(new JSONParser(source));
     }
 
 
@@ -410,8 +427,9 @@ public class JSONObject {
 
 
     /**
-     * Produce a string from a double. The string "null" will be returned if
-     * the number is not finite.
+     * Produce a string from a double: the shortest decimal that reads back
+     * as the same double. The string "null" will be returned if the number
+     * is not finite.
      * @param  d A double.
      * @return A String.
      */
@@ -419,20 +437,7 @@ public class JSONObject {
         if (Double.isInfinite(d) || Double.isNaN(d)) {
             return "null";
         }
-
-// Shave off trailing zeros and decimal point, if possible.
-
-        String string = Double.toString(d);
-        if (string.indexOf('.') > 0 && string.indexOf('e') < 0 && 
-        		string.indexOf('E') < 0) {
-            while (string.endsWith("0")) {
-                string = string.substring(0, string.length() - 1);
-            }
-            if (string.endsWith(".")) {
-                string = string.substring(0, string.length() - 1);
-            }
-        }
-        return string;
+        return DoubleToDecimal.toString(d);
     }
 
 
@@ -739,7 +744,8 @@ public class JSONObject {
     }
 
     /**
-     * Produce a string from a Number.
+     * Produce a string from a Number. Doubles are given as the shortest
+     * decimal that reads back as the same double.
      * @param  number A Number
      * @return A String.
      * @throws JSONException If n is a non-finite number.
@@ -750,6 +756,9 @@ public class JSONObject {
             throw new JSONException("Null pointer");
         }
         testValidity(number);
+        if (number instanceof Double) {
+            return DoubleToDecimal.toString(number.doubleValue());
+        }
 
 // Shave off trailing zeros and decimal point, if possible.
 
@@ -963,49 +972,7 @@ public class JSONObject {
 
 
     private void populateMap(Object bean) {
-        Class klass = bean.getClass();
-
-// If klass is a System class then set includeSuperClass to false. 
-
-        boolean includeSuperClass = klass.getClassLoader() != null;
-
-        Method[] methods = (includeSuperClass) ?
-                klass.getMethods() : klass.getDeclaredMethods();
-        for (int i = 0; i < methods.length; i += 1) {
-            try {
-                Method method = methods[i];
-                if (Modifier.isPublic(method.getModifiers())) {
-                    String name = method.getName();
-                    String key = "";
-                    if (name.startsWith("get")) {
-                        if (name.equals("getClass") || 
-                                name.equals("getDeclaringClass")) {
-                            key = "";
-                        } else {
-                            key = name.substring(3);
-                        }
-                    } else if (name.startsWith("is")) {
-                        key = name.substring(2);
-                    }
-                    if (key.length() > 0 &&
-                            Character.isUpperCase(key.charAt(0)) &&
-                            method.getParameterTypes().length == 0) {
-                        if (key.length() == 1) {
-                            key = key.toLowerCase();
-                        } else if (!Character.isUpperCase(key.charAt(1))) {
-                            key = key.substring(0, 1).toLowerCase() +
-                                key.substring(1);
-                        }
-
-                        Object result = method.invoke(bean, (Object[])null);
-                        if (result != null) {
-                            map.put(key, wrap(result));
-                        }
-                    }
-                }
-            } catch (Exception ignore) {
-            }
-        }
+        BeanProperties.of(bean.getClass()).populate(bean, this.map);
     }
 
 
@@ -1118,6 +1085,21 @@ public class JSONObject {
     }
 
 
+    /**
+     * Put a key/value pair read by a JSONParser.
+     * @throws JSONException If the key is duplicated or the value is a
+     *  non-finite number.
+     */
+    void putParsed(String key, Object value) throws JSONException {
+        if (value instanceof Double) {
+            testValidity(value);
+        }
+        if (this.map.putIfAbsent(key, value) != null) {
+            throw new JSONException("Duplicate key \"" + key + "\"");
+        }
+    }
+
+
     /**
      * Put a key/value pair in the JSONObject, but only if the key and the
      * value are both non-null, and only if there is not already a member
@@ -1165,60 +1147,85 @@ public class JSONObject {
      * @return  A String correctly formatted for insertion in a JSON text.
      */
     public static String quote(String string) {
+        StringWriter sw = new StringWriter(string == null ? 2 : string.length() + 4);
+        try {
+            return quote(string, sw).toString();
+        } catch (IOException ignored) {
+            // StringWriter doesn't throw.
+            return "";
+        }
+    }
+
+    /**
+     * Write a string in double quotes with backslash sequences in all the
+     * right places, as {@link #quote(String)} does, straight to a writer.
+     * Runs of characters that need no escaping are written in one call.
+     * @param string A String
+     * @param w The writer.
+     * @return The writer.
+     * @throws IOException If the writer throws.
+     */
+    public static Writer quote(String string, Writer w) throws IOException {
         if (string == null || string.length() == 0) {
-            return "\"\"";
+            w.write("\"\"");
+            return w;
         }
 
         char         b;
         char         c = 0;
+        String       escaped;
         String       hhhh;
         int          i;
         int          len = string.length();
-        StringBuffer sb = new StringBuffer(len + 4);
+        int          start = 0;
 
-        sb.append('"');
+        w.write('"');
         for (i = 0; i < len; i += 1) {
             b = c;
             c = string.charAt(i);
             switch (c) {
             case '\\':
+                escaped = "\\\\";
+                break;
             case '"':
-                sb.append('\\');
-                sb.append(c);
+                escaped = "\\\"";
                 break;
             case '/':
-                if (b == '<') {
-                    sb.append('\\');
-                }
-                sb.append(c);
+                escaped = b == '<' ? "\\/" : null;
                 break;
             case '\b':
-                sb.append("\\b");
+                escaped = "\\b";
                 break;
             case '\t':
-                sb.append("\\t");
+                escaped = "\\t";
                 break;
             case '\n':
-                sb.append("\\n");
+                escaped = "\\n";
                 break;
             case '\f':
-                sb.append("\\f");
+                escaped = "\\f";
                 break;
             case '\r':
-                sb.append("\\r");
+                escaped = "\\r";
                 break;
             default:
                 if (c < ' ' || (c >= '\u0080' && c < '\u00a0') ||
                                (c >= '\u2000' && c < '\u2100')) {
                     hhhh = "000" + Integer.toHexString(c);
-                    sb.append("\\u" + hhhh.substring(hhhh.length() - 4));
+                    escaped = "\\u" + hhhh.substring(hhhh.length() - 4);
                 } else {
-                    sb.append(c);
+                    escaped = null;
                 }
             }
+            if (escaped != null) {
+                w.write(string, start, i - start);
+                w.write(escaped);
+                start = i + 1;
+            }
         }
-        sb.append('"');
-        return sb.toString();
+        w.write(string, start, len - start);
+        w.write('"');
+        return w;
     }
 
     /**
@@ -1443,7 +1450,8 @@ public class JSONObject {
      * the JSON text. The method is required to produce a strictly
      * conforming text. If the object does not contain a toJSONString
      * method (which is the most common case), then a text will be
-     * produced by other means. If the value is an array or Collection,
+     * produced by other means. A JSONWritable value writes its own text
+     * with its writeTo method. If the value is an array or Collection,
      * then a JSONArray will be made from it and its toJSONString method
      * will be called. If the value is a MAP, then a JSONObject will be made
      * from it and its toJSONString method will be called. Otherwise, the
@@ -1474,6 +1482,11 @@ public class JSONObject {
             }
             throw new JSONException("Bad value from toJSONString: " + object);
         }
+        if (value instanceof JSONWritable) {
+            StringWriter sw = new StringWriter();
+            ((JSONWritable)value).writeTo(new JSONWriter(sw));
+            return sw.toString();
+        }
         if (value instanceof Number) {
             return numberToString((Number) value);
         }
@@ -1522,6 +1535,9 @@ public class JSONObject {
             }
         } catch (Exception ignore) {
         }
+        if (value instanceof JSONWritable) {
+            return valueToString(value);
+        }
         if (value instanceof Number) {
             return numberToString((Number) value);
         }
@@ -1564,13 +1580,16 @@ public class JSONObject {
              if (object == null) {
                  return NULL;
              }
-             if (object instanceof JSONObject || object instanceof JSONArray  || 
-                     NULL.equals(object)      || object instanceof JSONString || 
+             // The common final classes first, as they are the cheapest
+             // to test for.
+             if (object instanceof String     || object instanceof Long       ||
+                     object instanceof Integer || object instanceof Double    ||
+                     object instanceof Boolean || object instanceof JSONObject ||
+                     object instanceof JSONArray  || NULL.equals(object)      ||
+                     object instanceof JSONString ||
+                     object instanceof JSONWritable ||
                      object instanceof Byte   || object instanceof Character  ||
-                     object instanceof Short  || object instanceof Integer    ||
-                     object instanceof Long   || object instanceof Boolean    || 
-                     object instanceof Float  || object instanceof Double     ||
-                     object instanceof String) {
+                     object instanceof Short  || object instanceof Float) {
                  return object;
              }
              
@@ -1583,11 +1602,7 @@ public class JSONObject {
              if (object instanceof Map) {
                  return new JSONObject((Map)object);
              }
-             Package objectPackage = object.getClass().getPackage();
-             String objectPackageName = ( objectPackage != null ? objectPackage.getName() : "" );
-             if (objectPackageName.startsWith("java.") ||
-                     objectPackageName.startsWith("javax.") ||
-                     object.getClass().getClassLoader() == null) {
+             if (BeanProperties.of(object.getClass()).isSystem()) {
                  return object.toString();
              }
              return new JSONObject(object);
@@ -1607,33 +1622,8 @@ public class JSONObject {
       * @throws JSONException
       */
      public Writer write(Writer writer) throws JSONException {
-        try {
-            boolean  commanate = false;
-            Iterator keys = this.keys();
-            writer.write('{');
-
-            while (keys.hasNext()) {
-                if (commanate) {
-                    writer.write(',');
-                }
-                Object key = keys.next();
-                writer.write(quote(key.toString()));
-                writer.write(':');
-                Object value = this.map.get(key);
-                if (value instanceof JSONObject) {
-                    ((JSONObject)value).write(writer);
-                } else if (value instanceof JSONArray) {
-                    ((JSONArray)value).write(writer);
-                } else {
-                    writer.write(valueToString(value));
-                }
-                commanate = true;
-            }
-            writer.write('}');
-            return writer;
-        } catch (IOException exception) {
-            throw new JSONException(exception);
-        }
+        new JSONWriter(writer).value(this);
+        return writer;
      }
 
     // replaced in newer version by similar
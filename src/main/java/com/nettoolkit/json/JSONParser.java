@@ -0,0 +1,937 @@
+package com.nettoolkit.json;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A JSONParser is a pull parser over a char array. Each call to {@link #next}
+ * returns the next {@link Token}; the key or value of the token is then
+ * available from {@link #getString}, {@link #getValue} and the typed getters.
+ * The JSONObject and JSONArray text constructors are built on it.
+ * <p>
+ * The parser reads characters straight from the array and tracks only its
+ * position; line and character numbers are worked out when an error is
+ * reported. Strings without escapes are copied out of the array in one step,
+ * and integers and the <code>true</code>, <code>false</code> and
+ * <code>null</code> literals are recognized without building a string.
+ * <p>
+ * It accepts the same forgiving texts as {@link JSONTokener}: single-quoted
+ * and unquoted strings, <code>=</code> or <code>=&gt;</code> after keys,
+ * <code>;</code> between values, a trailing comma before a closing brace or
+ * bracket, and elided array elements, which read as <code>null</code>.
+ * Unquoted text is converted with {@link JSONObject#stringToValue}.
+ * <p>
+ * Equal keys share one String, so the keys repeated in every element of a
+ * large array take memory once. Short string values can be shared the same
+ * way with {@link #dedupValues}.
+ * <p>
+ * Sample:
+ * <pre>
+ * JSONParser parser = new JSONParser(strJson);
+ * for (JSONParser.Token token = parser.next();
+ *         token != JSONParser.Token.END_DOCUMENT; token = parser.next()) {
+ *     if (token == JSONParser.Token.KEY &amp;&amp; parser.getString().equals("id")) {
+ *         parser.next();
+ *         return parser.getString();
+ *     }
+ * }
+ * </pre>
+ */
+public class JSONParser {
+
+    /**
+     * The kinds of token returned by {@link JSONParser#next}.
+     */
+    public enum Token {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, KEY,
+        STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    // What the parser expects next.
+    private static final int ROOT = 0;
+    private static final int DONE = 1;
+    private static final int OBJECT_FIRST = 2;
+    private static final int OBJECT_KEY = 3;
+    private static final int OBJECT_COLON = 4;
+    private static final int OBJECT_NEXT = 5;
+    private static final int ARRAY_FIRST = 6;
+    private static final int ARRAY_ELEMENT = 7;
+    private static final int ARRAY_NEXT = 8;
+
+    // The size of the key cache, in slots, and the longest key it holds.
+    private static final int KEY_CACHE_SIZE = 256;
+    private static final int MAX_KEY_LENGTH = 64;
+
+    // The characters that end unquoted text, as in JSONTokener.nextValue.
+    private static final boolean[] DELIMITERS = new boolean[128];
+    static {
+        for (char c : ",:]}/\\\"[{;=#".toCharArray()) {
+            DELIMITERS[c] = true;
+        }
+    }
+
+    private final char[] buf;
+    private final int offset;
+    private final int end;
+    private int pos;
+    private int state = ROOT;
+    // true for each open object, false for each open array.
+    private boolean[] stack = new boolean[16];
+    private int depth;
+    private Token token;
+    private String string;
+    private Object value;
+    // The index of the first character of the last value.
+    private int start;
+    // Recently read keys and short string values, so that equal ones share a
+    // String. Each is a 2-way set-associative cache: a string hashes to a
+    // pair of slots, and a miss replaces the older of the two.
+    private String[] keys;
+    private String[] values;
+    private int maxValueLength;
+
+
+    /**
+     * Construct a JSONParser over a string.
+     *
+     * @param s     A source string.
+     */
+    public JSONParser(String s) {
+        this(s.toCharArray(), 0, s.length());
+    }
+
+
+    /**
+     * Construct a JSONParser over a range of a char array, without copying it.
+     * The array must not be changed while it is being parsed.
+     *
+     * @param chars     The source characters.
+     * @param offset    The index of the first character.
+     * @param length    The number of characters.
+     */
+    public JSONParser(char[] chars, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > chars.length - length) {
+            throw new IndexOutOfBoundsException(
+                "offset " + offset + ", length " + length + ", array " + chars.length);
+        }
+        this.buf = chars;
+        this.offset = offset;
+        this.end = offset + length;
+        this.pos = offset;
+    }
+
+
+    /**
+     * Construct a JSONParser over a range of UTF-8 bytes. The bytes are
+     * decoded once, up front; malformed sequences become U+FFFD.
+     *
+     * @param bytes     The source bytes.
+     * @param offset    The index of the first byte.
+     * @param length    The number of bytes.
+     */
+    public JSONParser(byte[] bytes, int offset, int length) {
+        this(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(bytes, offset, length)));
+    }
+
+
+    private JSONParser(CharBuffer chars) {
+        this(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining());
+    }
+
+
+    /**
+     * Share String instances between equal short string values, as is
+     * always done for keys. In a large array of similar objects, values such
+     * as names and codes then take memory once rather than once per object.
+     * The cache is bounded: it remembers about <code>capacity</code>
+     * strings, and strings that don't recur are soon replaced.
+     *
+     * @param maxLength The longest value to share, or 0 to share none, which
+     *  is the default.
+     * @param capacity  The number of values remembered at once, rounded up
+     *  to a power of two.
+     * @return this
+     */
+    public JSONParser dedupValues(int maxLength, int capacity) {
+        if (maxLength <= 0 || capacity <= 0) {
+            this.maxValueLength = 0;
+            this.values = null;
+        } else {
+            this.maxValueLength = maxLength;
+            this.values = new String[Math.max(2,
+                Integer.highestOneBit(Math.min(capacity, 1 << 20) - 1) << 1)];
+        }
+        return this;
+    }
+
+
+    /**
+     * Advance to the next token.
+     *
+     * @return The token, or END_DOCUMENT once the root value has been read.
+     * @throws JSONException If there is a syntax error.
+     */
+    public Token next() throws JSONException {
+        char c;
+        for (;;) {
+            switch (this.state) {
+            case ROOT:
+                this.state = DONE;
+                return value(clean());
+            case DONE:
+                this.value = null;
+                this.string = null;
+                return this.token = Token.END_DOCUMENT;
+            case OBJECT_FIRST:
+                c = clean();
+                if (c == 0) {
+                    throw syntaxError("A JSONObject text must end with '}'");
+                }
+                if (c == '}') {
+                    this.pos += 1;
+                    return close(Token.END_OBJECT);
+                }
+                return key(c);
+            case OBJECT_KEY:
+                c = clean();
+                if (c == '}') {
+                    this.pos += 1;
+                    return close(Token.END_OBJECT);
+                }
+                return key(c);
+            case OBJECT_COLON:
+                // The key is followed by ':'. We will also tolerate '=' or '=>'.
+                c = clean();
+                if (c == '=') {
+                    this.pos += 1;
+                    if (this.pos < this.end && this.buf[this.pos] == '>') {
+                        this.pos += 1;
+                    }
+                } else if (c == ':') {
+                    this.pos += 1;
+                } else {
+                    throw syntaxError("Expected a ':' after a key");
+                }
+                this.state = OBJECT_NEXT;
+                return value(clean());
+            case OBJECT_NEXT:
+                // Pairs are separated by ','. We will also tolerate ';'.
+                c = clean();
+                if (c == ',' || c == ';') {
+                    this.pos += 1;
+                    this.state = OBJECT_KEY;
+                    continue;
+                }
+                if (c == '}') {
+                    this.pos += 1;
+                    return close(Token.END_OBJECT);
+                }
+                throw syntaxError("Expected a ',' or '}'");
+            case ARRAY_FIRST:
+                if (clean() == ']') {
+                    this.pos += 1;
+                    return close(Token.END_ARRAY);
+                }
+                this.state = ARRAY_ELEMENT;
+                continue;
+            case ARRAY_ELEMENT:
+                c = clean();
+                this.state = ARRAY_NEXT;
+                if (c == ',') {
+                    // An elided element.
+                    this.start = this.pos;
+                    this.value = JSONObject.NULL;
+                    this.string = null;
+                    return this.token = Token.NULL;
+                }
+                return value(c);
+            case ARRAY_NEXT:
+                c = clean();
+                if (c == ',' || c == ';') {
+                    this.pos += 1;
+                    if (clean() == ']') {
+                        this.pos += 1;
+                        return close(Token.END_ARRAY);
+                    }
+                    this.state = ARRAY_ELEMENT;
+                    continue;
+                }
+                if (c == ']') {
+                    this.pos += 1;
+                    return close(Token.END_ARRAY);
+                }
+                throw syntaxError("Expected a ',' or ']'");
+            default:
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+
+    /**
+     * Get the current token.
+     *
+     * @return The token returned by the last call to next, or null.
+     */
+    public Token getToken() {
+        return this.token;
+    }
+
+
+    /**
+     * Get the current key, or the current value as a string.
+     *
+     * @return The key for KEY, the string for STRING, the text of the value
+     *  for NUMBER, BOOLEAN and NULL, or null for other tokens.
+     */
+    public String getString() {
+        if (this.string == null && this.value != null) {
+            this.string = this.value.toString();
+        }
+        return this.string;
+    }
+
+
+    /**
+     * Get the current value.
+     *
+     * @return A String, Boolean, Integer, Long, Double or JSONObject.NULL for
+     *  value tokens, or null for other tokens.
+     */
+    public Object getValue() {
+        return this.value;
+    }
+
+
+    /**
+     * Get the current value as a number.
+     *
+     * @return The number.
+     * @throws JSONException If the current token is not a NUMBER.
+     */
+    public Number getNumber() throws JSONException {
+        if (this.token != Token.NUMBER) {
+            throw syntaxError("Expected a number and instead saw " + this.token);
+        }
+        return (Number) this.value;
+    }
+
+
+    public int getInt() throws JSONException {
+        return getNumber().intValue();
+    }
+
+
+    public long getLong() throws JSONException {
+        return getNumber().longValue();
+    }
+
+
+    public double getDouble() throws JSONException {
+        return getNumber().doubleValue();
+    }
+
+
+    /**
+     * Get the current value as a boolean.
+     *
+     * @return The boolean.
+     * @throws JSONException If the current token is not a BOOLEAN.
+     */
+    public boolean getBoolean() throws JSONException {
+        if (this.token != Token.BOOLEAN) {
+            throw syntaxError("Expected a boolean and instead saw " + this.token);
+        }
+        return ((Boolean) this.value).booleanValue();
+    }
+
+
+    /**
+     * Read the next value whole.
+     *
+     * @return A JSONObject, JSONArray, String, Boolean, Integer, Long, Double
+     *  or JSONObject.NULL.
+     * @throws JSONException If there is a syntax error, or if the next token
+     *  doesn't start a value.
+     */
+    public Object nextValue() throws JSONException {
+        return readValue(next());
+    }
+
+
+    /**
+     * Advance to the next key of the current object. An object can be
+     * decoded member by member: after START_OBJECT, call nextKey, read or
+     * skip the value of the key, and repeat until nextKey returns false.
+     *
+     * @return true at a KEY, whose string is then available from
+     *  {@link #getString}, or false at the END_OBJECT.
+     * @throws JSONException If there is a syntax error, or if the parser is
+     *  not between the members of an object.
+     */
+    public boolean nextKey() throws JSONException {
+        Token t = next();
+        if (t == Token.KEY) {
+            return true;
+        }
+        if (t == Token.END_OBJECT) {
+            return false;
+        }
+        throw syntaxError("Expected a key and instead saw " + t);
+    }
+
+
+    /**
+     * Read the next value as a string, as {@link JSONObject#optString} does.
+     *
+     * @param defaultValue The value for <code>null</code>.
+     * @return The string.
+     * @throws JSONException If there is a syntax error.
+     */
+    public String nextString(String defaultValue) throws JSONException {
+        Object object = nextValue();
+        return JSONObject.NULL.equals(object) ? defaultValue : object.toString();
+    }
+
+
+    /**
+     * Read the next value as an int, as {@link JSONObject#optInt} does.
+     *
+     * @param defaultValue The value if it is not a number.
+     * @return The int.
+     * @throws JSONException If there is a syntax error.
+     */
+    public int nextInt(int defaultValue) throws JSONException {
+        Object object = nextValue();
+        try {
+            return object instanceof Number ?
+                ((Number)object).intValue() :
+                Integer.parseInt((String)object);
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+
+    /**
+     * Read the next value as a long, as {@link JSONObject#optLong} does.
+     *
+     * @param defaultValue The value if it is not a number.
+     * @return The long.
+     * @throws JSONException If there is a syntax error.
+     */
+    public long nextLong(long defaultValue) throws JSONException {
+        Object object = nextValue();
+        try {
+            return object instanceof Number ?
+                ((Number)object).longValue() :
+                Long.parseLong((String)object);
+        } catch (Exception e) {
+            return defaultValue;
+        }
+    }
+
+
+    /**
+     * Read the next value as a boolean, as {@link JSONObject#optBoolean}
+     * does.
+     *
+     * @param defaultValue The value if it is not a boolean or the string
+     *  "true" or "false" (case insensitive).
+     * @return The truth.
+     * @throws JSONException If there is a syntax error.
+     */
+    public boolean nextBoolean(boolean defaultValue) throws JSONException {
+        Object object = nextValue();
+        if (object.equals(Boolean.FALSE) ||
+                (object instanceof String &&
+                ((String)object).equalsIgnoreCase("false"))) {
+            return false;
+        } else if (object.equals(Boolean.TRUE) ||
+                (object instanceof String &&
+                ((String)object).equalsIgnoreCase("true"))) {
+            return true;
+        }
+        return defaultValue;
+    }
+
+
+    /**
+     * Read the next value as a list of strings, each element converted as
+     * {@link JSONArray#optString(int)} does.
+     *
+     * @return The list, or null if the value is not an array.
+     * @throws JSONException If there is a syntax error.
+     */
+    public List<String> nextStringList() throws JSONException {
+        Token t = next();
+        if (t != Token.START_ARRAY) {
+            skipValue();
+            return null;
+        }
+        List<String> list = new ArrayList<String>();
+        for (t = next(); t != Token.END_ARRAY; t = next()) {
+            list.add(readValue(t).toString());
+        }
+        return list;
+    }
+
+
+    /**
+     * Skip the next value, without building it.
+     *
+     * @throws JSONException If there is a syntax error.
+     */
+    public void skipNextValue() throws JSONException {
+        next();
+        skipValue();
+    }
+
+
+    /**
+     * Skip the rest of the current value. After START_OBJECT or START_ARRAY,
+     * this skips to the matching END_OBJECT or END_ARRAY; after any other
+     * token, it does nothing.
+     *
+     * @throws JSONException If there is a syntax error.
+     */
+    public void skipValue() throws JSONException {
+        if (this.token != Token.START_OBJECT && this.token != Token.START_ARRAY) {
+            return;
+        }
+        int target = this.depth - 1;
+        while (this.depth > target) {
+            if (next() == Token.END_DOCUMENT) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     *
+     * @param message The error message.
+     * @return  A JSONException object, suitable for throwing
+     */
+    public JSONException syntaxError(String message) {
+        return new JSONException(message + toString());
+    }
+
+
+    /**
+     * Make a printable string of this JSONParser's position. Like JSONTokener,
+     * it counts the character the parser is looking at as read.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        return position(this.pos + 1);
+    }
+
+
+    // The position after reading up to, but not including, index read.
+    private String position(int read) {
+        int line = 1;
+        int character = 1;
+        char previous = 0;
+        for (int i = this.offset; i < read; i += 1) {
+            char c = i < this.end ? this.buf[i] : 0;
+            if (previous == '\r') {
+                line += 1;
+                character = c == '\n' ? 0 : 1;
+            } else if (c == '\n') {
+                line += 1;
+                character = 0;
+            } else {
+                character += 1;
+            }
+            previous = c;
+        }
+        return " at " + (read - this.offset) + " [character " + character + " line " +
+            line + "]";
+    }
+
+
+    /**
+     * Get the next non-whitespace character without consuming it.
+     *
+     * @return The character, or 0 at the end of the source.
+     */
+    char peekClean() {
+        return clean();
+    }
+
+
+    /**
+     * Get the index in the source of the first character of the value just
+     * returned: its quote, bracket or first character.
+     */
+    int valueStart() {
+        return this.start;
+    }
+
+
+    /**
+     * Skip the object or array whose START_OBJECT or START_ARRAY was just
+     * returned, to just after its closing brace or bracket at index close.
+     * The next call to next returns the token after it.
+     */
+    void skipTo(int close) {
+        this.pos = close + 1;
+        close(this.token == Token.START_OBJECT ? Token.END_OBJECT : Token.END_ARRAY);
+    }
+
+
+    /**
+     * Read the members of an object whose START_OBJECT was just returned.
+     */
+    void readObject(JSONObject object) throws JSONException {
+        for (Token t = next(); t != Token.END_OBJECT; t = next()) {
+            String key = this.string;
+            object.putParsed(key, readValue(next()));
+        }
+    }
+
+
+    /**
+     * Read the elements of an array whose START_ARRAY was just returned.
+     */
+    void readArray(JSONArray array) throws JSONException {
+        for (Token t = next(); t != Token.END_ARRAY; t = next()) {
+            array.put(readValue(t));
+        }
+    }
+
+
+    private Object readValue(Token t) throws JSONException {
+        switch (t) {
+        case START_OBJECT:
+            JSONObject object = new JSONObject();
+            readObject(object);
+            return object;
+        case START_ARRAY:
+            JSONArray array = new JSONArray();
+            readArray(array);
+            return array;
+        case STRING:
+        case NUMBER:
+        case BOOLEAN:
+        case NULL:
+            return this.value;
+        default:
+            throw syntaxError("Missing value");
+        }
+    }
+
+
+    // Peeks at the next character that isn't whitespace. NUL ends the source, as in JSONTokener.
+    private char clean() {
+        while (this.pos < this.end) {
+            char c = this.buf[this.pos];
+            if (c > ' ' || c == 0) {
+                return c;
+            }
+            this.pos += 1;
+        }
+        return 0;
+    }
+
+
+    private Token value(char c) throws JSONException {
+        this.start = this.pos;
+        switch (c) {
+        case '"':
+        case '\'':
+            this.pos += 1;
+            this.string = readString(c, this.values, this.maxValueLength);
+            this.value = this.string;
+            return this.token = Token.STRING;
+        case '{':
+            this.pos += 1;
+            open(true);
+            this.state = OBJECT_FIRST;
+            return this.token = Token.START_OBJECT;
+        case '[':
+            this.pos += 1;
+            open(false);
+            this.state = ARRAY_FIRST;
+            return this.token = Token.START_ARRAY;
+        default:
+            return unquoted();
+        }
+    }
+
+
+    private Token key(char c) throws JSONException {
+        if (c == '"' || c == '\'') {
+            this.pos += 1;
+            if (this.keys == null) {
+                this.keys = new String[KEY_CACHE_SIZE];
+            }
+            this.string = readString(c, this.keys, MAX_KEY_LENGTH);
+        } else {
+            // As in JSONObject(JSONTokener), any value can be a key.
+            this.string = readValue(value(c)).toString();
+        }
+        this.value = null;
+        this.state = OBJECT_COLON;
+        return this.token = Token.KEY;
+    }
+
+
+    private Token close(Token t) {
+        this.depth -= 1;
+        if (this.depth == 0) {
+            this.state = DONE;
+        } else {
+            this.state = this.stack[this.depth - 1] ? OBJECT_NEXT : ARRAY_NEXT;
+        }
+        this.value = null;
+        this.string = null;
+        return this.token = t;
+    }
+
+
+    private void open(boolean object) {
+        if (this.depth == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+        }
+        this.stack[this.depth] = object;
+        this.depth += 1;
+    }
+
+
+    private String readString(char quote, String[] cache, int maxLength)
+            throws JSONException {
+        int start = this.pos;
+        while (this.pos < this.end) {
+            char c = this.buf[this.pos];
+            if (c == quote) {
+                this.pos += 1;
+                int length = this.pos - 1 - start;
+                if (cache != null && length <= maxLength) {
+                    return share(cache, start, length);
+                }
+                return new String(this.buf, start, length);
+            }
+            if (c == '\\') {
+                return readEscapedString(quote, start);
+            }
+            if (c == '\n' || c == '\r' || c == 0) {
+                break;
+            }
+            this.pos += 1;
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+
+    private String share(String[] cache, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i += 1) {
+            h = 31 * h + this.buf[i];
+        }
+        int slot = (h ^ h >>> 16) & (cache.length - 2);
+        String s = cache[slot];
+        if (s != null && equals(s, start, length)) {
+            return s;
+        }
+        String t = cache[slot + 1];
+        if (t != null && equals(t, start, length)) {
+            // Keep the most recently used string first.
+            cache[slot + 1] = s;
+            cache[slot] = t;
+            return t;
+        }
+        t = new String(this.buf, start, length);
+        cache[slot + 1] = s;
+        cache[slot] = t;
+        return t;
+    }
+
+
+    private boolean equals(String s, int start, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i += 1) {
+            if (s.charAt(i) != this.buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private String readEscapedString(char quote, int start) throws JSONException {
+        StringBuilder sb = new StringBuilder(this.pos - start + 16);
+        sb.append(this.buf, start, this.pos - start);
+        while (this.pos < this.end) {
+            char c = this.buf[this.pos++];
+            if (c == quote) {
+                return sb.toString();
+            }
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw syntaxError("Unterminated string");
+            case '\\':
+                if (this.pos >= this.end) {
+                    throw syntaxError("Unterminated string");
+                }
+                c = this.buf[this.pos++];
+                switch (c) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 'u':
+                    sb.append(readHex());
+                    break;
+                case '"':
+                case '\'':
+                case '\\':
+                case '/':
+                    sb.append(c);
+                    break;
+                default:
+                    sb.append('\\').append(c); //illegal escape
+                }
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        throw syntaxError("Unterminated string");
+    }
+
+
+    private char readHex() throws JSONException {
+        if (this.pos > this.end - 4) {
+            throw syntaxError("Substring bounds error");
+        }
+        int code = 0;
+        for (int i = 0; i < 4; i += 1) {
+            int digit = JSONTokener.dehexchar(this.buf[this.pos++]);
+            if (digit < 0) {
+                throw syntaxError("Illegal escape.");
+            }
+            code = (code << 4) | digit;
+        }
+        return (char) code;
+    }
+
+
+    /*
+     * Handle unquoted text. This could be the values true, false, or null, or
+     * it can be a number, or any other text without delimiters.
+     */
+    private Token unquoted() throws JSONException {
+        int start = this.pos;
+        while (this.pos < this.end) {
+            char c = this.buf[this.pos];
+            if (c < ' ' || (c < 128 && DELIMITERS[c])) {
+                break;
+            }
+            this.pos += 1;
+        }
+        int last = this.pos;
+        while (start < last && this.buf[start] <= ' ') {
+            start += 1;
+        }
+        while (last > start && this.buf[last - 1] <= ' ') {
+            last -= 1;
+        }
+        if (start == last) {
+            // JSONTokener reports this after stepping back over the delimiter.
+            throw new JSONException("Missing value" + position(this.pos));
+        }
+        this.string = null;
+        if (isInteger(start, last)) {
+            this.value = parseInteger(start, last);
+            return this.token = Token.NUMBER;
+        }
+        if (matches(start, last, "true")) {
+            this.value = Boolean.TRUE;
+            return this.token = Token.BOOLEAN;
+        }
+        if (matches(start, last, "false")) {
+            this.value = Boolean.FALSE;
+            return this.token = Token.BOOLEAN;
+        }
+        if (matches(start, last, "null")) {
+            this.value = JSONObject.NULL;
+            return this.token = Token.NULL;
+        }
+        this.value = JSONObject.stringToValue(new String(this.buf, start, last - start));
+        if (this.value instanceof Number) {
+            return this.token = Token.NUMBER;
+        }
+        this.string = (String) this.value;
+        return this.token = Token.STRING;
+    }
+
+
+    // An optional '-' and up to 18 digits, which always fit in a long.
+    private boolean isInteger(int start, int last) {
+        int i = this.buf[start] == '-' ? start + 1 : start;
+        if (i == last || last - i > 18) {
+            return false;
+        }
+        for (; i < last; i += 1) {
+            char c = this.buf[i];
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    // Integer if the value fits, Long otherwise, as in JSONObject.stringToValue.
+    private Object parseInteger(int start, int last) {
+        boolean negative = this.buf[start] == '-';
+        long result = 0;
+        for (int i = negative ? start + 1 : start; i < last; i += 1) {
+            result = result * 10 + (this.buf[i] - '0');
+        }
+        if (negative) {
+            result = -result;
+        }
+        if (result == (int) result) {
+            return Integer.valueOf((int) result);
+        }
+        return Long.valueOf(result);
+    }
+
+
+    // Case-insensitive, as in JSONObject.stringToValue.
+    private boolean matches(int start, int last, String literal) {
+        if (last - start != literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i += 1) {
+            if (Character.toLowerCase(this.buf[start + i]) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -35,8 +35,9 @@ SOFTWARE.
 
 /**
  * A JSONTokener takes a source string and extracts characters and tokens from
- * it. It is used by the JSONObject and JSONArray constructors to parse
- * JSON source strings.
+ * it. The JSONObject and JSONArray text constructors now use the faster
+ * {@link JSONParser}, which accepts the same texts; JSONTokener is kept for
+ * code that reads characters or tokens itself.
  * @author JSON.org
  * @version 2010-12-24
  */
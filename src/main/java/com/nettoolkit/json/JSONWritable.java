@@ -0,0 +1,18 @@
+package com.nettoolkit.json;
+
+/**
+ * The <code>JSONWritable</code> interface allows a class to write itself
+ * to a {@link JSONWriter} as a single JSON value. JSONObject, JSONArray and
+ * JSONWriter use <code>writeTo</code> when they serialize such a value, so it
+ * can be put in either without first being converted to a JSONObject.
+ */
+public interface JSONWritable {
+    /**
+     * Write this object as exactly one JSON value: an object, an array or a
+     * plain value.
+     *
+     * @param writer The writer.
+     * @throws JSONException If a value is invalid or the writer fails.
+     */
+    public void writeTo(JSONWriter writer) throws JSONException;
+}
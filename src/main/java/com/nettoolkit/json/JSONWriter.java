@@ -0,0 +1,353 @@
+package com.nettoolkit.json;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A JSONWriter writes JSON text straight to a writer or stream, one token at
+ * a time, so large bodies can be produced without first building a tree of
+ * JSONObjects. The output is compact and has the same form as
+ * {@link JSONObject#write}.
+ * <p>
+ * Calls are made in the order of the text: <code>object</code> and
+ * <code>endObject</code> around pairs of <code>key</code> and
+ * <code>value</code> calls, <code>array</code> and <code>endArray</code>
+ * around <code>value</code> calls. A call out of place throws a
+ * JSONException. Duplicate keys are not detected.
+ * <p>
+ * Sample:
+ * <pre>
+ * new JSONWriter(writer)
+ *     .object()
+ *     .key("value").value(dValue)
+ *     .putOpt("signal_name", strSignalName)
+ *     .endObject();
+ * </pre>
+ * The writer is flushed once the outermost value is complete.
+ */
+public class JSONWriter {
+
+    // What the writer expects next.
+    private static final char INIT = 'i';
+    private static final char OBJECT = 'o';
+    private static final char KEY = 'k';
+    private static final char ARRAY = 'a';
+    private static final char DONE = 'd';
+
+    private final Writer writer;
+    private char mode = INIT;
+    // Whether the current object or array already has a value.
+    private boolean comma;
+    // The modes of the enclosing values of each open object or array.
+    private char[] stack = new char[16];
+    private int depth;
+    // Where doubles are formatted before they are written.
+    private char[] digits;
+
+
+    /**
+     * Make a JSONWriter that writes to a writer.
+     * @param writer The writer.
+     */
+    public JSONWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+
+    /**
+     * Make a JSONWriter that writes UTF-8 to a stream. The stream is not
+     * closed.
+     * @param out The stream.
+     */
+    public JSONWriter(OutputStream out) {
+        this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+
+    /**
+     * Begin an array. Each following <code>value</code>, <code>object</code>
+     * or <code>array</code> call adds an element, until {@link #endArray}.
+     * @return this
+     * @throws JSONException If an array is not allowed here.
+     */
+    public JSONWriter array() throws JSONException {
+        return this.begin(ARRAY, '[');
+    }
+
+
+    /**
+     * End the current array.
+     * @return this
+     * @throws JSONException If no array is open.
+     */
+    public JSONWriter endArray() throws JSONException {
+        return this.end(ARRAY, ']');
+    }
+
+
+    /**
+     * Begin an object. Each following <code>key</code> call starts a pair,
+     * until {@link #endObject}.
+     * @return this
+     * @throws JSONException If an object is not allowed here.
+     */
+    public JSONWriter object() throws JSONException {
+        return this.begin(OBJECT, '{');
+    }
+
+
+    /**
+     * End the current object.
+     * @return this
+     * @throws JSONException If no object is open, or a key has no value.
+     */
+    public JSONWriter endObject() throws JSONException {
+        return this.end(OBJECT, '}');
+    }
+
+
+    /**
+     * Write a key. The next call must write its value.
+     * @param string The key.
+     * @return this
+     * @throws JSONException If the key is null or not allowed here.
+     */
+    public JSONWriter key(String string) throws JSONException {
+        if (string == null) {
+            throw new JSONException("Null key.");
+        }
+        if (this.mode != OBJECT) {
+            throw new JSONException("Misplaced key.");
+        }
+        try {
+            if (this.comma) {
+                this.writer.write(',');
+            }
+            JSONObject.quote(string, this.writer);
+            this.writer.write(':');
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.mode = KEY;
+        return this;
+    }
+
+
+    /**
+     * Write a key and its value, but only if the value is not null.
+     * @param key The key.
+     * @param value The value, or null to write nothing.
+     * @return this
+     * @throws JSONException If the value is invalid or not allowed here.
+     */
+    public JSONWriter putOpt(String key, Object value) throws JSONException {
+        if (value != null) {
+            this.key(key).value(value);
+        }
+        return this;
+    }
+
+
+    /**
+     * Write <code>true</code> or <code>false</code>.
+     * @param b A boolean.
+     * @return this
+     * @throws JSONException If a value is not allowed here.
+     */
+    public JSONWriter value(boolean b) throws JSONException {
+        return this.append(b ? "true" : "false");
+    }
+
+
+    /**
+     * Write a number.
+     * @param d A double.
+     * @return this
+     * @throws JSONException If the number is not finite, or a value is not
+     *  allowed here.
+     */
+    public JSONWriter value(double d) throws JSONException {
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        this.beforeValue();
+        if (this.digits == null) {
+            this.digits = new char[DoubleToDecimal.MAX_CHARS];
+        }
+        try {
+            this.writer.write(this.digits, 0, DoubleToDecimal.write(d, this.digits, 0));
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.afterValue();
+    }
+
+
+    /**
+     * Write a number.
+     * @param l A long.
+     * @return this
+     * @throws JSONException If a value is not allowed here.
+     */
+    public JSONWriter value(long l) throws JSONException {
+        return this.append(Long.toString(l));
+    }
+
+
+    /**
+     * Write a value, with the same text as
+     * {@link JSONObject#valueToString(Object)}. Nested JSONObjects,
+     * JSONArrays, maps, collections and arrays are written through this
+     * writer, a {@link JSONWritable} writes itself to it, and null is
+     * written as <code>null</code>.
+     * @param object The value.
+     * @return this
+     * @throws JSONException If the value is invalid or not allowed here.
+     */
+    public JSONWriter value(Object object) throws JSONException {
+        if (object == null || object.equals(null) || object instanceof JSONString) {
+            return this.append(JSONObject.valueToString(object));
+        }
+        if (object instanceof JSONWritable) {
+            ((JSONWritable)object).writeTo(this);
+            return this;
+        }
+        if (object instanceof Double) {
+            return this.value(((Double)object).doubleValue());
+        }
+        if (object instanceof String) {
+            this.beforeValue();
+            try {
+                JSONObject.quote((String)object, this.writer);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            return this.afterValue();
+        }
+        if (object instanceof JSONObject) {
+            return this.write((JSONObject)object);
+        }
+        if (object instanceof JSONArray) {
+            return this.write((JSONArray)object);
+        }
+        if (object instanceof Map) {
+            return this.write(new JSONObject((Map)object));
+        }
+        if (object instanceof Collection) {
+            return this.write(new JSONArray((Collection)object));
+        }
+        if (object.getClass().isArray()) {
+            return this.write(new JSONArray(object));
+        }
+        return this.append(JSONObject.valueToString(object));
+    }
+
+
+    private JSONWriter write(JSONObject jo) throws JSONException {
+        this.object();
+        for (String key : jo.keySet()) {
+            this.key(key).value(jo.opt(key));
+        }
+        return this.endObject();
+    }
+
+
+    private JSONWriter write(JSONArray ja) throws JSONException {
+        this.array();
+        int len = ja.length();
+        for (int i = 0; i < len; i += 1) {
+            this.value(ja.opt(i));
+        }
+        return this.endArray();
+    }
+
+
+    private JSONWriter append(String string) throws JSONException {
+        this.beforeValue();
+        try {
+            this.writer.write(string);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this.afterValue();
+    }
+
+
+    private JSONWriter begin(char m, char c) throws JSONException {
+        this.beforeValue();
+        try {
+            this.writer.write(c);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        if (this.depth == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.depth * 2);
+        }
+        this.stack[this.depth] = this.mode;
+        this.depth += 1;
+        this.mode = m;
+        this.comma = false;
+        return this;
+    }
+
+
+    private JSONWriter end(char m, char c) throws JSONException {
+        if (this.mode != m) {
+            throw new JSONException(m == OBJECT
+                ? "Misplaced endObject."
+                : "Misplaced endArray.");
+        }
+        try {
+            this.writer.write(c);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        this.depth -= 1;
+        this.mode = this.stack[this.depth];
+        return this.afterValue();
+    }
+
+
+    private void beforeValue() throws JSONException {
+        switch (this.mode) {
+        case OBJECT:
+            throw new JSONException("Misplaced value: a key is expected.");
+        case DONE:
+            throw new JSONException("Misplaced value: the text is complete.");
+        case ARRAY:
+            if (this.comma) {
+                try {
+                    this.writer.write(',');
+                } catch (IOException e) {
+                    throw new JSONException(e);
+                }
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+
+    private JSONWriter afterValue() throws JSONException {
+        this.comma = true;
+        if (this.mode == KEY) {
+            this.mode = OBJECT;
+        } else if (this.mode == INIT) {
+            this.mode = DONE;
+            try {
+                this.writer.flush();
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+        }
+        return this;
+    }
+}
@@ -14,6 +14,7 @@ import com.nettoolkit.exception.BadArgumentException;
 import com.nettoolkit.exception.ParsingException;
 import com.nettoolkit.internal.NetToolKitClient;
 import com.nettoolkit.internal.Parameters;
+import com.nettoolkit.internal.http.HttpTransport;
 import com.nettoolkit.json.JSONObject;
 import com.nettoolkit.json.JSONArray;
 import com.nettoolkit.json.JSONException;
@@ -28,6 +29,9 @@ public class ShibbolethClient extends NetToolKitClient {
     public ShibbolethClient(String strApiKey, boolean bUseHttps) {
         super(strApiKey, bUseHttps);
     }
+    public ShibbolethClient(String strApiKey, boolean bUseHttps, HttpTransport transport) {
+        super(strApiKey, bUseHttps, transport);
+    }
 
     // API
     public Captcha createCaptcha(String strOptions, String strIpAddress)
@@ -0,0 +1,92 @@
+package com.nettoolkit.dashboards;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import com.nettoolkit.api.StatusCode;
+import com.nettoolkit.internal.RetryPolicy;
+import com.nettoolkit.util.StubApiServer;
+
+/**
+ * RetriedBodyCheck checks that a batch request sends the same body on every attempt, however the
+ * request and its inputs are changed after <code>sendAsync()</code>. The stub server answers the
+ * first attempt with TOO_MANY_REQUESTS, and the batch is changed while that attempt is in flight,
+ * so the retry serializes the body again after the change.
+ * <p>Run it with:
+ * <p><blockquote><pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.nettoolkit.dashboards.RetriedBodyCheck
+ * </pre></blockquote>
+ * It exits with status 1 if a check fails.
+ */
+public class RetriedBodyCheck {
+    private static final String METRICS_ENDPOINT = "POST /v2/dashboards/create-metrics";
+    private static final String LOGS_ENDPOINT = "POST /v2/dashboards/create-logs";
+
+    public static void main(String[] args) throws Exception {
+        boolean bPassed;
+        try (StubApiServer server = StubApiServer.start(StubApiServer.Profile.newBuilder()
+                .latency(Duration.ofMillis(100), Duration.ZERO)
+                .build());
+             DashboardsClient client = new StubDashboardsClient("key", server)) {
+            client.setRetryPolicy(RetryPolicy.newBuilder()
+                .maxAttempts(2)
+                .backoff(Duration.ofMillis(10), Duration.ofMillis(10))
+                .build());
+            server.setRecordRequestBodies(true);
+            bPassed = checkMetrics(server, client) & checkLogs(server, client);
+        }
+        System.out.println(bPassed ? "Passed" : "FAILED");
+        if (!bPassed) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean checkMetrics(StubApiServer server, DashboardsClient client)
+            throws Exception {
+        AttributeMap attributes = new AttributeMap().set("host", "a");
+        CreateMetricsRequest request = client.newCreateMetricsRequest()
+            .signalName("retried-body-check")
+            .addGauge(GaugeInput.newBuilder().value(1.5).attributes(attributes).build());
+        server.failNext(1, StatusCode.TOO_MANY_REQUESTS);
+        CompletableFuture<Void> future = request.sendAsync();
+        request.addGauge(2.5);
+        attributes.set("host", "b");
+        future.join();
+        return check("metrics", server.getRequestBodies(METRICS_ENDPOINT), "\"a\"");
+    }
+
+    private static boolean checkLogs(StubApiServer server, DashboardsClient client)
+            throws Exception {
+        AttributeMap attributes = new AttributeMap().set("host", "a");
+        CreateLogsRequest request = client.newCreateLogsRequest()
+            .signalName("retried-body-check")
+            .addLog(LogRecordInput.newBuilder().body("first").attributes(attributes).build());
+        server.failNext(1, StatusCode.TOO_MANY_REQUESTS);
+        CompletableFuture<Void> future = request.sendAsync();
+        request.addLog("second");
+        attributes.set("host", "b");
+        future.join();
+        return check("logs", server.getRequestBodies(LOGS_ENDPOINT), "\"a\"");
+    }
+
+    // Checks that two attempts were made with the same body, as it was when sent.
+    private static boolean check(String strName, List<String> listBodies, String strExpected) {
+        if (listBodies.size() != 2) {
+            System.out.println(strName + ": expected 2 attempts, got " + listBodies.size());
+            return false;
+        }
+        if (!listBodies.get(0).equals(listBodies.get(1))) {
+            System.out.println(strName + ": the retry sent a different body:\n  "
+                + listBodies.get(0) + "\n  " + listBodies.get(1));
+            return false;
+        }
+        if (!listBodies.get(0).contains(strExpected)) {
+            System.out.println(strName + ": the body doesn't have the attributes as sent: "
+                + listBodies.get(0));
+            return false;
+        }
+        System.out.println(strName + ": both attempts sent " + listBodies.get(0));
+        return true;
+    }
+}
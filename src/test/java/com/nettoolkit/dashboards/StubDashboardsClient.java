@@ -0,0 +1,17 @@
+package com.nettoolkit.dashboards;
+
+import com.nettoolkit.util.StubApiServer;
+
+public class StubDashboardsClient extends DashboardsClient {
+    protected StubApiServer mServer;
+
+    public StubDashboardsClient(String strApiKey, StubApiServer server) {
+        super(strApiKey, false);
+        mServer = server;
+    }
+
+    @Override
+    public String getHostname() {
+        return mServer.getHostname();
+    }
+}
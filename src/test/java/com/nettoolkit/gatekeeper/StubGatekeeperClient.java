@@ -0,0 +1,17 @@
+package com.nettoolkit.gatekeeper;
+
+import com.nettoolkit.util.StubApiServer;
+
+public class StubGatekeeperClient extends GatekeeperClient {
+    protected StubApiServer mServer;
+
+    public StubGatekeeperClient(String strApiKey, StubApiServer server) {
+        super(strApiKey, false);
+        mServer = server;
+    }
+
+    @Override
+    public String getHostname() {
+        return mServer.getHostname();
+    }
+}
@@ -0,0 +1,17 @@
+package com.nettoolkit.geo;
+
+import com.nettoolkit.util.StubApiServer;
+
+public class StubGeoClient extends GeoClient {
+    protected StubApiServer mServer;
+
+    public StubGeoClient(String strApiKey, StubApiServer server) {
+        super(strApiKey, false);
+        mServer = server;
+    }
+
+    @Override
+    public String getHostname() {
+        return mServer.getHostname();
+    }
+}
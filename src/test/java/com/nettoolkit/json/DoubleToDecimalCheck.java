@@ -0,0 +1,128 @@
+package com.nettoolkit.json;
+
+import java.util.SplittableRandom;
+
+/**
+ * DoubleToDecimalCheck checks {@link DoubleToDecimal} against the JDK: the
+ * text of every double it tries must parse back to the same double, bit for
+ * bit, and must be no longer than <code>Double.toString</code> gives.
+ * <p>
+ * It tries the edge cases (zeros, subnormals, <code>Double.MIN_VALUE</code>,
+ * <code>Double.MIN_NORMAL</code>, <code>Double.MAX_VALUE</code>, every binary
+ * exponent at its smallest and largest significands, and the powers of ten
+ * with their neighbours), then random bit patterns. Run it after changing
+ * DoubleToDecimal:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes com.nettoolkit.json.DoubleToDecimalCheck [count] [seed]
+ * </pre>
+ * It exits with status 1 after printing the first few failures.
+ */
+public class DoubleToDecimalCheck {
+
+    private static final int MAX_FAILURES = 20;
+
+    private long checked;
+    private int failures;
+
+
+    public static void main(String[] args) {
+        long count = args.length > 0 ? Long.parseLong(args[0]) : 1000000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+
+        DoubleToDecimalCheck check = new DoubleToDecimalCheck();
+        check.edgeCases();
+        check.random(count, seed);
+        System.out.println("Checked " + check.checked + " doubles (seed " + seed
+            + "), " + check.failures + " failures");
+        if (check.failures > 0) {
+            System.exit(1);
+        }
+    }
+
+
+    private void edgeCases() {
+        check(0.0);
+        check(Double.MIN_VALUE);
+        check(Double.MIN_NORMAL);
+        check(Math.nextDown(Double.MIN_NORMAL));
+        check(Double.MAX_VALUE);
+        check(Math.nextDown(Double.MAX_VALUE));
+
+        // Every subnormal with a significand of up to 16 bits.
+        for (long bits = 1; bits < 1L << 16; bits += 1) {
+            check(Double.longBitsToDouble(bits));
+        }
+
+        // Every binary exponent, at the smallest and largest significands
+        // and around the power of two.
+        for (long exponent = 0; exponent < 0x7FF; exponent += 1) {
+            long base = exponent << 52;
+            for (long t = 0; t < 4; t += 1) {
+                check(Double.longBitsToDouble(base | t));
+                check(Double.longBitsToDouble(base | ((1L << 52) - 1 - t)));
+            }
+        }
+
+        // Every power of ten in range, with its neighbours.
+        for (int e = -324; e <= 308; e += 1) {
+            double d = Double.parseDouble("1e" + e);
+            check(d);
+            check(Math.nextUp(d));
+            check(Math.nextDown(d));
+        }
+
+        // Short decimals, as in gauges and timings.
+        for (int i = 1; i <= 200000; i += 1) {
+            check(i / 1000.0);
+            check(i / 10.0);
+            check(i * 0.1);
+        }
+    }
+
+
+    private void random(long count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (long i = 0; i < count; i += 1) {
+            double d = Double.longBitsToDouble(random.nextLong());
+            if (!Double.isNaN(d) && !Double.isInfinite(d)) {
+                check(d);
+            }
+        }
+    }
+
+
+    // Checks d and -d.
+    private void check(double d) {
+        checkOne(d);
+        checkOne(-d);
+    }
+
+
+    private void checkOne(double d) {
+        this.checked += 1;
+        String text = DoubleToDecimal.toString(d);
+        double parsed;
+        try {
+            parsed = Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            fail(d, text, "does not parse");
+            return;
+        }
+        if (Double.doubleToRawLongBits(parsed) != Double.doubleToRawLongBits(d)) {
+            fail(d, text, "parses back as " + Double.toString(parsed));
+        } else if (text.length() > Double.toString(d).length()) {
+            fail(d, text, "is longer than " + Double.toString(d));
+        }
+    }
+
+
+    private void fail(double d, String text, String reason) {
+        this.failures += 1;
+        if (this.failures <= MAX_FAILURES) {
+            System.out.println("FAIL " + Double.toString(d) + " (0x"
+                + Long.toHexString(Double.doubleToRawLongBits(d)) + "): " + text
+                + " " + reason);
+        }
+    }
+}
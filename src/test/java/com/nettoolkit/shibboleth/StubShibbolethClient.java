@@ -0,0 +1,17 @@
+package com.nettoolkit.shibboleth;
+
+import com.nettoolkit.util.StubApiServer;
+
+public class StubShibbolethClient extends ShibbolethClient {
+    protected StubApiServer mServer;
+
+    public StubShibbolethClient(String strApiKey, StubApiServer server) {
+        super(strApiKey, false);
+        mServer = server;
+    }
+
+    @Override
+    public String getHostname() {
+        return mServer.getHostname();
+    }
+}
@@ -0,0 +1,724 @@
+package com.nettoolkit.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.nettoolkit.api.StatusCode;
+import com.nettoolkit.json.JSONArray;
+import com.nettoolkit.json.JSONException;
+import com.nettoolkit.json.JSONObject;
+
+/**
+ * StubApiServer is an in-process stand-in for the NetToolKit web API, for running the clients
+ * end to end without a network. It serves the v1 and v2 routes the clients use, with the same
+ * <code>code</code>/<code>results</code> and <code>data</code>/<code>errors</code> envelopes, and
+ * plausible generated results.
+ * <p>A {@link Profile} controls latency, error injection and throughput, and can be changed while
+ * the server runs. Point clients at the server with the Stub*Client classes, which override
+ * <code>getHostname()</code> and <code>getUseHttps()</code> like the Dev*Client classes do.
+ * <p>Sample:
+ * <p><blockquote><pre>
+ * try (StubApiServer server = StubApiServer.start(StubApiServer.Profile.TYPICAL);
+ *      GatekeeperClient client = new StubGatekeeperClient("key", server)) {
+ *     Visit visit = client.newAuthorizeVisitRequest().ip("203.0.113.7").url("/").send();
+ * }
+ * </pre></blockquote>
+ */
+public class StubApiServer implements AutoCloseable {
+    private static final int GZIP_THRESHOLD = 1024;
+
+    private final HttpServer mServer;
+    private final ExecutorService mExecutor;
+    private final List<Route> mlistRoutes = new ArrayList<>();
+    private final Map<String, LongAdder> mmapRequestCounts = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> mmapVisitorGroups = new ConcurrentHashMap<>();
+    private final LongAdder mlRequests = new LongAdder();
+    private final LongAdder mlInjectedFailures = new LongAdder();
+    private final AtomicLong mlWindow = new AtomicLong();
+    private final AtomicInteger miFailNext = new AtomicInteger();
+    private volatile StatusCode mFailNextStatusCode;
+    private final Map<String, List<String>> mmapRequestBodies = new ConcurrentHashMap<>();
+    private volatile boolean mbRecordRequestBodies;
+    private volatile Profile mProfile;
+
+    private StubApiServer(Profile profile) throws IOException {
+        mProfile = profile;
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-api-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/", this::handle);
+        addRoutes();
+    }
+
+    /**
+     * Starts a server on a free loopback port that responds without delay or errors.
+     *
+     * @return the started server
+     * @throws IOException if the server could not be started
+     */
+    public static StubApiServer start() throws IOException {
+        return start(Profile.FAST);
+    }
+
+    /**
+     * Starts a server on a free loopback port.
+     *
+     * @param profile the latency, error and throughput profile
+     * @return the started server
+     * @throws IOException if the server could not be started
+     */
+    public static StubApiServer start(Profile profile) throws IOException {
+        StubApiServer server = new StubApiServer(profile);
+        server.mServer.start();
+        return server;
+    }
+
+    @Override
+    public void close() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    public int getPort() { return mServer.getAddress().getPort(); }
+
+    /**
+     * Gets the host name and port to return from a client's <code>getHostname()</code>.
+     *
+     * @return the host name and port
+     */
+    public String getHostname() { return "localhost:" + getPort(); }
+
+    public Profile getProfile() { return mProfile; }
+
+    public void setProfile(Profile profile) { mProfile = profile; }
+
+    /**
+     * Gets the number of requests received, including failed and rejected ones.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() { return mlRequests.sum(); }
+
+    /**
+     * Gets the number of requests received for an endpoint, e.g.
+     * "POST /v1/gatekeeper/visits/authorization".
+     *
+     * @param strEndpoint the method and path template
+     * @return the request count
+     */
+    public long getRequestCount(String strEndpoint) {
+        LongAdder lCount = mmapRequestCounts.get(strEndpoint);
+        return lCount == null ? 0 : lCount.sum();
+    }
+
+    /**
+     * Gets the number of requests answered with an injected error or dropped connection.
+     *
+     * @return the injected failure count
+     */
+    public long getInjectedFailureCount() { return mlInjectedFailures.sum(); }
+
+    /**
+     * Answers the next requests with an error, whatever the profile, e.g. to make a client retry.
+     *
+     * @param iCount the number of requests to fail
+     * @param statusCode the error status code
+     */
+    public void failNext(int iCount, StatusCode statusCode) {
+        mFailNextStatusCode = statusCode;
+        miFailNext.set(iCount);
+    }
+
+    /**
+     * Sets whether the body of each request is kept, for {@link #getRequestBodies}. Off by
+     * default, so load runs don't keep every body.
+     *
+     * @param bRecordRequestBodies
+     */
+    public void setRecordRequestBodies(boolean bRecordRequestBodies) {
+        mbRecordRequestBodies = bRecordRequestBodies;
+    }
+
+    /**
+     * Gets the bodies of the requests received for an endpoint while recording, in order,
+     * including requests answered with an error.
+     *
+     * @param strEndpoint the method and path template, e.g. "POST /v2/dashboards/create-logs"
+     * @return the request bodies
+     */
+    public List<String> getRequestBodies(String strEndpoint) {
+        List<String> listBodies = mmapRequestBodies.get(strEndpoint);
+        return listBodies == null ? new ArrayList<>() : new ArrayList<>(listBodies);
+    }
+
+    /**
+     * Profile shapes how the server responds. Requests first wait for the latency, then may have
+     * their connection dropped or get an injected error, and are otherwise answered normally.
+     * Requests above the throughput limit get TOO_MANY_REQUESTS right away.
+     */
+    public static class Profile {
+        /**
+         * No latency, no errors, no throughput limit.
+         */
+        public static final Profile FAST = newBuilder().build();
+        /**
+         * 20ms latency with 10ms of jitter, like a nearby API region.
+         */
+        public static final Profile TYPICAL = newBuilder()
+            .latency(Duration.ofMillis(20), Duration.ofMillis(10))
+            .build();
+        /**
+         * Slow responses, 10% SERVICE_UNAVAILABLE errors and 2% dropped connections.
+         */
+        public static final Profile DEGRADED = newBuilder()
+            .latency(Duration.ofMillis(300), Duration.ofMillis(200))
+            .errorRate(0.1, StatusCode.SERVICE_UNAVAILABLE)
+            .connectionFailureRate(0.02)
+            .build();
+        /**
+         * At most 100 requests per second, the rest get TOO_MANY_REQUESTS.
+         */
+        public static final Profile THROTTLED = newBuilder()
+            .maxRequestsPerSecond(100)
+            .build();
+
+        private final long mlLatencyNanos;
+        private final long mlJitterNanos;
+        private final double mdErrorRate;
+        private final StatusCode mErrorStatusCode;
+        private final double mdConnectionFailureRate;
+        private final int miMaxRequestsPerSecond;
+
+        private Profile(Builder builder) {
+            mlLatencyNanos = builder.mLatency.toNanos();
+            mlJitterNanos = builder.mJitter.toNanos();
+            mdErrorRate = builder.mdErrorRate;
+            mErrorStatusCode = builder.mErrorStatusCode;
+            mdConnectionFailureRate = builder.mdConnectionFailureRate;
+            miMaxRequestsPerSecond = builder.miMaxRequestsPerSecond;
+        }
+
+        public static Builder newBuilder() { return new Builder(); }
+
+        public static class Builder {
+            private Duration mLatency = Duration.ZERO;
+            private Duration mJitter = Duration.ZERO;
+            private double mdErrorRate = 0;
+            private StatusCode mErrorStatusCode = StatusCode.SERVICE_UNAVAILABLE;
+            private double mdConnectionFailureRate = 0;
+            private int miMaxRequestsPerSecond = 0;
+
+            /**
+             * Sets the response latency: <code>latency</code> plus a random delay of up to
+             * <code>jitter</code>.
+             *
+             * @param latency
+             * @param jitter
+             * @return this
+             */
+            public Builder latency(Duration latency, Duration jitter) {
+                mLatency = latency;
+                mJitter = jitter;
+                return this;
+            }
+
+            /**
+             * Sets the share of requests answered with an error with the given status code.
+             *
+             * @param dErrorRate
+             * @param statusCode
+             * @return this
+             */
+            public Builder errorRate(double dErrorRate, StatusCode statusCode) {
+                mdErrorRate = dErrorRate;
+                mErrorStatusCode = statusCode;
+                return this;
+            }
+
+            /**
+             * Sets the share of requests whose connection is closed without a response.
+             *
+             * @param dConnectionFailureRate
+             * @return this
+             */
+            public Builder connectionFailureRate(double dConnectionFailureRate) {
+                mdConnectionFailureRate = dConnectionFailureRate;
+                return this;
+            }
+
+            /**
+             * Sets the number of requests served per second; 0 means unlimited.
+             *
+             * @param iMaxRequestsPerSecond
+             * @return this
+             */
+            public Builder maxRequestsPerSecond(int iMaxRequestsPerSecond) {
+                miMaxRequestsPerSecond = iMaxRequestsPerSecond;
+                return this;
+            }
+
+            public Profile build() {
+                return new Profile(this);
+            }
+        }
+    }
+
+    // ============
+    // = Handling =
+    // ============
+    private void handle(HttpExchange exchange) throws IOException {
+        // Whether errors get the v2 envelope; the route's flag once one matches.
+        boolean bV2 = exchange.getRequestURI().getPath().startsWith("/v2/");
+        try {
+            mlRequests.increment();
+            Profile profile = mProfile;
+            String strMethod = exchange.getRequestMethod();
+            String strPath = exchange.getRequestURI().getPath();
+            Route route = null;
+            Matcher matcher = null;
+            for (Route candidate : mlistRoutes) {
+                matcher = candidate.mPattern.matcher(strPath);
+                if (candidate.mstrMethod.equals(strMethod) && matcher.matches()) {
+                    route = candidate;
+                    break;
+                }
+            }
+            if (route == null) {
+                respondError(exchange, bV2, StatusCode.UNKNOWN_ROUTE,
+                    "No route for " + strMethod + " " + strPath);
+                return;
+            }
+            bV2 = route.mbV2;
+            mmapRequestCounts.computeIfAbsent(route.getEndpoint(), k -> new LongAdder())
+                .increment();
+            byte[] body = Request.readBody(exchange);
+            if (mbRecordRequestBodies) {
+                mmapRequestBodies
+                    .computeIfAbsent(route.getEndpoint(), k -> new CopyOnWriteArrayList<>())
+                    .add(new String(body, StandardCharsets.UTF_8));
+            }
+            if (miFailNext.getAndUpdate(iCount -> Math.max(iCount - 1, 0)) > 0) {
+                mlInjectedFailures.increment();
+                respondError(exchange, route.mbV2, mFailNextStatusCode,
+                    mFailNextStatusCode.getDescription());
+                return;
+            }
+            if (isOverThroughput(profile)) {
+                mlInjectedFailures.increment();
+                respondError(exchange, route.mbV2, StatusCode.TOO_MANY_REQUESTS,
+                    "The client is making too many requests");
+                return;
+            }
+            sleep(profile);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < profile.mdConnectionFailureRate) {
+                mlInjectedFailures.increment();
+                // Closing without sending headers drops the connection.
+                exchange.close();
+                return;
+            }
+            if (random.nextDouble() < profile.mdErrorRate) {
+                mlInjectedFailures.increment();
+                respondError(exchange, route.mbV2, profile.mErrorStatusCode,
+                    profile.mErrorStatusCode.getDescription());
+                return;
+            }
+            Request request = new Request(exchange, matcher, body);
+            Object result = route.mHandler.handle(request);
+            JSONObject jsonBody;
+            if (route.mbV2) {
+                jsonBody = new JSONObject().put("data", result);
+            } else {
+                jsonBody = new JSONObject()
+                    .put("code", StatusCode.OK.toInt())
+                    .put("message", StatusCode.OK.getDescription())
+                    .put("results", result);
+            }
+            respond(exchange, 200, jsonBody);
+        } catch (JSONException | RuntimeException e) {
+            respondError(exchange, bV2, StatusCode.INTERNAL_ERROR, String.valueOf(e));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Counts requests in one-second windows; the window start is kept in the high bits.
+    private boolean isOverThroughput(Profile profile) {
+        if (profile.miMaxRequestsPerSecond <= 0) {
+            return false;
+        }
+        long lSecond = System.nanoTime() / 1_000_000_000L;
+        while (true) {
+            long lWindow = mlWindow.get();
+            long lNext = (lWindow >>> 32) == (lSecond & 0xFFFFFFFFL)
+                ? lWindow + 1
+                : (lSecond << 32) + 1;
+            if (mlWindow.compareAndSet(lWindow, lNext)) {
+                return (lNext & 0xFFFFFFFFL) > profile.miMaxRequestsPerSecond;
+            }
+        }
+    }
+
+    private static void sleep(Profile profile) {
+        long lNanos = profile.mlLatencyNanos;
+        if (profile.mlJitterNanos > 0) {
+            lNanos += ThreadLocalRandom.current().nextLong(profile.mlJitterNanos);
+        }
+        if (lNanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(lNanos / 1_000_000, (int) (lNanos % 1_000_000));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respondError(HttpExchange exchange, boolean bV2, StatusCode statusCode,
+                                     String strMessage) throws IOException {
+        try {
+            JSONObject jsonBody;
+            if (bV2) {
+                jsonBody = new JSONObject().put("errors", new JSONArray().put(new JSONObject()
+                    .put("code", statusCode.toInt())
+                    .put("message", strMessage)));
+            } else {
+                jsonBody = new JSONObject()
+                    .put("code", statusCode.toInt())
+                    .put("message", strMessage);
+            }
+            respond(exchange, statusCode.getHttpStatusCode(), jsonBody);
+        } catch (JSONException jsone) {
+            exchange.sendResponseHeaders(500, -1);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int iStatus, JSONObject jsonBody)
+            throws IOException {
+        byte[] body = jsonBody.toString().getBytes(StandardCharsets.UTF_8);
+        String strAcceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (body.length >= GZIP_THRESHOLD
+                && strAcceptEncoding != null && strAcceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                gzip.write(body);
+            }
+            body = bytes.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if ("HEAD".equals(exchange.getRequestMethod()) || body.length == 0) {
+            // A length of -1 means no body; HEAD responses must not announce one.
+            exchange.sendResponseHeaders(iStatus, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(iStatus, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    // ==========
+    // = Routes =
+    // ==========
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Request request) throws JSONException;
+    }
+
+    private static class Route {
+        private final String mstrMethod;
+        private final String mstrTemplate;
+        private final Pattern mPattern;
+        private final boolean mbV2;
+        private final Handler mHandler;
+
+        Route(String strMethod, String strTemplate, Handler handler) {
+            mstrMethod = strMethod;
+            mstrTemplate = strTemplate;
+            mPattern = Pattern.compile(strTemplate.replaceAll("\\{[^/]+\\}", "([^/]+)"));
+            mbV2 = strTemplate.startsWith("/v2/");
+            mHandler = handler;
+        }
+
+        String getEndpoint() { return mstrMethod + " " + mstrTemplate; }
+    }
+
+    private void route(String strMethod, String strTemplate, Handler handler) {
+        mlistRoutes.add(new Route(strMethod, strTemplate, handler));
+    }
+
+    private void addRoutes() {
+        // Gatekeeper
+        route("POST", "/v1/gatekeeper/visits/authorization",
+            request -> new JSONArray().put(visit(request.getString("ip"), request)));
+        route("GET", "/v1/gatekeeper/visits/count", request -> count());
+        route("GET", "/v1/gatekeeper/visits/count-for-policy", request -> count());
+        route("PUT", "/v1/gatekeeper/visits/{visitId}/captcha", request -> new JSONArray());
+        route("GET", "/v1/gatekeeper/visits/{visitor}", request -> {
+            JSONArray jsonVisits = new JSONArray();
+            for (int i = 0; i < 3; i++) {
+                jsonVisits.put(visit(request.getPathParameter(1), request));
+            }
+            return jsonVisits;
+        });
+        route("GET", "/v1/gatekeeper/policies", request -> {
+            JSONArray jsonPolicies = new JSONArray();
+            for (int i = 0; i < 3; i++) {
+                jsonPolicies.put(policy(i));
+            }
+            return jsonPolicies;
+        });
+        route("GET", "/v1/gatekeeper/page-groups", request -> new JSONArray()
+            .put(new JSONObject()
+                .put("id", UUID.randomUUID().toString())
+                .put("name", "Checkout")
+                .put("page_visit_check", "any")
+                .put("pages", new JSONArray().put("/checkout").put("/cart"))));
+        route("GET", "/v1/gatekeeper/visitor-groups", request -> visitorGroups(null));
+        route("GET", "/v1/gatekeeper/visitor-groups/{visitor}",
+            request -> visitorGroups(request.getPathParameter(1)));
+        route("POST", "/v1/gatekeeper/visitor-groups/{visitorGroupId}/visitors", request -> {
+            mmapVisitorGroups
+                .computeIfAbsent(request.getPathParameter(1), k -> ConcurrentHashMap.newKeySet())
+                .add(request.getString("visitor"));
+            return new JSONArray();
+        });
+        route("DELETE", "/v1/gatekeeper/visitor-groups/{visitorGroupId}/visitors", request -> {
+            Set<String> setVisitors = mmapVisitorGroups.get(request.getPathParameter(1));
+            if (setVisitors != null) {
+                setVisitors.remove(request.getString("visitor"));
+            }
+            return new JSONArray();
+        });
+        route("GET", "/v1/gatekeeper/visitor-groups/{visitorGroupId}/membership/{visitor}",
+            request -> {
+                Set<String> setVisitors = mmapVisitorGroups.get(request.getPathParameter(1));
+                boolean bMember = setVisitors != null
+                    && setVisitors.contains(request.getPathParameter(2));
+                return new JSONArray().put(new JSONObject().put("is_member", bMember));
+            });
+        // Dashboards
+        route("POST", "/v1/dashboards/channels", request -> new JSONArray()
+            .put(new JSONObject()
+                .put("id", UUID.randomUUID().toString())
+                .put("name", request.getString("name"))
+                .put("display_name", request.getString("display_name"))
+                .put("type", request.getString("type"))));
+        route("POST", "/v1/dashboards/channel-data", request -> new JSONArray()
+            .put(new JSONObject()
+                .put("id", UUID.randomUUID().toString())
+                .put("channel_id", UUID.randomUUID().toString())
+                .put("value", 1.0)
+                .put("created", System.currentTimeMillis())));
+        for (String strPath : new String[] {
+            "/v2/dashboards/create-gauge",
+            "/v2/dashboards/create-log",
+            "/v2/dashboards/create-logs",
+            "/v2/dashboards/create-metrics"
+        }) {
+            route("POST", strPath, request -> new JSONObject());
+        }
+        for (String strPath : new String[] {
+            "/v2/dashboards/start-duration",
+            "/v2/dashboards/end-duration",
+            "/v2/dashboards/create-duration-event"
+        }) {
+            route("POST", strPath, request -> durationSpan(request));
+        }
+        // Geo
+        route("GET", "/v1/geo/geocodes", request -> new JSONArray()
+            .put(new JSONObject()
+                .put("address", "1600 Amphitheatre Pkwy, Mountain View, CA 94043, USA")
+                .put("house_number", "1600")
+                .put("street", "Amphitheatre Pkwy")
+                .put("city", "Mountain View")
+                .put("postal_code", "94043")
+                .put("state", "California")
+                .put("state_code", "CA")
+                .put("country", "United States")
+                .put("country_code", "US")
+                .put("latitude", 37.4224)
+                .put("longitude", -122.0842)));
+        // Shibboleth
+        route("POST", "/v1/shibboleth/captchas", request -> new JSONArray()
+            .put(new JSONObject()
+                .put("type", "MATH")
+                .put("id", UUID.randomUUID().toString())
+                .put("displayInformation", new JSONObject().put("caption", "What is 2 + 3?"))));
+        route("POST", "/v1/shibboleth/captchas/{captchaId}/verification",
+            request -> new JSONArray().put(new JSONObject().put("pass", true)));
+        // Case collector
+        route("POST", "/v1/case/cases", request -> new JSONArray());
+    }
+
+    private static JSONObject visit(String strVisitor, Request request) throws JSONException {
+        return new JSONObject()
+            .put("id", UUID.randomUUID().toString())
+            .put("ip", strVisitor)
+            .put("page", request.getString("url"))
+            .put("user_agent", request.getString("user_agent"))
+            .put("country_code", "US")
+            .put("country_name", "United States")
+            .put("tags", new JSONArray())
+            .put("policy_id", UUID.randomUUID().toString())
+            .put("policy_name", "Default")
+            .put("authorization", "allow")
+            .put("reason", "default")
+            .put("created", System.currentTimeMillis());
+    }
+
+    private static JSONArray count() throws JSONException {
+        return new JSONArray().put(new JSONObject().put("count", 3));
+    }
+
+    private static JSONObject policy(int iPriority) throws JSONException {
+        return new JSONObject()
+            .put("id", UUID.randomUUID().toString())
+            .put("name", "Policy " + iPriority)
+            .put("visitor_negated", false)
+            .put("visitor_group_ids", new JSONArray())
+            .put("page_group_ids", new JSONArray())
+            .put("captcha_status", "any")
+            .put("user_agent_type", "any")
+            .put("num_times", 10)
+            .put("time_interval_num", 1)
+            .put("time_interval_unit", "minute")
+            .put("visit_interval", 0)
+            .put("authorization", "deny")
+            .put("reason", "Too many visits")
+            .put("priority", iPriority)
+            .put("enabled", true)
+            .put("description", "")
+            .put("created", System.currentTimeMillis())
+            .put("is_default", iPriority == 0);
+    }
+
+    private JSONArray visitorGroups(String strVisitor) throws JSONException {
+        JSONArray jsonGroups = new JSONArray();
+        for (Map.Entry<String, Set<String>> entry : mmapVisitorGroups.entrySet()) {
+            if (strVisitor != null && !entry.getValue().contains(strVisitor)) {
+                continue;
+            }
+            JSONArray jsonVisitors = new JSONArray();
+            for (String strValue : entry.getValue()) {
+                jsonVisitors.put(new JSONObject().put("value", strValue));
+            }
+            jsonGroups.put(new JSONObject()
+                .put("id", entry.getKey())
+                .put("name", "Group " + entry.getKey())
+                .put("visitor_type", "IP")
+                .put("operator", "IN")
+                .put("visitors", jsonVisitors));
+        }
+        return jsonGroups;
+    }
+
+    private static JSONObject durationSpan(Request request) throws JSONException {
+        String strSpanId = request.getString("span_id");
+        long lNow = System.currentTimeMillis();
+        JSONObject jsonSpan = new JSONObject()
+            .put("id", strSpanId != null ? strSpanId : UUID.randomUUID().toString())
+            .put("signal_id", UUID.randomUUID().toString())
+            .put("start_time", lNow)
+            .put("end_time", request.getPath().endsWith("end-duration") ? lNow : JSONObject.NULL)
+            .put("attributes", JSONObject.NULL)
+            .put("events", new JSONArray());
+        return new JSONObject().put("duration_span", jsonSpan);
+    }
+
+    // Query, form and JSON parameters of a request, merged, plus the path parameters.
+    private static class Request {
+        private final String mstrPath;
+        private final Matcher mMatcher;
+        private final JSONObject mjsonParameters = new JSONObject();
+
+        Request(HttpExchange exchange, Matcher matcher, byte[] body)
+                throws IOException, JSONException {
+            mstrPath = exchange.getRequestURI().getPath();
+            mMatcher = matcher;
+            putForm(exchange.getRequestURI().getRawQuery());
+            if (body.length > 0) {
+                String strBody = new String(body, StandardCharsets.UTF_8);
+                String strContentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                if (strContentType != null && strContentType.contains("json")) {
+                    JSONObject jsonBody = new JSONObject(strBody);
+                    for (String strKey : jsonBody.keySet()) {
+                        mjsonParameters.put(strKey, jsonBody.get(strKey));
+                    }
+                } else {
+                    putForm(strBody);
+                }
+            }
+        }
+
+        String getPath() { return mstrPath; }
+
+        String getPathParameter(int iGroup) { return mMatcher.group(iGroup); }
+
+        String getString(String strKey) {
+            Object value = mjsonParameters.opt(strKey);
+            return value == null || value == JSONObject.NULL ? null : String.valueOf(value);
+        }
+
+        private void putForm(String strForm) throws UnsupportedEncodingException, JSONException {
+            if (strForm == null || strForm.isEmpty()) {
+                return;
+            }
+            for (String strPair : strForm.split("&")) {
+                int iEquals = strPair.indexOf('=');
+                if (iEquals < 0) {
+                    continue;
+                }
+                mjsonParameters.put(
+                    URLDecoder.decode(strPair.substring(0, iEquals), "UTF-8"),
+                    URLDecoder.decode(strPair.substring(iEquals + 1), "UTF-8")
+                );
+            }
+        }
+
+        private static byte[] readBody(HttpExchange exchange) throws IOException {
+            InputStream in = exchange.getRequestBody();
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                in = new GZIPInputStream(in);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int iRead;
+            while ((iRead = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, iRead);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}